@@ -0,0 +1,83 @@
+package com.github.quickquarantine.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 输入参数和结果的创建开销,配合-prof gc查看每次操作分配的字节数
+ * 
+ * @author shangbincheng001
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+	
+	private final List<Object> list = new ArrayList<Object>(Collections.<Object>singletonList("benchmark"));
+	
+	private final Map<String, Object> map = new HashMap<String, Object>(Collections.<String, Object>singletonMap("key", "benchmark"));
+	
+	private final OperationResult success = newSuccess();
+	
+	private final Map<String, OperationResult> upstream = Collections.singletonMap("upstream", success);
+	
+	private final OperationInput input = OperationInput.initOperationInput("benchmark");
+	
+	private static OperationResult newSuccess() {
+		OperationResult or = new OperationResult();
+		or.success();
+		return or;
+	}
+	
+	@Benchmark
+	public OperationInput inputOfObject() {
+		return OperationInput.initOperationInput("benchmark");
+	}
+	
+	@Benchmark
+	public OperationInput inputOfList() {
+		return OperationInput.initOperationInput(list);
+	}
+	
+	@Benchmark
+	public OperationInput inputOfMap() {
+		return OperationInput.initOperationInput(map);
+	}
+	
+	@Benchmark
+	public OperationInput inputWithUpstream() {
+		return input.withUpstream(upstream);
+	}
+	
+	@Benchmark
+	public OperationResult result() {
+		return newSuccess();
+	}
+	
+	@Benchmark
+	public OperationResult resultCopy() {
+		return success.copy();
+	}
+	
+}
@@ -0,0 +1,58 @@
+package com.github.quickquarantine.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.FactoryBuilder;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.plan.ExecutionPlan;
+
+/**
+ * 加载基准测试的配置:benchmark/quickquarantine.properties
+ * 顶级业务fanoutN包含N个空操作的单元子业务fanoutN_sub1...fanoutN_subN
+ * 
+ * @author shangbincheng001
+ *
+ */
+final class BenchmarkFactory {
+	
+	private BenchmarkFactory() {
+	}
+	
+	/**
+	 * 加载配置,同一个JVM中只加载一次
+	 * @param fanout 单元子业务个数
+	 * @return 顶级业务的执行计划
+	 */
+	static synchronized ExecutionPlan load(int fanout) throws ClassNotFoundException {
+		FactoryBuilder.setPath("benchmark", "quickquarantine.properties");
+		Class.forName("com.github.quickquarantine.Factory");
+		if (!Factory.isBuilder) {
+			throw new QuickQuarantineException("加载基准测试的配置失败!");
+		}
+		return Factory.getExecutionPlan(getOperation(fanout));
+	}
+	
+	/**
+	 * @param fanout 单元子业务个数
+	 * @return 顶级业务
+	 */
+	static String getOperation(int fanout) {
+		return "fanout" + fanout;
+	}
+	
+	/**
+	 * @param fanout 单元子业务个数
+	 * @return 所有单元子业务参数顺序输入
+	 */
+	static List<OperationInput> getInput(int fanout) {
+		List<OperationInput> input = new ArrayList<OperationInput>(fanout);
+		for (int i = 0; i < fanout; i++) {
+			input.add(OperationInput.initOperationInput("benchmark"));
+		}
+		return input;
+	}
+	
+}
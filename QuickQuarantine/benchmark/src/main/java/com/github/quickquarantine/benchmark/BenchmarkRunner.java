@@ -0,0 +1,38 @@
+package com.github.quickquarantine.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 按三种调用者线程数依次运行基准测试,并开启GC分析器(每次操作分配的字节数):
+ * a.单线程
+ * b.与CPU核数相同
+ * c.超额订阅,CPU核数的4倍
+ * 用法:java -jar target/benchmarks.jar [JMH参数,比如要运行的基准测试的正则]
+ * 只需一种线程数时直接使用JMH的命令行:java -cp target/benchmarks.jar org.openjdk.jmh.Main -t 8 -prof gc
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads : new int[]{1, cores, cores * 4}) {
+			Options options = new OptionsBuilder()
+					.parent(cmd)
+					.threads(threads)
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result(String.format("jmh-result-t%s.json", threads))
+					.build();
+			new Runner(options).run();
+		}
+	}
+	
+}
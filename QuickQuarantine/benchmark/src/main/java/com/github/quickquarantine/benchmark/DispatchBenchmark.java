@@ -0,0 +1,100 @@
+package com.github.quickquarantine.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.quickquarantine.QuickQuarantine;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.impl.IQuickQuarantine;
+
+/**
+ * 分发路径的基准测试:以不同的扇出并行处理空操作的单元子业务
+ * a.doMaximumOperation:顶级业务的所有单元子业务
+ * b.doAllOfMinimumOperation:同样的单元子业务以列表指定
+ * c.doMinimumOperation:单个单元子业务,与扇出无关,使用单独的固定fanout=1的状态,只运行一次
+ * 调用者线程数由BenchmarkRunner或命令行-t指定
+ * 
+ * @author shangbincheng001
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+	
+	@Param({"1", "3", "16", "64"})
+	public int fanout;
+	
+	private QuickQuarantine qq;
+	
+	private String operation;
+	
+	private List<String> allMinimumOperation;
+	
+	private List<OperationInput> input;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		qq = new IQuickQuarantine();
+		operation = BenchmarkFactory.getOperation(fanout);
+		allMinimumOperation = BenchmarkFactory.load(fanout).getSeriesOperation();
+		input = BenchmarkFactory.getInput(fanout);
+	}
+	
+	@Benchmark
+	public List<OperationResult> doMaximumOperation() throws Exception {
+		return qq.doMaximumOperation(operation, input);
+	}
+	
+	@Benchmark
+	public List<OperationResult> doAllOfMinimumOperation() throws Exception {
+		return qq.doAllOfMinimumOperation(allMinimumOperation, operation, input);
+	}
+	
+	@Benchmark
+	public OperationResult doMinimumOperation(MinimumState state) throws Exception {
+		return state.qq.doMinimumOperation(state.minimumOperation, NoopOperation.NOOP, state.operation, state.input);
+	}
+	
+	/**
+	 * 单个单元子业务的状态,与扇出无关,固定fanout=1
+	 */
+	@State(Scope.Benchmark)
+	public static class MinimumState {
+		
+		private QuickQuarantine qq;
+		
+		private String operation;
+		
+		private String minimumOperation;
+		
+		private OperationInput input;
+		
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			qq = new IQuickQuarantine();
+			operation = BenchmarkFactory.getOperation(1);
+			minimumOperation = BenchmarkFactory.load(1).getSeriesOperation().get(0);
+			input = BenchmarkFactory.getInput(1).get(0);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,60 @@
+package com.github.quickquarantine.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.plan.OperationInvoker;
+import com.github.quickquarantine.utils.SecurityUtils;
+
+/**
+ * 单元子业务调用方式的基准测试
+ * a.echoStaticMethodByClass:每次调用都查找类和方法再反射调用
+ * b.OperationInvoker:加载配置时解析好的调用器
+ * c.直接调用:基线
+ * 
+ * @author shangbincheng001
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeBenchmark {
+	
+	private static final Class<?>[] PARAM_TYPES = new Class<?>[]{OperationInput.class};
+	
+	private final OperationInput input = OperationInput.initOperationInput("benchmark");
+	
+	private final Object[] params = new Object[]{input};
+	
+	private final OperationInvoker invoker = OperationInvoker.getInvoker(NoopOperation.NOOP);
+	
+	@Benchmark
+	public Object echoStaticMethodByClass() throws Exception {
+		return SecurityUtils.echoStaticMethodByClass(NoopOperation.class.getName(), "noop", PARAM_TYPES, params, OperationResult.class);
+	}
+	
+	@Benchmark
+	public OperationResult operationInvoker() throws Throwable {
+		return invoker.invoke(input);
+	}
+	
+	@Benchmark
+	public OperationResult direct() {
+		return NoopOperation.noop(input);
+	}
+	
+}
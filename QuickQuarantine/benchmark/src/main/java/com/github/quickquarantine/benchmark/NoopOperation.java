@@ -0,0 +1,22 @@
+package com.github.quickquarantine.benchmark;
+
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 基准测试使用的空操作单元子业务,不做任何业务处理,测得的耗时全部是框架本身的开销
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class NoopOperation {
+	
+	public static final String NOOP = "com.github.quickquarantine.benchmark.NoopOperation.noop";
+	
+	public static OperationResult noop(OperationInput input) {
+		OperationResult or = new OperationResult();
+		or.success();
+		return or;
+	}
+	
+}
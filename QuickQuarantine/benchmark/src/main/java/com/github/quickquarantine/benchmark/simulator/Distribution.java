@@ -0,0 +1,84 @@
+package com.github.quickquarantine.benchmark.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.github.quickquarantine.exception.QuickQuarantineException;
+
+/**
+ * 耗时的概率分布(毫秒),格式:类型:参数1[:参数2]
+ * a.constant:值
+ * b.uniform:下限:上限
+ * c.exponential:均值
+ * d.lognormal:中位数:sigma,长尾的下游调用通常近似对数正态分布
+ * 
+ * @author shangbincheng001
+ *
+ */
+public final class Distribution {
+	
+	public static final Distribution ZERO = new Distribution("constant", 0.0, 0.0);
+	
+	private final String type;
+	
+	private final double a;
+	
+	private final double b;
+	
+	private Distribution(String type, double a, double b) {
+		this.type = type;
+		this.a = a;
+		this.b = b;
+	}
+	
+	/**
+	 * @param s 类型:参数1[:参数2]
+	 * @return 概率分布
+	 */
+	public static Distribution parse(String s) {
+		String[] parts = s.trim().split(":");
+		try {
+			if ("constant".equals(parts[0]) && parts.length == 2) {
+				return check(s, new Distribution(parts[0], Double.parseDouble(parts[1]), 0.0));
+			}
+			if ("exponential".equals(parts[0]) && parts.length == 2) {
+				return check(s, new Distribution(parts[0], Double.parseDouble(parts[1]), 0.0));
+			}
+			if (("uniform".equals(parts[0]) || "lognormal".equals(parts[0])) && parts.length == 3) {
+				return check(s, new Distribution(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+			}
+		} catch (NumberFormatException e) {
+			// 统一按无效的分布处理
+		}
+		throw new QuickQuarantineException(String.format("分布:[ %s ],无效!", s));
+	}
+	
+	private static Distribution check(String s, Distribution d) {
+		if (d.a < 0.0 || d.b < 0.0 || ("uniform".equals(d.type) && d.b < d.a)) {
+			throw new QuickQuarantineException(String.format("分布:[ %s ],参数不能为负数!", s));
+		}
+		return d;
+	}
+	
+	/**
+	 * @return 一个样本(毫秒)
+	 */
+	public double sample() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if ("uniform".equals(type)) {
+			return a + (b - a) * random.nextDouble();
+		}
+		if ("exponential".equals(type)) {
+			return -a * Math.log(1.0 - random.nextDouble());
+		}
+		if ("lognormal".equals(type)) {
+			return a * Math.exp(b * random.nextGaussian());
+		}
+		return a;
+	}
+	
+	@Override
+	public String toString() {
+		return "constant".equals(type) || "exponential".equals(type) ? type + ":" + a : type + ":" + a + ":" + b;
+	}
+	
+}
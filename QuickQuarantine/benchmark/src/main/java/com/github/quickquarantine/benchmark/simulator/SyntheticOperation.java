@@ -0,0 +1,108 @@
+package com.github.quickquarantine.benchmark.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+
+/**
+ * 合成的单元子业务,按输入参数中的规格模拟耗时和失败
+ * a.先忙等消耗CPU,模拟序列化、计算等
+ * b.再挂起线程,模拟等待下游系统的I/O,不消耗CPU
+ * c.按错误率返回错误
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class SyntheticOperation {
+	
+	public static final String SUB = "com.github.quickquarantine.benchmark.simulator.SyntheticOperation.sub";
+	
+	public static OperationResult sub(OperationInput input) {
+		Spec spec = (Spec) input.getInput(OperationInput.O_TYPE);
+		long cpuNanos = toNanos(spec.cpu.sample());
+		long start = System.nanoTime();
+		while (System.nanoTime() - start < cpuNanos) {
+			// 忙等
+		}
+		long latencyNanos = toNanos(spec.latency.sample());
+		long deadline = System.nanoTime() + latencyNanos;
+		for (long remaining = latencyNanos; remaining > 0L; remaining = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				// 超时被中断
+				throw new QuickQuarantineException("合成业务被中断!");
+			}
+		}
+		OperationResult or = new OperationResult();
+		if (ThreadLocalRandom.current().nextDouble() < spec.errorRate) {
+			or.error("合成的错误!");
+		} else {
+			or.success();
+		}
+		return or;
+	}
+	
+	private static long toNanos(double millis) {
+		return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1L));
+	}
+	
+	/**
+	 * 合成的单元子业务的规格,格式:latency=分布;cpu=分布;error=错误率,未配置的项为0
+	 */
+	public static final class Spec {
+		
+		private final Distribution latency;
+		
+		private final Distribution cpu;
+		
+		private final double errorRate;
+		
+		private Spec(Distribution latency, Distribution cpu, double errorRate) {
+			this.latency = latency;
+			this.cpu = cpu;
+			this.errorRate = errorRate;
+		}
+		
+		/**
+		 * @param s latency=分布;cpu=分布;error=错误率
+		 * @return 规格
+		 */
+		public static Spec parse(String s) {
+			Distribution latency = Distribution.ZERO;
+			Distribution cpu = Distribution.ZERO;
+			double errorRate = 0.0;
+			for (String item : s.split(";")) {
+				int i = item.indexOf('=');
+				String key = i < 0 ? item.trim() : item.substring(0, i).trim();
+				String value = i < 0 ? "" : item.substring(i + 1).trim();
+				if ("latency".equals(key)) {
+					latency = Distribution.parse(value);
+				} else if ("cpu".equals(key)) {
+					cpu = Distribution.parse(value);
+				} else if ("error".equals(key)) {
+					try {
+						errorRate = Double.parseDouble(value);
+					} catch (NumberFormatException e) {
+						errorRate = -1.0;
+					}
+					if (errorRate < 0.0 || errorRate > 1.0) {
+						throw new QuickQuarantineException(String.format("规格:[ %s ],错误率必须在0到1之间!", s));
+					}
+				} else if (!key.isEmpty()) {
+					throw new QuickQuarantineException(String.format("规格:[ %s ],未知的配置项[ %s ]!", s, key));
+				}
+			}
+			return new Spec(latency, cpu, errorRate);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("latency=%s;cpu=%s;error=%s", latency, cpu, errorRate);
+		}
+	}
+	
+}
@@ -0,0 +1,284 @@
+package com.github.quickquarantine.benchmark.simulator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.FactoryBuilder;
+import com.github.quickquarantine.QuickQuarantine;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.impl.IQuickQuarantine;
+import com.github.quickquarantine.metrics.LatencyHistogram;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.metrics.ThreadPoolMetrics;
+import com.github.quickquarantine.plan.ExecutionPlan;
+
+/**
+ * 线程池配置的容量规划工具:以合成的单元子业务和开环的到达率驱动IQuickQuarantine,逐个评估候选的线程池配置
+ * a.每个候选配置生成一个顶级业务,单元子业务的耗时、CPU耗时、错误率按工作负载中的分布合成
+ * b.请求按泊松过程到达,不等待前一个请求完成;耗时从计划到达时间算起,调用者被阻塞的时间也计入,避免协调遗漏
+ * c.每个候选配置、每个到达率输出:吞吐量、端到端p50/p99/p99.9、失败率、排队耗时p50/p99、线程数
+ * 用法:java -cp target/benchmarks.jar com.github.quickquarantine.benchmark.simulator.WorkloadSimulator [工作负载文件]
+ * 未指定工作负载文件时使用simulator/workload.properties
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class WorkloadSimulator {
+	
+	/**
+	 * 到达率(请求/秒),多个以|分隔时逐个评估
+	 */
+	public static final String RATE = "rate";
+	
+	/**
+	 * 预热时间(秒),不计入统计
+	 */
+	public static final String WARMUP = "warmup";
+	
+	/**
+	 * 测量时间(秒)
+	 */
+	public static final String DURATION = "duration";
+	
+	/**
+	 * 单元子业务的规格:subOperation.序号 = latency=分布;cpu=分布;error=错误率
+	 */
+	public static final String SUB_OPERATION = "subOperation";
+	
+	/**
+	 * 候选的线程池配置:candidate.名称 = 配置项=值,配置项=值,与顶级业务的配置项相同
+	 */
+	public static final String CANDIDATE = "candidate";
+	
+	private static final String DIR_NAME = "simulation";
+	
+	private static final String OPERATION_PREFIX = "simulation_";
+	
+	/**
+	 * 测量结束后等待未完成请求的最长时间(秒)
+	 */
+	private static final long DRAIN_SECONDS = 30L;
+	
+	private final QuickQuarantine qq = new IQuickQuarantine();
+	
+	private final List<SyntheticOperation.Spec> specs;
+	
+	private final Map<String, String> candidates;
+	
+	private final long warmupNanos;
+	
+	private final long durationNanos;
+	
+	public WorkloadSimulator(List<SyntheticOperation.Spec> specs, Map<String, String> candidates, long warmupSeconds, long durationSeconds) {
+		this.specs = specs;
+		this.candidates = candidates;
+		this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+		this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Properties workload = new Properties();
+		InputStream is = args.length > 0 ? new FileInputStream(args[0]) : WorkloadSimulator.class.getClassLoader().getResourceAsStream("simulator/workload.properties");
+		try {
+			workload.load(is);
+		} finally {
+			is.close();
+		}
+		List<SyntheticOperation.Spec> specs = new ArrayList<SyntheticOperation.Spec>(getSubKeys(workload, SUB_OPERATION).values().size());
+		for (String s : getSubKeys(workload, SUB_OPERATION).values()) {
+			specs.add(SyntheticOperation.Spec.parse(s));
+		}
+		Map<String, String> candidates = getSubKeys(workload, CANDIDATE);
+		if (specs.isEmpty() || candidates.isEmpty()) {
+			throw new QuickQuarantineException("工作负载缺少单元子业务或候选的线程池配置!");
+		}
+		WorkloadSimulator simulator = new WorkloadSimulator(specs, candidates, getLong(workload, WARMUP, 2L), getLong(workload, DURATION, 10L));
+		simulator.load();
+		System.out.println(String.format("%-12s %8s %10s %9s %9s %9s %7s %10s %10s %6s %6s", "候选配置", "到达率", "吞吐量", "p50(ms)", "p99(ms)", "p99.9(ms)", "失败率", "排队p50", "排队p99", "线程数", "峰值"));
+		for (String rate : workload.getProperty(RATE, "100").split("\\|")) {
+			for (String candidate : candidates.keySet()) {
+				System.out.println(simulator.run(candidate, Double.parseDouble(rate.trim())));
+			}
+		}
+		System.exit(0);
+	}
+	
+	/**
+	 * 为每个候选配置生成一个顶级业务的配置文件,从临时目录加载
+	 */
+	public void load() throws IOException, ClassNotFoundException {
+		File root = Files.createTempDirectory("quickquarantine-simulation").toFile();
+		File dir = new File(root, DIR_NAME);
+		dir.mkdirs();
+		Properties manifest = new Properties();
+		for (Map.Entry<String, String> candidate : candidates.entrySet()) {
+			String operation = OPERATION_PREFIX + candidate.getKey();
+			Properties config = new Properties();
+			// 默认值,候选配置中可以覆盖
+			config.setProperty(Factory.KEEP_ALIVE_TIME, "60");
+			config.setProperty(Factory.ALLOW_CORE_THREAD_TIMEOUT, "0");
+			config.setProperty(Factory.REJECT_POLICY, Factory.REJECT_POLICY_BLOCK);
+			config.setProperty(Factory.TRACE, Factory.TRACE_OFF);
+			for (String pair : candidate.getValue().split(",")) {
+				int i = pair.indexOf('=');
+				if (i < 0) {
+					throw new QuickQuarantineException(String.format("候选配置:[ %s ],格式应为配置项=值!", pair));
+				}
+				config.setProperty(pair.substring(0, i).trim(), pair.substring(i + 1).trim());
+			}
+			StringBuilder classMethod = new StringBuilder();
+			StringBuilder seriesOperation = new StringBuilder();
+			for (int i = 1; i <= specs.size(); i++) {
+				classMethod.append(i == 1 ? "" : "|").append(SyntheticOperation.SUB);
+				seriesOperation.append(i == 1 ? "" : "|").append(operation).append("_sub").append(i);
+			}
+			config.setProperty(Factory.SERIES_CLASS_STATIC_METHOD_NAME, classMethod.toString());
+			config.setProperty(Factory.SERIES_OPERATION, seriesOperation.toString());
+			store(config, new File(dir, operation + ".properties"));
+			manifest.setProperty(operation, operation + ".properties");
+		}
+		store(manifest, new File(dir, "quickquarantine.properties"));
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{root.toURI().toURL()}, contextClassLoader));
+		FactoryBuilder.setPath(DIR_NAME, "quickquarantine.properties");
+		Class.forName("com.github.quickquarantine.Factory");
+		if (!Factory.isBuilder) {
+			throw new QuickQuarantineException("加载候选的线程池配置失败!");
+		}
+	}
+	
+	/**
+	 * 以开环的到达率评估一个候选配置
+	 * @param candidate 候选配置
+	 * @param rate 到达率(请求/秒)
+	 * @return 一行报告
+	 */
+	public String run(String candidate, double rate) throws InterruptedException {
+		final String operation = OPERATION_PREFIX + candidate;
+		ExecutionPlan plan = Factory.getExecutionPlan(operation);
+		final ThreadPoolMetrics poolMetrics = new ThreadPoolMetrics(operation, plan.getThreadPool());
+		OperationMetrics metrics = plan.getMetrics();
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder failed = new LongAdder();
+		final AtomicInteger outstanding = new AtomicInteger(0);
+		final int[] peakPoolSize = new int[1];
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				peakPoolSize[0] = Math.max(peakPoolSize[0], poolMetrics.getPoolSize());
+			}
+		}, 0L, 50L, TimeUnit.MILLISECONDS);
+		List<OperationInput> input = new ArrayList<OperationInput>(specs.size());
+		for (SyntheticOperation.Spec spec : specs) {
+			input.add(OperationInput.initOperationInput(spec));
+		}
+		double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1L) / rate;
+		long start = System.nanoTime();
+		long measureStart = start + warmupNanos;
+		long end = measureStart + durationNanos;
+		long intended = start;
+		boolean measuring = false;
+		while (intended < end) {
+			if (!measuring && intended >= measureStart) {
+				// 预热结束,清空指标
+				measuring = true;
+				metrics.reset();
+			}
+			long wait = intended - System.nanoTime();
+			if (wait > 0L) {
+				LockSupport.parkNanos(wait);
+			}
+			final long intendedStart = intended;
+			final boolean record = measuring;
+			outstanding.incrementAndGet();
+			CompletableFuture<List<OperationResult>> future = qq.doMaximumOperationAsync(operation, input);
+			future.whenComplete((results, e) -> {
+				if (record) {
+					latency.record(System.nanoTime() - intendedStart);
+					if (e != null || !isSuccess(results)) {
+						failed.increment();
+					}
+				}
+				outstanding.decrementAndGet();
+			});
+			intended += (long) (-meanIntervalNanos * Math.log(1.0 - ThreadLocalRandom.current().nextDouble()));
+		}
+		long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+		while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+			Thread.sleep(10L);
+		}
+		sampler.shutdown();
+		sampler.awaitTermination(1L, TimeUnit.SECONDS);
+		long completed = latency.getCount();
+		double throughput = completed * 1.0 / TimeUnit.NANOSECONDS.toSeconds(durationNanos);
+		String name = outstanding.get() > 0 ? candidate + "(未完成" + outstanding.get() + ")" : candidate;
+		return String.format("%-12s %8.0f %10.1f %9.2f %9.2f %9.2f %6.2f%% %10.2f %10.2f %6d %6d",
+				new Object[]{name, rate, throughput, latency.getPercentile(50.0), latency.getPercentile(99.0), latency.getPercentile(99.9), completed == 0L ? 0.0 : failed.sum() * 100.0 / completed,
+						metrics.getQueueWaitP50(), metrics.getQueueWaitP99(), poolMetrics.getPoolSize(), peakPoolSize[0]});
+	}
+	
+	private static boolean isSuccess(List<OperationResult> results) {
+		for (OperationResult or : results) {
+			if (!OperationResult.SUCCESS.equals(or.getResultCode())) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return 形如"前缀.名称"的配置项,按名称排序,名称为数字时按数值排序
+	 */
+	private static Map<String, String> getSubKeys(Properties config, String prefix) {
+		Map<String, String> map = new TreeMap<String, String>((x, y) -> {
+			boolean nx = x.matches("\\d+");
+			boolean ny = y.matches("\\d+");
+			return nx && ny ? Long.compare(Long.parseLong(x), Long.parseLong(y)) : x.compareTo(y);
+		});
+		String start = prefix + ".";
+		for (String key : config.stringPropertyNames()) {
+			if (key.startsWith(start)) {
+				map.put(key.substring(start.length()), config.getProperty(key).trim());
+			}
+		}
+		return map;
+	}
+	
+	private static long getLong(Properties config, String key, long defaultValue) {
+		String s = config.getProperty(key);
+		return s == null || s.trim().isEmpty() ? defaultValue : Long.parseLong(s.trim());
+	}
+	
+	private static void store(Properties p, File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			p.store(os, null);
+		} finally {
+			os.close();
+		}
+	}
+	
+}
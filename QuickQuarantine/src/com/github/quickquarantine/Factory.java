@@ -5,6 +5,7 @@ import static com.github.quickquarantine.utils.SecurityUtils.VERTICAL_LINE;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
@@ -12,11 +13,33 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.quickquarantine.annotation.OperationRegistry;
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
+import com.github.quickquarantine.cache.OperationCache;
 import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.hedge.OperationHedge;
+import com.github.quickquarantine.metrics.MetricsRegistry;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.plan.ExecutionPlan;
+import com.github.quickquarantine.plan.OperationInvoker;
+import com.github.quickquarantine.plan.SubOperationPlan;
+import com.github.quickquarantine.thread.AdaptivePoolController;
+import com.github.quickquarantine.thread.OperationSingleFlight;
+import com.github.quickquarantine.thread.OperationThreadPool;
+import com.github.quickquarantine.trace.OperationEventRing;
+import com.github.quickquarantine.trace.OperationTrace;
 
 public class Factory {
 	
@@ -55,6 +78,23 @@ public class Factory {
 	 * */
 	public static final String WORK_QUEUE_SIZE = "workQueueSize";
 	
+	/**
+	 * 从配置中读取阻塞队列类型,可选,默认fifo,只支持平台线程
+	 * a.fifo:先进先出的ArrayBlockingQueue
+	 * b.priority:按OperationInput的优先级分为高、普通、低三级的有界阻塞队列,workQueueSize仍是所有级别的总容量.
+	 *   用户实时交互的请求不再排在同一顶级业务的批量任务后面;
+	 *   低级别的队首每等待workQueueType.agingTime毫秒提升一级,防止饿死,默认500
+	 */ 
+	public static final String WORK_QUEUE_TYPE = "workQueueType";
+	
+	public static final String WORK_QUEUE_TYPE_FIFO = "fifo";
+	
+	public static final String WORK_QUEUE_TYPE_PRIORITY = "priority";
+	
+	public static final String WORK_QUEUE_AGING_TIME = "workQueueType.agingTime";
+	
+	public static final long DEFAULT_WORK_QUEUE_AGING_TIME = 500L;
+	
 	/**
 	 * 从配置中读取空闲线程超时时间
 	 * 根据单笔业务处理时间计算,视实际情况而定.
@@ -69,6 +109,60 @@ public class Factory {
 	 */ 
 	public static final String ALLOW_CORE_THREAD_TIMEOUT = "allowCoreThreadTimeout";
 	
+	/**
+	 * 从配置中读取执行器类型,可选,默认platform
+	 * a.platform:平台线程的ThreadPoolExecutor,按上述公式估算线程数
+	 * b.virtual:虚拟线程,适用于几乎全是阻塞IO的业务,需要JDK21及以上.
+	 *   每个单元子业务一个虚拟线程,maximumPoolSize不再是线程数而是并发上限,workQueueSize仍是等待上限,
+	 *   corePoolSize、keepAliveTime、allowCoreThreadTimeout不再起作用
+	 * c.forkjoin:工作窃取的ForkJoinPool,适用于几乎不阻塞的CPU密集型业务.每个工作线程一个双端队列,不再争用同一个阻塞队列的锁,
+	 *   单元子业务可以直接fork嵌套的子任务.maximumPoolSize是并行度(按CPU核数设置),workQueueSize仍是等待上限,
+	 *   corePoolSize、keepAliveTime、allowCoreThreadTimeout不再起作用
+	 */ 
+	public static final String EXECUTOR_TYPE = "executorType";
+	
+	/**
+	 * 执行器类型:平台线程
+	 */
+	public static final String EXECUTOR_TYPE_PLATFORM = "platform";
+	
+	/**
+	 * 执行器类型:虚拟线程
+	 */
+	public static final String EXECUTOR_TYPE_VIRTUAL = "virtual";
+	
+	/**
+	 * 执行器类型:工作窃取
+	 */
+	public static final String EXECUTOR_TYPE_FORKJOIN = "forkjoin";
+	
+	/**
+	 * 从配置中读取线程池饱和时的策略,可选,默认block.无论哪种策略,单元子业务都一定会登记结果,调用者不会一直等待
+	 * a.block:提交阻塞,直到阻塞队列有空位,保证不抛弃一个任务;提交线程被中断时以拒绝结果登记
+	 * b.wait:最多等待rejectPolicy.waitTime毫秒,仍没有空位时以拒绝结果登记
+	 * c.callerRuns:在提交线程中直接执行,提交线程变慢,自然降低提交速度
+	 * d.shed:立即以拒绝结果登记,不执行
+	 * e.shedOldest:挤出阻塞队列中等待最久的单元子业务并以拒绝结果登记,再提交当前业务;虚拟线程执行器等同于shed
+	 */ 
+	public static final String REJECT_POLICY = "rejectPolicy";
+	
+	public static final String REJECT_POLICY_BLOCK = "block";
+	
+	public static final String REJECT_POLICY_WAIT = "wait";
+	
+	public static final String REJECT_POLICY_CALLER_RUNS = "callerRuns";
+	
+	public static final String REJECT_POLICY_SHED = "shed";
+	
+	public static final String REJECT_POLICY_SHED_OLDEST = "shedOldest";
+	
+	/**
+	 * 从配置中读取wait策略的最长等待时间(毫秒),可选,默认1000
+	 */ 
+	public static final String REJECT_POLICY_WAIT_TIME = "rejectPolicy.waitTime";
+	
+	public static final long DEFAULT_REJECT_POLICY_WAIT_TIME = 1000L;
+	
 	/**
 	 * 从配置中读取,一系列类的静态方法
 	 * 通过反射调用指定方法
@@ -82,10 +176,204 @@ public class Factory {
 	 */ 
 	public static final String SERIES_OPERATION = "seriesOperation";
 	
+	/**
+	 * 从配置中读取超时时间(毫秒),可选,默认0表示不限时
+	 * timeout = 顶级业务下所有单元子业务默认的超时时间
+	 * timeout.单元子业务 = 单独配置的单元子业务超时时间
+	 * 到期未完成的单元子业务返回超时结果,并中断其线程,仍在阻塞队列中的不再执行
+	 * 根据单笔业务处理成功的平均耗时及下游系统的超时时间设置,防止一个挂起的业务耗尽线程池
+	 */ 
+	public static final String TIMEOUT = "timeout";
+	
+	/**
+	 * 从配置中读取单元子业务的结果缓存,可选,默认不缓存
+	 * cache.单元子业务.ttl = 结果存活时间(毫秒),大于0时开启缓存
+	 * cache.单元子业务.maxEntries = 最大条目数,超过时淘汰最久未使用的结果,默认1000
+	 * 适用于结果在一段时间内不变的纯查询业务,以输入参数为键,只缓存成功的结果,命中时不再占用线程池
+	 */ 
+	public static final String CACHE = "cache";
+	
+	public static final String CACHE_TTL = "ttl";
+	
+	public static final String CACHE_MAX_ENTRIES = "maxEntries";
+	
+	private static final long DEFAULT_CACHE_MAX_ENTRIES = 1000L;
+	
+	/**
+	 * 从配置中读取是否合并相同的并发调用,可选,默认0表示不合并
+	 * coalesce = 顶级业务下所有单元子业务默认是否合并,1表示合并
+	 * coalesce.单元子业务 = 单独配置的单元子业务是否合并
+	 * 同一单元子业务、相等的输入参数同时到达时,只执行一次,所有调用者得到相同的结果;
+	 * 领头者超时、被拒绝或熔断的结果不共享,其他调用者重新加入执行
+	 * 只适用于没有副作用的查询业务,可减轻流量突增时阻塞队列和下游系统的压力
+	 */ 
+	public static final String COALESCE = "coalesce";
+	
+	/**
+	 * 从配置中读取是否自适应调整线程池,可选,默认0表示不调整,只支持平台线程
+	 * adaptive = 1表示开启,按周期测量执行耗时与CPU耗时得到实际的阻塞系数,再结合吞吐量(利特尔法则)调整核心线程数
+	 * adaptive.minPoolSize = 核心线程数下限,默认corePoolSize
+	 * adaptive.maxPoolSize = 最大线程数上限,默认maximumPoolSize
+	 * adaptive.interval = 调整周期(毫秒),默认5000
+	 * 开启后maximumPoolSize、corePoolSize只是初始值,不再需要手工估算阻塞系数
+	 */ 
+	public static final String ADAPTIVE = "adaptive";
+	
+	public static final String ADAPTIVE_MIN_POOL_SIZE = "adaptive.minPoolSize";
+	
+	public static final String ADAPTIVE_MAX_POOL_SIZE = "adaptive.maxPoolSize";
+	
+	public static final String ADAPTIVE_INTERVAL = "adaptive.interval";
+	
+	private static final long DEFAULT_ADAPTIVE_INTERVAL = 5000L;
+	
+	/**
+	 * 从配置中读取单元子业务的熔断器,可选,默认不熔断
+	 * breaker.单元子业务.failureRate = 失败率阈值(百分比,1到100),最近window次调用中失败的比例达到阈值时熔断
+	 * breaker.单元子业务.slowCallRate = 慢调用率阈值(百分比,1到100),需同时配置slowCallDuration
+	 * breaker.单元子业务.slowCallDuration = 慢调用耗时(毫秒),执行耗时不小于该值的算作慢调用
+	 * breaker.单元子业务.window = 滑动窗口大小,默认20
+	 * breaker.单元子业务.minimumCalls = 计算失败率的最少调用数,默认min(10, window)
+	 * breaker.单元子业务.openTime = 熔断时间(毫秒),默认10000,到期后放行探测调用
+	 * breaker.单元子业务.halfOpenCalls = 探测调用数,默认3
+	 * failureRate或slowCallRate大于0时开启.熔断期间直接返回熔断结果,不再占用顶级业务共享的线程池,
+	 * 防止一个故障的下游系统拖垮同一顶级业务下的其他单元子业务
+	 */ 
+	public static final String BREAKER = "breaker";
+	
+	public static final String BREAKER_FAILURE_RATE = "failureRate";
+	
+	public static final String BREAKER_SLOW_CALL_RATE = "slowCallRate";
+	
+	public static final String BREAKER_SLOW_CALL_DURATION = "slowCallDuration";
+	
+	public static final String BREAKER_WINDOW = "window";
+	
+	public static final String BREAKER_MINIMUM_CALLS = "minimumCalls";
+	
+	public static final String BREAKER_OPEN_TIME = "openTime";
+	
+	public static final String BREAKER_HALF_OPEN_CALLS = "halfOpenCalls";
+	
+	private static final long DEFAULT_BREAKER_WINDOW = 20L;
+	
+	private static final long DEFAULT_BREAKER_MINIMUM_CALLS = 10L;
+	
+	private static final long DEFAULT_BREAKER_OPEN_TIME = 10000L;
+	
+	private static final long DEFAULT_BREAKER_HALF_OPEN_CALLS = 3L;
+	
+	/**
+	 * 从配置中读取单元子业务的对冲请求,可选,默认不对冲,只能为幂等的单元子业务配置
+	 * hedge.单元子业务.delay = 对冲延迟(毫秒),提交后经过该时间仍未完成,再提交一份相同的调用,先完成的结果生效
+	 * hedge.单元子业务.percentile = 未配置delay时,以实时测量的执行耗时百分位作为对冲延迟,比如95
+	 * hedge.单元子业务.budget = 对冲预算(百分比),对冲带来的额外负载不超过该比例,默认5
+	 * delay或percentile大于0时开启.适用于访问多副本下游系统、p99远大于中位数的单元子业务,降低顶级业务的长尾耗时
+	 */ 
+	public static final String HEDGE = "hedge";
+	
+	public static final String HEDGE_DELAY = "delay";
+	
+	public static final String HEDGE_PERCENTILE = "percentile";
+	
+	public static final String HEDGE_BUDGET = "budget";
+	
+	private static final long DEFAULT_HEDGE_BUDGET = 5L;
+	
+	/**
+	 * 从配置中读取执行日志的级别,可选,默认summary
+	 * trace = 所有单元子业务默认的级别
+	 * trace.单元子业务 = 单独配置的级别
+	 * off:不记录;summary:每次执行记录一个结构化事件(返回码、排队/执行/端到端耗时);payload:在summary的基础上采样记录输入参数和返回结果
+	 * 事件发布到环形缓冲区,由后台写线程格式化写出,业务线程中不格式化、不做I/O;缓冲区已满时丢弃
+	 */ 
+	public static final String TRACE = "trace";
+	
+	public static final String TRACE_OFF = "off";
+	
+	public static final String TRACE_SUMMARY = "summary";
+	
+	public static final String TRACE_PAYLOAD = "payload";
+	
+	/**
+	 * 从配置中读取payload级别的采样率,可选,默认100,即每100次执行记录1次输入参数和返回结果
+	 * traceSample = 所有单元子业务默认的采样率
+	 * traceSample.单元子业务 = 单独配置的采样率
+	 */ 
+	public static final String TRACE_SAMPLE = "traceSample";
+	
+	private static final long DEFAULT_TRACE_SAMPLE = 100L;
+	
+	/**
+	 * 从配置中读取单元子业务之间的依赖关系,可选,默认全部并行
+	 * dependsOn.单元子业务 = 上游单元子业务1|上游单元子业务2
+	 * 上游全部成功后才执行,其结果通过OperationInput.getUpstream传入;任一上游未成功则跳过.加载配置时拒绝循环依赖
+	 * 结果缓存和并发调用合并只以调用者的输入为键,不包含上游的结果,加载配置时拒绝为有依赖的单元子业务开启
+	 * 只对doMaximumOperation系列接口生效,doAllOfMinimumOperation和doMinimumOperation不考虑依赖关系
+	 */ 
+	public static final String DEPENDS_ON = "dependsOn";
+	
+	/**
+	 * 从配置中读取预留给类型化单元子业务的名称,可选,多个以竖线分隔
+	 * registeredOperation = 单元子业务1|单元子业务2
+	 * 类型化单元子业务通过Factory.register以编程方式注册,声明在此处的可以像seriesOperation一样单独配置超时、缓存、熔断等
+	 * 未声明的也可以注册,使用顶级业务的默认配置
+	 */ 
+	public static final String REGISTERED_OPERATION = "registeredOperation";
+	
+	/**
+	 * 加载配置时解析好的一系列单元子业务调用器,与一系列单元子业务一一对应
+	 * 执行业务时直接调用,不再通过反射查找
+	 */ 
+	public static final String SERIES_INVOKER = "seriesInvoker";
+	
+	/**
+	 * 系统属性:热加载的轮询周期(毫秒),大于0时加载配置后即开始监视配置文件,默认不监视
+	 * 比如 -Dquickquarantine.watchInterval=5000,也可以调用Factory.watch(long)
+	 */
+	public static final String WATCH_INTERVAL_PROPERTY = "quickquarantine.watchInterval";
+	
 	/**
 	 * 定制的线程池参数列表
+	 * 以下三个列表都是写时复制:热加载时整体替换,读取不加锁,执行中的业务继续使用替换前的执行计划
+	 */
+	private static volatile Map<String, Map<String, Object>> threadPoolOperationMap = new HashMap<String, Map<String, Object>>();
+	
+	/**
+	 * 顶级业务的执行计划列表,加载配置时编译生成
+	 */
+	private static volatile Map<String, ExecutionPlan> executionPlanMap = new HashMap<String, ExecutionPlan>();
+	
+	/**
+	 * 顶级业务的配置,热加载时用于判断配置是否变化
+	 */
+	private static volatile Map<String, Properties> configMap = new HashMap<String, Properties>();
+	
+	/**
+	 * 以编程方式注册的类型化单元子业务调用器,以顶级业务、单元子业务为键,热加载时重新编译进执行计划
+	 * 只在持有Factory类锁时读写
+	 */
+	private static final Map<String, Map<String, OperationInvoker>> registeredInvokerMap = new HashMap<String, Map<String, OperationInvoker>>();
+	
+	/**
+	 * 注解处理器生成的顶级业务配置,以顶级业务为键,作为配置文件的默认值,配置文件中的配置项覆盖它
+	 * 只在加载配置及持有Factory类锁时读写
+	 */
+	private static final Map<String, Properties> registryConfigMap = new HashMap<String, Properties>();
+	
+	/**
+	 * 加载时的配置清单文件路径及所在工作目录,热加载时使用,不受之后FactoryBuilder.setPath的影响
+	 */
+	private static String manifestPath;
+	
+	private static String manifestDirName;
+	
+	/**
+	 * 热加载的轮询线程,调用watch(long)时才创建
 	 */
-	private static Map<String, Map<String, Object>> threadPoolOperationMap = new HashMap<String, Map<String, Object>>();
+	private static ScheduledExecutorService watcher;
+	
+	private static ScheduledFuture<?> watchFuture;
 	
 	/**
 	 * 默认未加载配置
@@ -94,11 +382,19 @@ public class Factory {
 	
 	static {
 		String path = FactoryBuilder.getPath();
+		manifestPath = path;
+		manifestDirName = FactoryBuilder.getDirName();
 		try {
+			LOGGING.info("开始加载注册表...");
+			loadRegistries();
 			LOGGING.info("开始加载配置清单...");
 			getResourceFromProperties(path);
 			LOGGING.info("加载配置上下文:[ {} ],成功!", threadPoolOperationMap);
 			isBuilder = true;
+			long watchInterval = Long.getLong(WATCH_INTERVAL_PROPERTY, 0L).longValue();
+			if (watchInterval > 0L) {
+				watch(watchInterval);
+			}
 		} catch (Exception e) {
 			LOGGING.error("加载配置失败!", e);
 		}
@@ -114,61 +410,749 @@ public class Factory {
 		return threadPoolOperationMap.get(operation);
 	}
 	
+	/**
+	 * @return 加载时的配置清单文件路径,从根路径起始
+	 */
+	public static String getManifestPath() {
+		return manifestPath;
+	}
+	
+	/**
+	 * 根据顶级业务,获取加载配置时编译生成的执行计划
+	 * @param operation 顶级业务
+	 * @return 执行计划,如果返回null,表示未知的业务
+	 */
+	public static ExecutionPlan getExecutionPlan(String operation) {
+		return executionPlanMap.get(operation);
+	}
+	
+	/**
+	 * 以编程方式向顶级业务注册一个类型化单元子业务,同名的重复注册替换原有的实现
+	 * a.共享顶级业务的线程池和指标,在registeredOperation中声明的,按单元子业务单独配置的超时、缓存、熔断等同样生效
+	 * b.执行计划整体替换,执行中的业务继续使用替换前的执行计划;热加载时保留已注册的单元子业务
+	 * c.不属于seriesOperation,不参与doMaximumOperation系列接口,通过返回的句柄调用:QuickQuarantine.doMinimumOperation(句柄, 输入)
+	 * d.同名重复注册后,此前返回的句柄不再可用
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务,不能与seriesOperation重名
+	 * @param implementation 类型化单元子业务的实现,可以是lambda或持有状态的对象
+	 * @return 类型化单元子业务的句柄,输入、输出的类型与implementation一致
+	 */
+	public static synchronized <I, O> TypedOperation<I, O> register(String operation, String subOperation, SubOperation<I, O> implementation) {
+		ExecutionPlan plan = executionPlanMap.get(operation);
+		if (plan == null) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],未知的顶级业务,不能注册单元子业务[ %s ]!", operation, subOperation));
+		}
+		if (subOperation == null || subOperation.trim().isEmpty()) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],缺少注册的单元子业务!", operation));
+		}
+		if (plan.indexOf(subOperation) >= 0) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],注册的单元子业务[ %s ]与seriesOperation重名!", operation, subOperation));
+		}
+		OperationInvoker invoker = OperationInvoker.of(implementation);
+		Properties config = mergeConfig(registryConfigMap.get(operation), configMap.get(operation));
+		SubOperationPlan subPlan = compileSubOperationPlan(operation, subOperation, invoker, config, plan.getRegisteredPlan(subOperation));
+		Map<String, OperationInvoker> registeredInvoker = registeredInvokerMap.get(operation);
+		if (registeredInvoker == null) {
+			registeredInvoker = new HashMap<String, OperationInvoker>();
+			registeredInvokerMap.put(operation, registeredInvoker);
+		}
+		registeredInvoker.put(subOperation, invoker);
+		Map<String, ExecutionPlan> newExecutionPlanMap = new HashMap<String, ExecutionPlan>(executionPlanMap);
+		newExecutionPlanMap.put(operation, plan.withRegisteredPlan(subPlan));
+		executionPlanMap = newExecutionPlanMap;
+		LOGGING.info("业务:[ {} ],注册类型化单元子业务:[ {}={} ]", new Object[]{operation, subOperation, invoker.getClassMethod()});
+		return new TypedOperation<I, O>(operation, subOperation, invoker);
+	}
+	
+	/**
+	 * 通过ServiceLoader加载注解处理器生成的注册表,预先登记直接调用的调用器
+	 * 只读取META-INF/services中登记的注册表,不扫描类路径,也不通过反射解析执行计划
+	 */
+	private static void loadRegistries() {
+		for (OperationRegistry registry : ServiceLoader.load(OperationRegistry.class)) {
+			registry.registerInvokers();
+			registryConfigMap.put(registry.getOperation(), registry.getConfig());
+			LOGGING.info("加载注册表:[ 业务={}, 注册表={} ],成功!", registry.getOperation(), registry.getClass().getName());
+		}
+	}
+	
+	/**
+	 * 以编程方式加载注解处理器生成的注册表,启动后才加入类路径的注册表使用
+	 * 配置清单中有同名顶级业务的,其配置文件中的配置项覆盖注册表中的配置;已存在的线程池在线调整
+	 * @param registry 注册表
+	 */
+	public static synchronized void register(OperationRegistry registry) {
+		String operation = registry.getOperation();
+		Properties defaults = registry.getConfig();
+		Properties config = mergeConfig(defaults, configMap.get(operation));
+		// 先登记调用器,解析执行计划时直接使用
+		registry.registerInvokers();
+		Map<String, Object> map = getThreadPoolParam(config);
+		ExecutionPlan plan = compileExecutionPlan(operation, config, map, executionPlanMap.get(operation), new ArrayList<String>());
+		registryConfigMap.put(operation, defaults);
+		Map<String, Map<String, Object>> newThreadPoolOperationMap = new HashMap<String, Map<String, Object>>(threadPoolOperationMap);
+		Map<String, ExecutionPlan> newExecutionPlanMap = new HashMap<String, ExecutionPlan>(executionPlanMap);
+		newThreadPoolOperationMap.put(operation, map);
+		newExecutionPlanMap.put(operation, plan);
+		threadPoolOperationMap = newThreadPoolOperationMap;
+		executionPlanMap = newExecutionPlanMap;
+		LOGGING.info("加载注册表:[ 业务={}, 注册表={} ],成功!", operation, registry.getClass().getName());
+	}
+	
+	/**
+	 * 配置文件中的配置项覆盖注册表中的配置
+	 * @param defaults 注册表中的配置,可以为null
+	 * @param config 配置文件中的配置,可以为null
+	 * @return 合并后的配置
+	 */
+	private static Properties mergeConfig(Properties defaults, Properties config) {
+		if (defaults == null) {
+			return config;
+		}
+		if (config == null) {
+			return defaults;
+		}
+		Properties merged = new Properties();
+		merged.putAll(defaults);
+		merged.putAll(config);
+		return merged;
+	}
+	
 	private static void getResourceFromProperties(String path) throws Exception {
 		// 获取配置清单文件 ,格式:业务类型 = 映射文件名
 		Properties p = (Properties) getProperties(path).get(0);
 		Enumeration<?> e = p.propertyNames();  
-		String dirName = FactoryBuilder.getDirName();
+		Map<String, Map<String, Object>> newThreadPoolOperationMap = new HashMap<String, Map<String, Object>>();
+		Map<String, ExecutionPlan> newExecutionPlanMap = new HashMap<String, ExecutionPlan>();
+		Map<String, Properties> newConfigMap = new HashMap<String, Properties>();
 	    while (e.hasMoreElements()) {
 	        String operation = (String) e.nextElement();  
-	        String fileName = p.getProperty(operation); 
-	        // 根据配置清单文件,获取相关映射文件,映射文件起始于清单文件所在工作目录
-	        String filePath = String.format("%s%s%s", dirName, FactoryBuilder.SEPARATOR, fileName);
-	        List<Object> list = getProperties(filePath);
+	        List<Object> list = getOperationProperties(p, operation);
 	        Properties config = (Properties) list.get(0);
 	        String realPath = ((URL)list.get(1)).getFile();
 	        LOGGING.info("正在加载配置:[ 业务={}, 文件路径={} ]...", operation, realPath);	  
-	        /**
-			 *  从配置中读取线程池相关参数 
-			 *  a.在数据库中配置,提供想相应的表并至少包含如下字段,所有数据类型可以统一为String
-			 *  b.要作为一个独立的框架,使用配置文件的移植性比较好
-			 */
-			Map<String, Object> map = new HashMap<String, Object>();
-			map.put(MAXIMUM_POOL_SIZE, Integer.parseInt(checkEmpty(config.getProperty(MAXIMUM_POOL_SIZE))));
-			map.put(CORE_POOL_SIZE, Integer.parseInt(checkEmpty(config.getProperty(CORE_POOL_SIZE))));
-			map.put(WORK_QUEUE_SIZE, Integer.parseInt(checkEmpty(config.getProperty(WORK_QUEUE_SIZE))));
-			map.put(KEEP_ALIVE_TIME, Integer.parseInt(checkEmpty(config.getProperty(KEEP_ALIVE_TIME))));
-			if ("0".equals(checkEmpty(config.getProperty(ALLOW_CORE_THREAD_TIMEOUT)))) {
-				map.put(ALLOW_CORE_THREAD_TIMEOUT, Boolean.FALSE);
-			} else {
-				map.put(ALLOW_CORE_THREAD_TIMEOUT, Boolean.TRUE);
-			}
-			
-			// 封装一系列类方法以及对应的单元子业务 
-			List<String> seriesClassMethod = Arrays.asList(checkEmpty(config.getProperty(SERIES_CLASS_STATIC_METHOD_NAME)).split(VERTICAL_LINE));
-			List<String> seriesOperation = Arrays.asList(checkEmpty(config.getProperty(SERIES_OPERATION)).split(VERTICAL_LINE));
-			map.put(SERIES_CLASS_STATIC_METHOD_NAME, seriesClassMethod);
-			map.put(SERIES_OPERATION, seriesOperation);
-			threadPoolOperationMap.put(operation, map);
+			Properties merged = mergeConfig(registryConfigMap.get(operation), config);
+			Map<String, Object> map = getThreadPoolParam(merged);
+			newThreadPoolOperationMap.put(operation, map);
+			newExecutionPlanMap.put(operation, compileExecutionPlan(operation, merged, map, null, new ArrayList<String>()));
+			newConfigMap.put(operation, config);
 			LOGGING.info("加载配置:[ 业务={}, 文件路径={} ],成功!", operation, realPath);
 	    }  
+		// 只在注册表中的顶级业务,不读取配置文件
+		for (Map.Entry<String, Properties> entry : registryConfigMap.entrySet()) {
+			String operation = entry.getKey();
+			if (p.containsKey(operation)) {
+				continue;
+			}
+			Map<String, Object> map = getThreadPoolParam(entry.getValue());
+			newThreadPoolOperationMap.put(operation, map);
+			newExecutionPlanMap.put(operation, compileExecutionPlan(operation, entry.getValue(), map, null, new ArrayList<String>()));
+			LOGGING.info("加载配置:[ 业务={}, 注册表 ],成功!", operation);
+		}
+		threadPoolOperationMap = newThreadPoolOperationMap;
+		executionPlanMap = newExecutionPlanMap;
+		configMap = newConfigMap;
+	}
+	
+	/**
+	 * 根据配置清单文件,获取相关映射文件,映射文件起始于清单文件所在工作目录
+	 * @param p 配置清单
+	 * @param operation 顶级业务
+	 * @return 顶级业务的配置及其URL
+	 * @throws IOException
+	 */
+	private static List<Object> getOperationProperties(Properties p, String operation) throws IOException {
+		String fileName = p.getProperty(operation).trim(); 
+		String filePath = String.format("%s%s%s", manifestDirName, FactoryBuilder.SEPARATOR, fileName);
+		return getProperties(filePath);
+	}
+	
+	/**
+	 *  从配置中读取线程池相关参数 
+	 *  a.在数据库中配置,提供想相应的表并至少包含如下字段,所有数据类型可以统一为String
+	 *  b.要作为一个独立的框架,使用配置文件的移植性比较好
+	 * @param config 顶级业务的配置
+	 * @return 线程池参数列表,同时包含一系列类方法以及对应的单元子业务
+	 */
+	private static Map<String, Object> getThreadPoolParam(Properties config) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put(MAXIMUM_POOL_SIZE, Integer.parseInt(checkEmpty(config.getProperty(MAXIMUM_POOL_SIZE))));
+		map.put(CORE_POOL_SIZE, Integer.parseInt(checkEmpty(config.getProperty(CORE_POOL_SIZE))));
+		map.put(WORK_QUEUE_SIZE, Integer.parseInt(checkEmpty(config.getProperty(WORK_QUEUE_SIZE))));
+		map.put(KEEP_ALIVE_TIME, Integer.parseInt(checkEmpty(config.getProperty(KEEP_ALIVE_TIME))));
+		if ("0".equals(checkEmpty(config.getProperty(ALLOW_CORE_THREAD_TIMEOUT)))) {
+			map.put(ALLOW_CORE_THREAD_TIMEOUT, Boolean.FALSE);
+		} else {
+			map.put(ALLOW_CORE_THREAD_TIMEOUT, Boolean.TRUE);
+		}
+		
+		String executorType = config.getProperty(EXECUTOR_TYPE, EXECUTOR_TYPE_PLATFORM).trim();
+		if (!EXECUTOR_TYPE_PLATFORM.equals(executorType) && !EXECUTOR_TYPE_VIRTUAL.equals(executorType) && !EXECUTOR_TYPE_FORKJOIN.equals(executorType)) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],未知的执行器类型!", EXECUTOR_TYPE, executorType));
+		}
+		map.put(EXECUTOR_TYPE, executorType);
+		
+		String workQueueType = config.getProperty(WORK_QUEUE_TYPE, WORK_QUEUE_TYPE_FIFO).trim();
+		if (!WORK_QUEUE_TYPE_FIFO.equals(workQueueType) && !WORK_QUEUE_TYPE_PRIORITY.equals(workQueueType)) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],未知的阻塞队列类型!", WORK_QUEUE_TYPE, workQueueType));
+		}
+		if (WORK_QUEUE_TYPE_PRIORITY.equals(workQueueType) && !EXECUTOR_TYPE_PLATFORM.equals(executorType)) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],只有平台线程的线程池支持优先级阻塞队列!", WORK_QUEUE_TYPE, workQueueType));
+		}
+		long agingTime = getLong(config, WORK_QUEUE_AGING_TIME, DEFAULT_WORK_QUEUE_AGING_TIME);
+		if (agingTime <= 0L) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],等待时间必须大于0!", WORK_QUEUE_AGING_TIME, agingTime));
+		}
+		map.put(WORK_QUEUE_TYPE, workQueueType);
+		map.put(WORK_QUEUE_AGING_TIME, agingTime);
+		
+		String rejectPolicy = config.getProperty(REJECT_POLICY, REJECT_POLICY_BLOCK).trim();
+		if (!REJECT_POLICY_BLOCK.equals(rejectPolicy) && !REJECT_POLICY_WAIT.equals(rejectPolicy) && !REJECT_POLICY_CALLER_RUNS.equals(rejectPolicy)
+				&& !REJECT_POLICY_SHED.equals(rejectPolicy) && !REJECT_POLICY_SHED_OLDEST.equals(rejectPolicy)) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],未知的饱和策略!", REJECT_POLICY, rejectPolicy));
+		}
+		long waitTime = getLong(config, REJECT_POLICY_WAIT_TIME, DEFAULT_REJECT_POLICY_WAIT_TIME);
+		if (waitTime <= 0L) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],等待时间必须大于0!", REJECT_POLICY_WAIT_TIME, waitTime));
+		}
+		map.put(REJECT_POLICY, rejectPolicy);
+		map.put(REJECT_POLICY_WAIT_TIME, waitTime);
+		
+		// 封装一系列类方法以及对应的单元子业务 
+		List<String> seriesClassMethod = Arrays.asList(checkEmpty(config.getProperty(SERIES_CLASS_STATIC_METHOD_NAME)).split(VERTICAL_LINE));
+		List<String> seriesOperation = Arrays.asList(checkEmpty(config.getProperty(SERIES_OPERATION)).split(VERTICAL_LINE));
+		// 一次性解析并校验执行计划,配置错误在此处即失败
+		List<OperationInvoker> seriesInvoker = new ArrayList<OperationInvoker>(seriesClassMethod.size());
+		for (String classMethod : seriesClassMethod) {
+			seriesInvoker.add(OperationInvoker.getInvoker(classMethod.trim()));
+		}
+		map.put(SERIES_CLASS_STATIC_METHOD_NAME, seriesClassMethod);
+		map.put(SERIES_OPERATION, seriesOperation);
+		map.put(SERIES_INVOKER, seriesInvoker);
+		return map;
+	}
+	
+	/**
+	 * 重新加载配置清单及各顶级业务的配置,只处理有变化的顶级业务
+	 * a.已存在的线程池在线调整大小,不重建线程池,不丢弃执行中和阻塞队列中的业务
+	 * b.重新编译的执行计划整体替换,执行中的业务继续使用替换前的执行计划;配置未变的单元子业务沿用原有的结果缓存
+	 * c.某个顶级业务的配置有误时,保持该业务原有的配置,不影响其他业务
+	 * d.从配置清单中移除的顶级业务不再接受新的请求,其线程池从线程池列表中移除并关闭:执行中与阻塞队列中的业务照常完成,
+	 *   仍持有替换前执行计划的调用者之后提交的业务以拒绝结果登记
+	 * @return 变化列表,没有变化时为空
+	 */
+	public static synchronized List<String> reload() {
+		List<String> changes = new ArrayList<String>();
+		Properties p;
+		try {
+			p = (Properties) getProperties(manifestPath).get(0);
+		} catch (Exception e) {
+			LOGGING.error("重新加载配置清单失败,保持原配置!", e);
+			changes.add(String.format("配置清单:[ %s ],重新加载失败,保持原配置:[ %s ]", manifestPath, e.toString()));
+			return changes;
+		}
+		Map<String, Map<String, Object>> newThreadPoolOperationMap = new HashMap<String, Map<String, Object>>(threadPoolOperationMap);
+		Map<String, ExecutionPlan> newExecutionPlanMap = new HashMap<String, ExecutionPlan>(executionPlanMap);
+		Map<String, Properties> newConfigMap = new HashMap<String, Properties>(configMap);
+		List<String> removed = new ArrayList<String>();
+		for (String operation : p.stringPropertyNames()) {
+			try {
+				Properties config = (Properties) getOperationProperties(p, operation).get(0);
+				Properties oldConfig = configMap.get(operation);
+				if (config.equals(oldConfig)) {
+					continue;
+				}
+				ExecutionPlan oldPlan = executionPlanMap.get(operation);
+				Properties merged = mergeConfig(registryConfigMap.get(operation), config);
+				Map<String, Object> map = getThreadPoolParam(merged);
+				List<String> operationChanges = new ArrayList<String>();
+				ExecutionPlan plan = compileExecutionPlan(operation, merged, map, oldPlan, operationChanges);
+				if (oldPlan == null) {
+					changes.add(String.format("业务:[ %s ],新增:[ %s ]", operation, plan.getSeriesOperation()));
+				} else {
+					diffExecutionPlan(oldPlan, plan, operationChanges);
+					if (operationChanges.isEmpty()) {
+						operationChanges.add(String.format("业务:[ %s ],配置已更新", operation));
+					}
+					changes.addAll(operationChanges);
+				}
+				newThreadPoolOperationMap.put(operation, map);
+				newExecutionPlanMap.put(operation, plan);
+				newConfigMap.put(operation, config);
+			} catch (Exception e) {
+				LOGGING.error(String.format("重新加载业务:[ %s ]失败,保持原配置!", operation), e);
+				changes.add(String.format("业务:[ %s ],重新加载失败,保持原配置:[ %s ]", operation, e.toString()));
+			}
+		}
+		for (String operation : configMap.keySet()) {
+			if (!p.containsKey(operation)) {
+				Properties defaults = registryConfigMap.get(operation);
+				// 注册表中仍有该顶级业务,恢复注册表中的配置
+				if (defaults != null) {
+					try {
+						Map<String, Object> map = getThreadPoolParam(defaults);
+						ExecutionPlan plan = compileExecutionPlan(operation, defaults, map, executionPlanMap.get(operation), new ArrayList<String>());
+						newThreadPoolOperationMap.put(operation, map);
+						newExecutionPlanMap.put(operation, plan);
+						newConfigMap.remove(operation);
+						changes.add(String.format("业务:[ %s ],配置文件已移除,恢复注册表中的配置", operation));
+					} catch (Exception e) {
+						LOGGING.error(String.format("重新加载业务:[ %s ]失败,保持原配置!", operation), e);
+						changes.add(String.format("业务:[ %s ],重新加载失败,保持原配置:[ %s ]", operation, e.toString()));
+					}
+					continue;
+				}
+				AdaptivePoolController.stop(operation);
+				registeredInvokerMap.remove(operation);
+				newThreadPoolOperationMap.remove(operation);
+				newExecutionPlanMap.remove(operation);
+				newConfigMap.remove(operation);
+				removed.add(operation);
+				changes.add(String.format("业务:[ %s ],已移除", operation));
+			}
+		}
+		// 整体替换,读取方要么看到全部旧的执行计划,要么看到全部新的执行计划
+		threadPoolOperationMap = newThreadPoolOperationMap;
+		executionPlanMap = newExecutionPlanMap;
+		configMap = newConfigMap;
+		// 替换之后再关闭已移除业务的线程池,阻塞队列中的业务仍会执行完毕
+		for (String operation : removed) {
+			OperationThreadPool.remove(operation);
+		}
+		for (String change : changes) {
+			LOGGING.info("重新加载配置:{}", change);
+		}
+		return changes;
+	}
+	
+	/**
+	 * 开始监视配置文件,按周期轮询,有变化时重新加载
+	 * 使用轮询而不是WatchService,配置文件在类路径中,可能位于jar或网络文件系统中
+	 * @param interval 轮询周期(毫秒)
+	 */
+	public static synchronized void watch(long interval) {
+		if (interval <= 0L) {
+			throw new QuickQuarantineException(String.format("热加载的轮询周期:[ %s ],必须大于0!", interval));
+		}
+		if (watcher == null) {
+			watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "QuickQuarantineWatcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		if (watchFuture != null) {
+			watchFuture.cancel(false);
+		}
+		watchFuture = watcher.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					reload();
+				} catch (RuntimeException e) {
+					// 不能抛出,否则不再轮询
+					LOGGING.error("重新加载配置失败!", e);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		LOGGING.info("开始监视配置文件:[ 配置清单={}, 周期={}ms ]", manifestPath, interval);
+	}
+	
+	/**
+	 * 停止监视配置文件
+	 */
+	public static synchronized void unwatch() {
+		if (watchFuture != null) {
+			watchFuture.cancel(false);
+			watchFuture = null;
+			LOGGING.info("停止监视配置文件:[ 配置清单={} ]", manifestPath);
+		}
+	}
+	
+	/**
+	 * 比较新旧执行计划,记录单元子业务的变化
+	 * @param oldPlan 原执行计划
+	 * @param plan 新执行计划
+	 * @param changes 变化列表
+	 */
+	private static void diffExecutionPlan(ExecutionPlan oldPlan, ExecutionPlan plan, List<String> changes) {
+		String operation = plan.getOperation();
+		if (oldPlan.getTimeout() != plan.getTimeout()) {
+			changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", operation, TIMEOUT, oldPlan.getTimeout(), plan.getTimeout()));
+		}
+		for (String subOperation : oldPlan.getSeriesOperation()) {
+			if (plan.indexOf(subOperation) < 0) {
+				changes.add(String.format("业务:[ %s ],移除单元子业务:[ %s ]", operation, subOperation));
+			}
+		}
+		for (int i = 0; i < plan.size(); i++) {
+			SubOperationPlan subPlan = plan.getSubOperationPlan(i);
+			SubOperationPlan oldSubPlan = oldPlan.getSubOperationPlan(subPlan.getOperation());
+			if (oldSubPlan == null) {
+				changes.add(String.format("业务:[ %s ],新增单元子业务:[ %s=%s ]", operation, subPlan.getOperation(), subPlan.getInvoker().getClassMethod()));
+				continue;
+			}
+			if (oldSubPlan.getInvoker() != subPlan.getInvoker()) {
+				changes.add(String.format("业务:[ %s.%s ],执行计划:[ %s -> %s ]", operation, subPlan.getOperation(), oldSubPlan.getInvoker().getClassMethod(), subPlan.getInvoker().getClassMethod()));
+			}
+			// 只是沿用默认超时时间的,不再单独记录
+			boolean inherited = oldSubPlan.getTimeout() == oldPlan.getTimeout() && subPlan.getTimeout() == plan.getTimeout();
+			if (oldSubPlan.getTimeout() != subPlan.getTimeout() && !inherited) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), TIMEOUT, oldSubPlan.getTimeout(), subPlan.getTimeout()));
+			}
+			if (oldSubPlan.getCache() != subPlan.getCache()) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), CACHE, oldSubPlan.getCache(), subPlan.getCache()));
+			}
+			if ((oldSubPlan.getSingleFlight() == null) != (subPlan.getSingleFlight() == null)) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), COALESCE, oldSubPlan.getSingleFlight() != null, subPlan.getSingleFlight() != null));
+			}
+			if (oldSubPlan.getHedge() != subPlan.getHedge()) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), HEDGE, oldSubPlan.getHedge(), subPlan.getHedge()));
+			}
+			if (oldSubPlan.getTrace() != subPlan.getTrace()) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), TRACE, oldSubPlan.getTrace(), subPlan.getTrace()));
+			}
+			if (oldSubPlan.getCircuitBreaker() != subPlan.getCircuitBreaker()) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), BREAKER, oldSubPlan.getCircuitBreaker(), subPlan.getCircuitBreaker()));
+			}
+			if (!oldPlan.getDependsOn(subPlan.getOperation()).equals(plan.getDependsOn(subPlan.getOperation()))) {
+				changes.add(String.format("业务:[ %s.%s ],%s:[ %s -> %s ]", operation, subPlan.getOperation(), DEPENDS_ON, oldPlan.getDependsOn(subPlan.getOperation()), plan.getDependsOn(subPlan.getOperation())));
+			}
+		}
 	}
 	
 	private static List<Object> getProperties(String path) throws IOException {
 		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
 		URL url = contextClassLoader.getResource(path);
-		InputStream is = contextClassLoader.getResourceAsStream(path);
-		if (is == null) {
+		if (url == null) {
 			throw new QuickQuarantineException(String.format("相对路径:[ %s ],找不到资源!", path));
 		}
+		// 每次重新打开,不使用缓存的连接,热加载时才能读到最新的内容
+		URLConnection connection = url.openConnection();
+		connection.setUseCaches(false);
 		Properties p = new Properties();
-		p.load(is);
+		InputStream is = connection.getInputStream();
+		try {
+			p.load(is);
+		} finally {
+			is.close();
+		}
 		List<Object> list = new ArrayList<Object>(2);
 		list.add(p);
 		list.add(url);
 		return list;
 	}
 	
+	/**
+	 * 编译执行计划:线程池,按声明顺序排列的单元子业务以及对应的调用器、超时时间、结果缓存、并发调用合并,并注册指标
+	 * 配置错误在此处即失败,校验全部通过后才调整已存在的线程池
+	 * @param operation 顶级业务
+	 * @param config 顶级业务的配置
+	 * @param map 线程池参数列表
+	 * @param oldPlan 热加载时的原执行计划,配置未变的单元子业务沿用原有的结果缓存,首次加载时为null
+	 * @param changes 线程池的变化列表
+	 * @return 执行计划
+	 */
+	@SuppressWarnings("unchecked")
+	private static ExecutionPlan compileExecutionPlan(String operation, Properties config, Map<String, Object> map, ExecutionPlan oldPlan, List<String> changes) {
+		List<String> seriesOperation = (List<String>) map.get(SERIES_OPERATION);
+		List<OperationInvoker> seriesInvoker = (List<OperationInvoker>) map.get(SERIES_INVOKER);
+		if (seriesOperation.size() != seriesInvoker.size()) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],一系列类的静态方法与一系列单元子业务个数不一致!", operation));
+		}
+		List<String> registeredOperation = getRegisteredOperation(config);
+		List<String> allOperation = new ArrayList<String>(seriesOperation);
+		for (String subOperation : registeredOperation) {
+			if (seriesOperation.contains(subOperation)) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],%s中的单元子业务[ %s ]与seriesOperation重名!", operation, REGISTERED_OPERATION, subOperation));
+			}
+			allOperation.add(subOperation);
+		}
+		// 单独配置的单元子业务必须存在,依赖关系只能在seriesOperation之间
+		checkSubKeys(operation, config, TIMEOUT, allOperation);
+		checkSubKeys(operation, config, CACHE, allOperation);
+		checkSubKeys(operation, config, COALESCE, allOperation);
+		checkSubKeys(operation, config, BREAKER, allOperation);
+		checkSubKeys(operation, config, HEDGE, allOperation);
+		checkSubKeys(operation, config, DEPENDS_ON, seriesOperation);
+		checkSubKeys(operation, config, TRACE, allOperation);
+		checkSubKeys(operation, config, TRACE_SAMPLE, allOperation);
+		checkDependsOn(operation, config);
+		long timeout = getLong(config, TIMEOUT, 0L);
+		int size = seriesOperation.size();
+		List<SubOperationPlan> seriesPlan = new ArrayList<SubOperationPlan>(size);
+		for (int i = 0; i < size; i++) {
+			String subOperation = seriesOperation.get(i);
+			SubOperationPlan oldSubPlan = oldPlan == null ? null : oldPlan.getSubOperationPlan(subOperation);
+			seriesPlan.add(compileSubOperationPlan(operation, subOperation, seriesInvoker.get(i), config, oldSubPlan));
+		}
+		// 重新编译已注册的类型化单元子业务
+		Map<String, SubOperationPlan> registeredPlan = new HashMap<String, SubOperationPlan>();
+		Map<String, OperationInvoker> registeredInvoker = registeredInvokerMap.get(operation);
+		if (registeredInvoker != null) {
+			for (Map.Entry<String, OperationInvoker> entry : registeredInvoker.entrySet()) {
+				String subOperation = entry.getKey();
+				SubOperationPlan oldSubPlan = oldPlan == null ? null : oldPlan.getRegisteredPlan(subOperation);
+				registeredPlan.put(subOperation, compileSubOperationPlan(operation, subOperation, entry.getValue(), config, oldSubPlan));
+			}
+		}
+		ExecutorService threadPool = OperationThreadPool.getThreadPool(operation, map);
+		MetricsRegistry.getThreadPoolMetrics(operation, threadPool);
+		OperationMetrics metrics = MetricsRegistry.getOperationMetrics(operation);
+		ExecutionPlan plan = new ExecutionPlan(operation, threadPool, seriesPlan, timeout, metrics, getDependsOn(config), registeredPlan);
+		boolean adaptive = getLong(config, ADAPTIVE, 0L) != 0L;
+		int minPoolSize = 0;
+		int maxPoolSize = 0;
+		long interval = 0L;
+		if (adaptive) {
+			if (!(threadPool instanceof ThreadPoolExecutor)) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],自适应调整只支持平台线程的线程池!", operation));
+			}
+			int corePoolSize = ((Integer) map.get(CORE_POOL_SIZE)).intValue();
+			int maximumPoolSize = ((Integer) map.get(MAXIMUM_POOL_SIZE)).intValue();
+			minPoolSize = (int) getLong(config, ADAPTIVE_MIN_POOL_SIZE, corePoolSize);
+			maxPoolSize = (int) getLong(config, ADAPTIVE_MAX_POOL_SIZE, maximumPoolSize);
+			interval = getLong(config, ADAPTIVE_INTERVAL, DEFAULT_ADAPTIVE_INTERVAL);
+			if (minPoolSize < 0 || maxPoolSize <= 0 || minPoolSize > maxPoolSize || interval <= 0L) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],自适应调整的配置[ 线程数范围=[%s, %s], 周期=%s ]无效!", operation, minPoolSize, maxPoolSize, interval));
+			}
+		}
+		// 校验全部通过,在线调整已存在的线程池
+		changes.addAll(OperationThreadPool.resize(operation, map, adaptive));
+		if (adaptive) {
+			AdaptivePoolController.start(operation, (ThreadPoolExecutor) threadPool, metrics, minPoolSize, maxPoolSize, interval);
+		} else {
+			AdaptivePoolController.stop(operation);
+		}
+		return plan;
+	}
+	
+	/**
+	 * 编译单元子业务的执行计划,配置文件中的和以编程方式注册的单元子业务共用
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @param invoker 已解析好的调用器
+	 * @param config 顶级业务的配置
+	 * @param oldSubPlan 热加载时的原单元子业务执行计划,配置未变的沿用原有的结果缓存、并发调用合并、熔断器等
+	 * @return 单元子业务执行计划
+	 */
+	private static SubOperationPlan compileSubOperationPlan(String operation, String subOperation, OperationInvoker invoker, Properties config, SubOperationPlan oldSubPlan) {
+		long subTimeout = getLong(config, TIMEOUT + "." + subOperation, getLong(config, TIMEOUT, 0L));
+		OperationCache cache = null;
+		long ttl = getLong(config, CACHE + "." + subOperation + "." + CACHE_TTL, 0L);
+		if (ttl > 0L) {
+			int maxEntries = (int) getLong(config, CACHE + "." + subOperation + "." + CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_ENTRIES);
+			OperationCache oldCache = oldSubPlan == null ? null : oldSubPlan.getCache();
+			// 缓存配置及执行计划未变,沿用原有的结果缓存
+			if (oldCache != null && oldCache.getTtl() == ttl && oldCache.getMaxEntries() == maxEntries && oldSubPlan.getInvoker() == invoker) {
+				cache = oldCache;
+			} else {
+				cache = new OperationCache(subOperation, ttl, maxEntries);
+			}
+		}
+		OperationSingleFlight singleFlight = null;
+		if (getLong(config, COALESCE + "." + subOperation, getLong(config, COALESCE, 0L)) != 0L) {
+			OperationSingleFlight oldSingleFlight = oldSubPlan == null ? null : oldSubPlan.getSingleFlight();
+			singleFlight = oldSingleFlight != null ? oldSingleFlight : new OperationSingleFlight(subOperation);
+		}
+		OperationCircuitBreaker circuitBreaker = compileCircuitBreaker(operation, subOperation, config, oldSubPlan);
+		OperationMetrics metrics = MetricsRegistry.getSubOperationMetrics(operation, subOperation);
+		OperationHedge hedge = compileHedge(operation, subOperation, config, oldSubPlan, metrics);
+		OperationTrace trace = compileTrace(operation, subOperation, config, oldSubPlan);
+		return SubOperationPlan.builder(subOperation, invoker).timeout(subTimeout).cache(cache).singleFlight(singleFlight).circuitBreaker(circuitBreaker).hedge(hedge).trace(trace).metrics(metrics).build();
+	}
+	
+	/**
+	 * 读取单元子业务的熔断器配置
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @param config 顶级业务的配置
+	 * @param oldSubPlan 热加载时的原单元子业务执行计划,配置未变的沿用原有的熔断器及其状态
+	 * @return 熔断器,未开启时为null
+	 */
+	private static OperationCircuitBreaker compileCircuitBreaker(String operation, String subOperation, Properties config, SubOperationPlan oldSubPlan) {
+		String prefix = BREAKER + "." + subOperation + ".";
+		long failureRate = getLong(config, prefix + BREAKER_FAILURE_RATE, 0L);
+		long slowCallRate = getLong(config, prefix + BREAKER_SLOW_CALL_RATE, 0L);
+		if (failureRate <= 0L && slowCallRate <= 0L) {
+			return null;
+		}
+		long slowCallDuration = getLong(config, prefix + BREAKER_SLOW_CALL_DURATION, 0L);
+		long window = getLong(config, prefix + BREAKER_WINDOW, DEFAULT_BREAKER_WINDOW);
+		long minimumCalls = getLong(config, prefix + BREAKER_MINIMUM_CALLS, Math.min(DEFAULT_BREAKER_MINIMUM_CALLS, window));
+		long openTime = getLong(config, prefix + BREAKER_OPEN_TIME, DEFAULT_BREAKER_OPEN_TIME);
+		long halfOpenCalls = getLong(config, prefix + BREAKER_HALF_OPEN_CALLS, DEFAULT_BREAKER_HALF_OPEN_CALLS);
+		if (failureRate < 0L || failureRate > 100L || slowCallRate < 0L || slowCallRate > 100L || (slowCallRate > 0L && slowCallDuration <= 0L)
+				|| window <= 0L || window > Integer.MAX_VALUE || minimumCalls <= 0L || minimumCalls > window || openTime <= 0L || halfOpenCalls <= 0L || halfOpenCalls > window) {
+			throw new QuickQuarantineException(String.format("业务:[ %s.%s ],熔断器的配置[ 失败率=%s, 慢调用率=%s, 慢调用耗时=%s, 窗口=%s, 最少调用数=%s, 熔断时间=%s, 探测调用数=%s ]无效!",
+					operation, subOperation, failureRate, slowCallRate, slowCallDuration, window, minimumCalls, openTime, halfOpenCalls));
+		}
+		OperationCircuitBreaker circuitBreaker = new OperationCircuitBreaker(operation + "." + subOperation, (int) failureRate, (int) slowCallRate, slowCallDuration, (int) window, (int) minimumCalls, openTime, (int) halfOpenCalls);
+		OperationCircuitBreaker oldCircuitBreaker = oldSubPlan == null ? null : oldSubPlan.getCircuitBreaker();
+		if (oldCircuitBreaker != null && oldCircuitBreaker.hasSameConfig(circuitBreaker)) {
+			return oldCircuitBreaker;
+		}
+		MetricsRegistry.registerCircuitBreaker(operation, subOperation, circuitBreaker);
+		return circuitBreaker;
+	}
+	
+	/**
+	 * 读取单元子业务的对冲请求配置
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @param config 顶级业务的配置
+	 * @param oldSubPlan 热加载时的原单元子业务执行计划,配置未变的沿用原有的对冲及其预算
+	 * @param metrics 单元子业务的指标
+	 * @return 对冲请求,未开启时为null
+	 */
+	private static OperationHedge compileHedge(String operation, String subOperation, Properties config, SubOperationPlan oldSubPlan, OperationMetrics metrics) {
+		String prefix = HEDGE + "." + subOperation + ".";
+		long delay = getLong(config, prefix + HEDGE_DELAY, 0L);
+		long percentile = getLong(config, prefix + HEDGE_PERCENTILE, 0L);
+		if (delay <= 0L && percentile <= 0L) {
+			return null;
+		}
+		long budget = getLong(config, prefix + HEDGE_BUDGET, DEFAULT_HEDGE_BUDGET);
+		if (delay < 0L || percentile < 0L || percentile > 100L || budget <= 0L || budget > 100L) {
+			throw new QuickQuarantineException(String.format("业务:[ %s.%s ],对冲请求的配置[ 延迟=%s, 百分位=%s, 预算=%s ]无效!", new Object[]{operation, subOperation, delay, percentile, budget}));
+		}
+		OperationHedge hedge = new OperationHedge(operation + "." + subOperation, delay, (int) percentile, (int) budget, metrics);
+		OperationHedge oldHedge = oldSubPlan == null ? null : oldSubPlan.getHedge();
+		return oldHedge != null && oldHedge.hasSameConfig(hedge) ? oldHedge : hedge;
+	}
+	
+	/**
+	 * 读取单元子业务的执行日志配置
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @param config 顶级业务的配置
+	 * @param oldSubPlan 热加载时的原单元子业务执行计划,配置未变的沿用原有的执行日志
+	 * @return 执行日志,关闭时为null
+	 */
+	private static OperationTrace compileTrace(String operation, String subOperation, Properties config, SubOperationPlan oldSubPlan) {
+		String level = config.getProperty(TRACE + "." + subOperation, config.getProperty(TRACE, TRACE_SUMMARY)).trim();
+		long sampleRate = getLong(config, TRACE_SAMPLE + "." + subOperation, getLong(config, TRACE_SAMPLE, DEFAULT_TRACE_SAMPLE));
+		if (TRACE_OFF.equals(level)) {
+			return null;
+		}
+		if ((!TRACE_SUMMARY.equals(level) && !TRACE_PAYLOAD.equals(level)) || sampleRate <= 0L) {
+			throw new QuickQuarantineException(String.format("业务:[ %s.%s ],执行日志的配置[ 级别=%s, 采样率=%s ]无效!", operation, subOperation, level, sampleRate));
+		}
+		OperationTrace trace = new OperationTrace(operation + "." + subOperation, TRACE_PAYLOAD.equals(level) ? OperationTrace.LEVEL_PAYLOAD : OperationTrace.LEVEL_SUMMARY, sampleRate, OperationEventRing.getDefault());
+		OperationTrace oldTrace = oldSubPlan == null ? null : oldSubPlan.getTrace();
+		return oldTrace != null && oldTrace.hasSameConfig(trace) ? oldTrace : trace;
+	}
+	
+	/**
+	 * 校验形如"前缀.单元子业务[.xxx]"的配置项中的单元子业务都属于当前顶级业务
+	 * @param operation 顶级业务
+	 * @param config 顶级业务的配置
+	 * @param prefix 前缀
+	 * @param seriesOperation 一系列单元子业务
+	 */
+	private static void checkSubKeys(String operation, Properties config, String prefix, List<String> seriesOperation) {
+		for (String subKey : getSubKeys(config, prefix)) {
+			int i = subKey.indexOf('.');
+			String subOperation = i < 0 ? subKey : subKey.substring(0, i);
+			if (!seriesOperation.contains(subOperation)) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],配置项[ %s.%s ]中的单元子业务不存在!", operation, prefix, subKey));
+			}
+		}
+	}
+	
+	/**
+	 * 校验有依赖的单元子业务没有开启结果缓存和并发调用合并
+	 * 两者都只以调用者的输入为键,上游的结果不同时会得到按其他上游结果计算的结果
+	 * @param operation 顶级业务
+	 * @param config 顶级业务的配置
+	 */
+	private static void checkDependsOn(String operation, Properties config) {
+		for (String subOperation : getSubKeys(config, DEPENDS_ON)) {
+			if (getLong(config, CACHE + "." + subOperation + "." + CACHE_TTL, 0L) > 0L) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],有依赖的单元子业务[ %s ]不能开启结果缓存!", operation, subOperation));
+			}
+			if (getLong(config, COALESCE + "." + subOperation, getLong(config, COALESCE, 0L)) != 0L) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],有依赖的单元子业务[ %s ]不能合并并发调用!", operation, subOperation));
+			}
+		}
+	}
+	
+	/**
+	 * 读取可选的数值配置项
+	 * @param config 配置
+	 * @param key 配置项
+	 * @param defaultValue 未配置时的默认值
+	 * @return 配置项的值
+	 */
+	private static long getLong(Properties config, String key, long defaultValue) {
+		String s = config.getProperty(key);
+		if (s == null || s.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(s.trim());
+		} catch (NumberFormatException e) {
+			throw new QuickQuarantineException(String.format("配置项:[ %s=%s ],不是有效的数值!", key, s));
+		}
+	}
+	
+	/**
+	 * 读取单元子业务之间的依赖关系,上游单元子业务是否存在、是否循环依赖由执行计划校验
+	 * @param config 顶级业务的配置
+	 * @return 每个单元子业务依赖的上游单元子业务
+	 */
+	private static Map<String, List<String>> getDependsOn(Properties config) {
+		Map<String, List<String>> dependsOn = new HashMap<String, List<String>>();
+		for (String subOperation : getSubKeys(config, DEPENDS_ON)) {
+			List<String> upstream = new ArrayList<String>();
+			for (String s : config.getProperty(DEPENDS_ON + "." + subOperation).split(VERTICAL_LINE)) {
+				if (!s.trim().isEmpty()) {
+					upstream.add(s.trim());
+				}
+			}
+			dependsOn.put(subOperation, upstream);
+		}
+		return dependsOn;
+	}
+	
+	/**
+	 * 读取预留给类型化单元子业务的名称
+	 * @param config 顶级业务的配置
+	 * @return 单元子业务列表,未配置时为空
+	 */
+	private static List<String> getRegisteredOperation(Properties config) {
+		List<String> list = new ArrayList<String>();
+		String s = config.getProperty(REGISTERED_OPERATION);
+		if (s == null) {
+			return list;
+		}
+		for (String subOperation : s.split(VERTICAL_LINE)) {
+			if (!subOperation.trim().isEmpty()) {
+				list.add(subOperation.trim());
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * 获取形如"前缀.单元子业务"的配置项中的单元子业务列表
+	 * @param config 配置
+	 * @param prefix 前缀
+	 * @return 单元子业务列表
+	 */
+	private static List<String> getSubKeys(Properties config, String prefix) {
+		List<String> list = new ArrayList<String>();
+		String start = prefix + ".";
+		for (String key : config.stringPropertyNames()) {
+			if (key.startsWith(start)) {
+				list.add(key.substring(start.length()));
+			}
+		}
+		return list;
+	}
+	
 	private static String checkEmpty(String s) {
 		if (s == null || s.isEmpty()) {
 			throw new QuickQuarantineException("缺少配置项!");
@@ -0,0 +1,32 @@
+package com.github.quickquarantine;
+
+import java.util.List;
+
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 单元子业务结果监听器,按完成顺序逐个接收结果
+ * 不必等待最慢的单元子业务,先完成的结果可以先处理下游业务或先返回部分响应
+ * 注意:回调在登记结果的线程中执行,不要在回调中做耗时的阻塞操作:
+ * a.正常完成、执行失败:执行单元子业务的工作线程
+ * b.超时:通知调用者的线程OperationCallback-*,不在超时定时器中执行
+ * c.命中缓存、熔断中、线程池饱和被拒绝(shed等饱和策略):提交的线程,即调用者的线程;shedOldest挤出的业务则是挤出它的提交线程
+ * d.合并调用的跟随者、依赖关系中被跳过的下游:领头者或上游登记结果的线程
+ * 
+ * @author shangbincheng001
+ *
+ */
+public interface OperationListener {
+	
+	/**
+	 * 一个单元子业务完成
+	 * @param or 单元子业务的处理结果
+	 */
+	public void onResult(OperationResult or);
+	
+	/**
+	 * 全部单元子业务完成,在最后一个onResult之后调用
+	 * @param operationResult 全部单元子业务的处理结果
+	 */
+	public void onComplete(List<OperationResult> operationResult);
+}
@@ -0,0 +1,77 @@
+package com.github.quickquarantine;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+
+/**
+ * 阻塞的单元子业务结果迭代器,按完成顺序逐个返回结果
+ * hasNext()阻塞到下一个单元子业务完成,全部完成后返回false
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationResultIterator implements OperationListener, Iterator<OperationResult> {
+	
+	/**
+	 * 全部完成的标记
+	 */
+	private static final OperationResult END = new OperationResult();
+	
+	private final BlockingQueue<OperationResult> queue = new LinkedBlockingQueue<OperationResult>();
+	
+	/**
+	 * 已取出尚未返回的结果
+	 */
+	private OperationResult next;
+	
+	@Override
+	public void onResult(OperationResult or) {
+		queue.add(or);
+	}
+	
+	@Override
+	public void onComplete(List<OperationResult> operationResult) {
+		queue.add(END);
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new QuickQuarantineException("等待单元子业务结果时被中断!");
+			}
+		}
+		if (next == END) {
+			// 保留结束标记,重复调用仍返回false
+			queue.add(END);
+			next = null;
+			return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public OperationResult next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		OperationResult or = next;
+		next = null;
+		return or;
+	}
+	
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+}
@@ -1,6 +1,9 @@
 package com.github.quickquarantine;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
@@ -20,7 +23,7 @@ public interface QuickQuarantine {
 	* @param allMinimumOperation 部分单元子业务列表
 	* @param ofMaximumOperation 所属顶级非单元业务
 	* @param input 部分单元子业务参数顺序输入
-	* @return 部分单元子业务处理结果
+	* @return 部分单元子业务处理结果,与allMinimumOperation一一对应
 	*/
 	public List<OperationResult> doAllOfMinimumOperation(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input) throws Exception;
 	
@@ -32,10 +35,10 @@ public interface QuickQuarantine {
 	* b.顶级单元业务
 	* @param maximumOperation 顶级业务
 	* @param input 所有单元子业务参数顺序输入
-	* @return 顶级业务的处理结果
+	* @return 顶级业务的处理结果,与seriesOperation一一对应
 	*/
 	public List<OperationResult> doMaximumOperation(String maximumOperation, List<OperationInput> input) throws Exception;
-
+	
 	/**
 	* 指定一个单元业务,将它动态地,额外地纳入到所属顶级业务或特性相近的其他业务的线程池中
 	* 单元业务:以为不可分割的,或视为一个整体的
@@ -48,4 +51,155 @@ public interface QuickQuarantine {
 	* @return 单元业务的处理结果
 	*/
 	public OperationResult doMinimumOperation(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input) throws Exception;
+	
+	/**
+	* doAllOfMinimumOperation的异步版本,调用者不等待
+	* 由最后完成的单元子业务所在的子线程完成future;未知的业务或参数个数不一致以QuickQuarantineException异常完成future,不在调用线程中抛出
+	* @param allMinimumOperation 部分单元子业务列表
+	* @param ofMaximumOperation 所属顶级非单元业务
+	* @param input 部分单元子业务参数顺序输入
+	* @return 以部分单元子业务处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationAsync(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input);
+	
+	/**
+	* doMaximumOperation的异步版本,调用者不等待
+	* 由最后完成的单元子业务所在的子线程完成future;未知的业务或参数个数不一致以QuickQuarantineException异常完成future,不在调用线程中抛出
+	* @param maximumOperation 顶级业务
+	* @param input 所有单元子业务参数顺序输入
+	* @return 以顶级业务的处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doMaximumOperationAsync(String maximumOperation, List<OperationInput> input);
+	
+	/**
+	* doMinimumOperation的异步版本,调用者不等待
+	* 由执行单元业务的子线程完成future;未知的业务、无效的类方法或提交失败以错误结果完成,不在调用线程中抛出
+	* @param minimumOperation 单元业务
+	* @param classMethod 单元业务的执行计划,类的全限命名.静态方法名
+	* @param ofMaximumOperation 所属顶级业务或特性相近的其他业务
+	* @param input 单元业务参数输入
+	* @return 以单元业务的处理结果完成的future
+	*/
+	public CompletableFuture<OperationResult> doMinimumOperationAsync(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input);
+	
+	/**
+	* 带截止时间的doAllOfMinimumOperationAsync
+	* 与单元子业务配置的超时时间取先到期者,到期未完成的单元子业务返回超时结果
+	* @param allMinimumOperation 部分单元子业务列表
+	* @param ofMaximumOperation 所属顶级非单元业务
+	* @param input 部分单元子业务参数顺序输入
+	* @param timeout 本次调用的超时时间,小于等于0表示不限时
+	* @param unit 超时时间单位
+	* @return 以部分单元子业务处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationAsync(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input, long timeout, TimeUnit unit);
+	
+	/**
+	* 带截止时间的doMaximumOperationAsync
+	* 与单元子业务配置的超时时间取先到期者,到期未完成的单元子业务返回超时结果
+	* @param maximumOperation 顶级业务
+	* @param input 所有单元子业务参数顺序输入
+	* @param timeout 本次调用的超时时间,小于等于0表示不限时
+	* @param unit 超时时间单位
+	* @return 以顶级业务的处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doMaximumOperationAsync(String maximumOperation, List<OperationInput> input, long timeout, TimeUnit unit);
+	
+	/**
+	* 带截止时间的doMinimumOperationAsync
+	* 与单元业务配置的超时时间取先到期者,到期未完成则返回超时结果
+	* @param minimumOperation 单元业务
+	* @param classMethod 单元业务的执行计划,类的全限命名.静态方法名
+	* @param ofMaximumOperation 所属顶级业务或特性相近的其他业务
+	* @param input 单元业务参数输入
+	* @param timeout 本次调用的超时时间,小于等于0表示不限时
+	* @param unit 超时时间单位
+	* @return 以单元业务的处理结果完成的future
+	*/
+	public CompletableFuture<OperationResult> doMinimumOperationAsync(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input, long timeout, TimeUnit unit);
+	
+	/**
+	* doAllOfMinimumOperation的流式版本,调用者不等待
+	* 每个单元子业务完成时立即通知监听器,全部完成后再通知一次
+	* @param allMinimumOperation 部分单元子业务列表
+	* @param ofMaximumOperation 所属顶级非单元业务
+	* @param input 部分单元子业务参数顺序输入
+	* @param listener 按完成顺序接收结果的监听器
+	* @return 以部分单元子业务处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationStream(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input, OperationListener listener);
+	
+	/**
+	* doMaximumOperation的流式版本,调用者不等待
+	* 每个单元子业务完成时立即通知监听器,全部完成后再通知一次
+	* @param maximumOperation 顶级业务
+	* @param input 所有单元子业务参数顺序输入
+	* @param listener 按完成顺序接收结果的监听器
+	* @return 以顶级业务的处理结果完成的future
+	*/
+	public CompletableFuture<List<OperationResult>> doMaximumOperationStream(String maximumOperation, List<OperationInput> input, OperationListener listener);
+	
+	/**
+	* doAllOfMinimumOperation的流式版本
+	* @param allMinimumOperation 部分单元子业务列表
+	* @param ofMaximumOperation 所属顶级非单元业务
+	* @param input 部分单元子业务参数顺序输入
+	* @return 按完成顺序返回结果的阻塞迭代器,全部完成后hasNext()返回false
+	*/
+	public Iterator<OperationResult> doAllOfMinimumOperationStream(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input);
+	
+	/**
+	* doMaximumOperation的流式版本
+	* @param maximumOperation 顶级业务
+	* @param input 所有单元子业务参数顺序输入
+	* @return 按完成顺序返回结果的阻塞迭代器,全部完成后hasNext()返回false
+	*/
+	public Iterator<OperationResult> doMaximumOperationStream(String maximumOperation, List<OperationInput> input);
+	
+	/**
+	* 针对同一个顶级业务的批量请求,一次性提交所有请求的所有单元子业务
+	* 整批共享一次执行计划查找和一个结果汇总器
+	* @param maximumOperation 顶级业务
+	* @param input 每个请求的所有单元子业务参数顺序输入
+	* @return 按请求分组的处理结果,与input一一对应
+	*/
+	public List<List<OperationResult>> doBatchMaximumOperation(String maximumOperation, List<List<OperationInput>> input) throws Exception;
+	
+	/**
+	* doBatchMaximumOperation的异步版本,调用者不等待
+	* 由整批最后完成的单元子业务所在的子线程完成future;未知的业务或参数个数不一致以QuickQuarantineException异常完成future
+	* @param maximumOperation 顶级业务
+	* @param input 每个请求的所有单元子业务参数顺序输入
+	* @return 以按请求分组的处理结果完成的future
+	*/
+	public CompletableFuture<List<List<OperationResult>>> doBatchMaximumOperationAsync(String maximumOperation, List<List<OperationInput>> input);
+	
+	/**
+	* 执行通过Factory.register以编程方式注册的类型化单元子业务
+	* 输入直接传给单元子业务,输出直接返回,不需要OperationInput和OperationResult;输入、输出的类型由注册时返回的句柄确定
+	* @param operation Factory.register返回的句柄
+	* @param input 单元子业务的输入
+	* @return 单元子业务的输出
+	* @throws QuickQuarantineException 未成功(失败、超时、熔断、拒绝)或句柄已因重复注册失效时抛出,包含处理结果
+	*/
+	public <I, O> O doMinimumOperation(TypedOperation<I, O> operation, I input) throws Exception;
+	
+	/**
+	* 类型化doMinimumOperation的异步版本,调用者不等待;未知的业务或提交失败也以异常完成future,不在调用线程中抛出
+	* @param operation Factory.register返回的句柄
+	* @param input 单元子业务的输入
+	* @return 以单元子业务的输出完成的future,未成功时以QuickQuarantineException异常完成
+	*/
+	public <I, O> CompletableFuture<O> doMinimumOperationAsync(TypedOperation<I, O> operation, I input);
+	
+	/**
+	* 带截止时间的类型化doMinimumOperationAsync
+	* 与单元子业务配置的超时时间取先到期者
+	* @param operation Factory.register返回的句柄
+	* @param input 单元子业务的输入
+	* @param timeout 本次调用的超时时间,小于等于0表示不限时
+	* @param unit 超时时间单位
+	* @return 以单元子业务的输出完成的future,未成功时以QuickQuarantineException异常完成
+	*/
+	public <I, O> CompletableFuture<O> doMinimumOperationAsync(TypedOperation<I, O> operation, I input, long timeout, TimeUnit unit);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.github.quickquarantine;
+
+/**
+ * 类型化的单元子业务,通过Factory.register以编程方式注册到顶级业务,与配置文件中的seriesOperation并存
+ * a.输入、输出的类型由实现者决定,直接传给执行器,不需要包装成OperationInput,也不需要从OperationResult中取出结果
+ * b.可以是lambda,也可以是持有状态(比如客户端、连接池)的对象的方法,不再限于类的静态方法
+ * c.与配置文件中的单元子业务一样,共享顶级业务的线程池,支持超时、结果缓存、并发调用合并、熔断、对冲、执行日志等单独配置
+ * 抛出异常或返回null视为执行失败;作为缓存或合并调用的键时,输入需要正确实现equals和hashCode,提交后不能再修改
+ * 
+ * @author shangbincheng001
+ *
+ * @param <I> 输入的类型
+ * @param <O> 输出的类型
+ */
+@FunctionalInterface
+public interface SubOperation<I, O> {
+	
+	/**
+	 * 执行单元子业务
+	 * @param input 输入
+	 * @return 输出,不能为null
+	 * @throws Exception 执行失败
+	 */
+	public O apply(I input) throws Exception;
+}
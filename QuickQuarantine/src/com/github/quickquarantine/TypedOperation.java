@@ -0,0 +1,56 @@
+package com.github.quickquarantine;
+
+import com.github.quickquarantine.plan.OperationInvoker;
+
+/**
+ * 类型化单元子业务的句柄,由Factory.register返回
+ * a.输入、输出的类型在注册时由SubOperation确定,通过QuickQuarantine.doMinimumOperation(句柄, 输入)调用,调用者不再自行指定输出的类型
+ * b.句柄只对应注册时的实现:同名重复注册后原句柄不再可用,调用时以QuickQuarantineException失败,不会按原来的类型取出新实现的输出
+ * c.热加载不影响句柄
+ * 
+ * @author shangbincheng001
+ *
+ * @param <I> 输入的类型
+ * @param <O> 输出的类型
+ */
+public final class TypedOperation<I, O> {
+	
+	/**
+	 * 注册到的顶级业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 类型化单元子业务
+	 */
+	private final String subOperation;
+	
+	/**
+	 * 注册时包装实现的调用器,用于判断句柄是否仍对应当前注册的实现
+	 */
+	private final OperationInvoker invoker;
+	
+	TypedOperation(String operation, String subOperation, OperationInvoker invoker) {
+		this.operation = operation;
+		this.subOperation = subOperation;
+		this.invoker = invoker;
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public String getSubOperation() {
+		return subOperation;
+	}
+	
+	public OperationInvoker getInvoker() {
+		return invoker;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("TypedOperation [operation=%s, subOperation=%s, invoker=%s ]", operation, subOperation, invoker.getClassMethod());
+	}
+	
+}
@@ -0,0 +1,27 @@
+package com.github.quickquarantine.annotation;
+
+import java.util.Properties;
+
+/**
+ * 顶级业务的注册表,由OperationRegistryProcessor根据注解生成,启动时通过ServiceLoader加载
+ * 
+ * @author shangbincheng001
+ *
+ */
+public interface OperationRegistry {
+	
+	/**
+	 * @return 顶级业务
+	 */
+	public String getOperation();
+	
+	/**
+	 * @return 顶级业务的配置,与配置文件的格式相同,作为配置文件的默认值
+	 */
+	public Properties getConfig();
+	
+	/**
+	 * 预先登记直接调用各单元子业务的调用器
+	 */
+	public void registerInvokers();
+}
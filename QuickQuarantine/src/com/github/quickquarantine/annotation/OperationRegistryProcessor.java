@@ -0,0 +1,264 @@
+package com.github.quickquarantine.annotation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 编译时根据QuarantinedOperation、QuarantinedSubOperation注解生成顶级业务的注册表
+ * a.每个标注了QuarantinedOperation的类生成一个同包的注册表(类名_OperationRegistry),以lambda直接调用各单元子业务,没有反射
+ * b.所有注册表登记到META-INF/services/com.github.quickquarantine.annotation.OperationRegistry,启动时由ServiceLoader加载,不扫描类路径
+ * c.注解使用错误(方法签名不符、单元子业务重名、顶级业务重名等)在编译时即失败
+ * 使用时在javac中指定 -processor com.github.quickquarantine.annotation.OperationRegistryProcessor,
+ * 或在maven-compiler-plugin的annotationProcessors中配置
+ * 
+ * @author shangbincheng001
+ *
+ */
+@SupportedAnnotationTypes({"com.github.quickquarantine.annotation.QuarantinedOperation", "com.github.quickquarantine.annotation.QuarantinedSubOperation"})
+public class OperationRegistryProcessor extends AbstractProcessor {
+	
+	/**
+	 * 注册表的类名后缀
+	 */
+	public static final String REGISTRY_SUFFIX = "_OperationRegistry";
+	
+	/**
+	 * 已生成的注册表,全部处理完毕后登记到ServiceLoader的配置文件
+	 */
+	private final List<String> registries = new ArrayList<String>();
+	
+	/**
+	 * 已生成的顶级业务及其所在的类,同一次编译中顶级业务不能重名
+	 */
+	private final Map<String, String> operations = new HashMap<String, String>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeServices();
+			return false;
+		}
+		Set<Element> annotated = new HashSet<Element>(roundEnv.getElementsAnnotatedWith(QuarantinedOperation.class));
+		for (Element e : roundEnv.getElementsAnnotatedWith(QuarantinedSubOperation.class)) {
+			if (!annotated.contains(e.getEnclosingElement())) {
+				error(e, "单元子业务所在的类缺少@QuarantinedOperation注解!");
+			}
+		}
+		for (Element e : annotated) {
+			if (e.getKind() != ElementKind.CLASS) {
+				error(e, "@QuarantinedOperation只能用在类上!");
+				continue;
+			}
+			generate((TypeElement) e);
+		}
+		return true;
+	}
+	
+	/**
+	 * 校验一个顶级业务的注解,生成其注册表
+	 * @param type 标注了QuarantinedOperation的类
+	 */
+	private void generate(TypeElement type) {
+		QuarantinedOperation operation = type.getAnnotation(QuarantinedOperation.class);
+		String name = operation.value().trim();
+		if (name.isEmpty()) {
+			error(type, "缺少顶级业务!");
+			return;
+		}
+		String other = operations.put(name, type.getQualifiedName().toString());
+		if (other != null) {
+			error(type, String.format("顶级业务[ %s ]与%s重名!", name, other));
+			return;
+		}
+		Elements elements = processingEnv.getElementUtils();
+		String className = elements.getBinaryName(type).toString();
+		// 单元子业务及其静态方法,保持声明顺序
+		Map<String, String> seriesMethod = new LinkedHashMap<String, String>();
+		boolean valid = true;
+		for (Element e : type.getEnclosedElements()) {
+			QuarantinedSubOperation subOperation = e.getAnnotation(QuarantinedSubOperation.class);
+			if (subOperation == null) {
+				continue;
+			}
+			if (!checkMethod((ExecutableElement) e)) {
+				valid = false;
+				continue;
+			}
+			String subName = subOperation.value().trim();
+			if (subName.isEmpty() || seriesMethod.containsKey(subName)) {
+				error(e, String.format("顶级业务[ %s ],单元子业务[ %s ]为空或重名!", name, subName));
+				valid = false;
+				continue;
+			}
+			seriesMethod.put(subName, e.getSimpleName().toString());
+		}
+		if (seriesMethod.isEmpty()) {
+			error(type, String.format("顶级业务[ %s ],缺少@QuarantinedSubOperation注解的单元子业务!", name));
+			return;
+		}
+		if (!valid) {
+			return;
+		}
+		PackageElement pkg = elements.getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		// 嵌套类以下划线连接外部类名
+		String simpleName = packageName.isEmpty() ? className : className.substring(packageName.length() + 1);
+		String registryName = simpleName.replace('$', '_') + REGISTRY_SUFFIX;
+		String registryQualifiedName = packageName.isEmpty() ? registryName : packageName + "." + registryName;
+		try {
+			Writer w = processingEnv.getFiler().createSourceFile(registryQualifiedName, type).openWriter();
+			try {
+				w.write(render(packageName, registryName, type.getQualifiedName().toString(), className, name, operation, seriesMethod));
+			} finally {
+				w.close();
+			}
+		} catch (IOException e) {
+			error(type, String.format("生成注册表[ %s ]失败:[ %s ]", registryQualifiedName, e.toString()));
+			return;
+		}
+		registries.add(registryQualifiedName);
+	}
+	
+	/**
+	 * 单元子业务的方法必须是 static OperationResult xxx(OperationInput input),且不能是private
+	 * @param method 方法
+	 * @return 是否符合
+	 */
+	private boolean checkMethod(ExecutableElement method) {
+		List<? extends VariableElement> parameters = method.getParameters();
+		if (!method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)
+				|| !OperationResult.class.getName().equals(method.getReturnType().toString())
+				|| parameters.size() != 1 || !OperationInput.class.getName().equals(parameters.get(0).asType().toString())) {
+			error(method, String.format("单元子业务[ %s ]的方法必须是非private的 static %s %s(%s input)!", method.getSimpleName(), OperationResult.class.getSimpleName(), method.getSimpleName(), OperationInput.class.getSimpleName()));
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 生成注册表的源代码,全部使用全限命名,不与所在包中的类冲突
+	 */
+	private static String render(String packageName, String registryName, String qualifiedName, String className, String operation, QuarantinedOperation annotation, Map<String, String> seriesMethod) {
+		StringBuilder seriesOperation = new StringBuilder();
+		StringBuilder seriesClassMethod = new StringBuilder();
+		for (Map.Entry<String, String> entry : seriesMethod.entrySet()) {
+			if (seriesOperation.length() > 0) {
+				seriesOperation.append('|');
+				seriesClassMethod.append('|');
+			}
+			seriesOperation.append(entry.getKey());
+			seriesClassMethod.append(className).append('.').append(entry.getValue());
+		}
+		StringBuilder sb = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			sb.append("package ").append(packageName).append(";\n\n");
+		}
+		// 生成的源文件按编译时的-encoding写出,注释只用ASCII字符
+		sb.append("/**\n * Generated by OperationRegistryProcessor from ").append(qualifiedName).append(", do not edit.\n */\n");
+		sb.append("public final class ").append(registryName).append(" implements com.github.quickquarantine.annotation.OperationRegistry {\n");
+		sb.append("\t\n\tpublic String getOperation() {\n\t\treturn ").append(literal(operation)).append(";\n\t}\n");
+		sb.append("\t\n\tpublic java.util.Properties getConfig() {\n\t\tjava.util.Properties config = new java.util.Properties();\n");
+		appendProperty(sb, Factory.MAXIMUM_POOL_SIZE, String.valueOf(annotation.maximumPoolSize()));
+		appendProperty(sb, Factory.CORE_POOL_SIZE, String.valueOf(annotation.corePoolSize()));
+		appendProperty(sb, Factory.WORK_QUEUE_SIZE, String.valueOf(annotation.workQueueSize()));
+		appendProperty(sb, Factory.KEEP_ALIVE_TIME, String.valueOf(annotation.keepAliveTime()));
+		appendProperty(sb, Factory.ALLOW_CORE_THREAD_TIMEOUT, annotation.allowCoreThreadTimeout() ? "1" : "0");
+		appendProperty(sb, Factory.EXECUTOR_TYPE, annotation.executorType());
+		appendProperty(sb, Factory.TIMEOUT, String.valueOf(annotation.timeout()));
+		appendProperty(sb, Factory.SERIES_OPERATION, seriesOperation.toString());
+		appendProperty(sb, Factory.SERIES_CLASS_STATIC_METHOD_NAME, seriesClassMethod.toString());
+		sb.append("\t\treturn config;\n\t}\n");
+		sb.append("\t\n\tpublic void registerInvokers() {\n");
+		for (String method : seriesMethod.values()) {
+			sb.append("\t\tcom.github.quickquarantine.plan.OperationInvoker.register(").append(literal(className)).append(", ").append(literal(method))
+					.append(", input -> ").append(qualifiedName).append('.').append(method).append("(input));\n");
+		}
+		sb.append("\t}\n\t\n}\n");
+		return sb.toString();
+	}
+	
+	private static void appendProperty(StringBuilder sb, String key, String value) {
+		sb.append("\t\tconfig.setProperty(").append(literal(key)).append(", ").append(literal(value)).append(");\n");
+	}
+	
+	/**
+	 * @return Java字符串字面量
+	 */
+	private static String literal(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20 || c > 0x7e) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+	
+	/**
+	 * 全部处理完毕后,登记生成的注册表
+	 */
+	private void writeServices() {
+		if (registries.isEmpty()) {
+			return;
+		}
+		Filer filer = processingEnv.getFiler();
+		String resource = "META-INF/services/" + OperationRegistry.class.getName();
+		try {
+			FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+			Writer w = file.openWriter();
+			try {
+				for (String registry : registries) {
+					w.write(registry);
+					w.write('\n');
+				}
+			} finally {
+				w.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("登记注册表[ %s ]失败:[ %s ]", resource, e.toString()));
+		}
+	}
+	
+	private void error(Element e, String message) {
+		Messager messager = processingEnv.getMessager();
+		messager.printMessage(Diagnostic.Kind.ERROR, message, e);
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.quickquarantine.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.github.quickquarantine.Factory;
+
+/**
+ * 以注解声明顶级业务,代替配置清单及顶级业务的配置文件
+ * 编译时由OperationRegistryProcessor生成注册表(类名_OperationRegistry),包含线程池参数以及直接调用各单元子业务的调用器
+ * 启动时通过ServiceLoader加载注册表,不再读取配置文件,也不再通过反射解析执行计划
+ * 配置清单中列出的同名顶级业务,其配置文件中的配置项覆盖注解中的配置,可以只配置需要调整的线程池参数
+ * 
+ * 用法:
+ * <pre>
+ * &#64;QuarantinedOperation(value = "operation3", maximumPoolSize = 20, corePoolSize = 10, workQueueSize = 100)
+ * public class Operation3 {
+ * 
+ * 	&#64;QuarantinedSubOperation("operation3_sub1")
+ * 	public static OperationResult sub1(OperationInput input) {...}
+ * }
+ * </pre>
+ * 
+ * @author shangbincheng001
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface QuarantinedOperation {
+	
+	/**
+	 * @return 顶级业务
+	 */
+	String value();
+	
+	/**
+	 * @return 线程池维护线程的最大数量,同配置项maximumPoolSize
+	 */
+	int maximumPoolSize();
+	
+	/**
+	 * @return 线程池维护线程的最少数量,同配置项corePoolSize
+	 */
+	int corePoolSize();
+	
+	/**
+	 * @return 阻塞队列的大小,同配置项workQueueSize
+	 */
+	int workQueueSize();
+	
+	/**
+	 * @return 线程池维护线程所允许的空闲时间(秒),同配置项keepAliveTime
+	 */
+	int keepAliveTime() default 60;
+	
+	/**
+	 * @return 核心线程是否允许超时,同配置项allowCoreThreadTimeout
+	 */
+	boolean allowCoreThreadTimeout() default false;
+	
+	/**
+	 * @return 执行器类型,同配置项executorType
+	 */
+	String executorType() default Factory.EXECUTOR_TYPE_PLATFORM;
+	
+	/**
+	 * @return 默认的超时时间(毫秒),0表示不限时,同配置项timeout
+	 */
+	long timeout() default 0L;
+}
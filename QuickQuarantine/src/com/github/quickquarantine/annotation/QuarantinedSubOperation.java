@@ -0,0 +1,26 @@
+package com.github.quickquarantine.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 以注解声明单元子业务,只能用在标注了QuarantinedOperation的类中
+ * 方法必须是 static OperationResult xxx(OperationInput input),且不能是private
+ * 按方法在源文件中的声明顺序组成seriesOperation
+ * 
+ * @author shangbincheng001
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface QuarantinedSubOperation {
+	
+	/**
+	 * @return 单元子业务
+	 */
+	String value();
+}
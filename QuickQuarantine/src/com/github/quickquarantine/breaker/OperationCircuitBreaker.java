@@ -0,0 +1,325 @@
+package com.github.quickquarantine.breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 单元子业务的熔断器,下游系统故障或变慢时快速失败,不再占用顶级业务共享的线程池
+ * a.CLOSED:正常执行,记录最近window次调用的结果;调用数达到minimumCalls后,失败率或慢调用率达到阈值时熔断
+ * b.OPEN:不再提交到线程池,直接返回熔断结果;经过openTime后进入HALF_OPEN
+ * c.HALF_OPEN:只放行halfOpenCalls个探测调用,其余直接返回熔断结果;探测调用全部完成后,
+ *   失败率或慢调用率仍达到阈值则再次熔断,否则恢复为CLOSED
+ * 失败指已开始执行的调用返回码不是成功(包括错误、超时、异常),慢调用指执行耗时不小于slowCallDuration;
+ * 本地线程池饱和被拒绝、在阻塞队列中即已超时等未执行的调用与下游无关,不计入,只归还许可
+ * 每次状态切换开始新的一代,只记录当前一代放行的调用:熔断前放行、半开时才完成的调用不会混入探测调用的结果
+ * CLOSED状态下判断是否放行不加锁,只有记录结果和状态切换加锁
+ *
+ * @author shangbincheng001
+ *
+ */
+public class OperationCircuitBreaker implements OperationCircuitBreakerMBean {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(OperationCircuitBreaker.class);
+	
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+	
+	private static final byte FAILURE = 1;
+	
+	private static final byte SLOW = 2;
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 失败率阈值(百分比),0表示不按失败率熔断
+	 */
+	private final int failureRateThreshold;
+	
+	/**
+	 * 慢调用率阈值(百分比),0表示不按慢调用率熔断
+	 */
+	private final int slowCallRateThreshold;
+	
+	/**
+	 * 慢调用耗时(纳秒)
+	 */
+	private final long slowCallDuration;
+	
+	/**
+	 * 滑动窗口大小,即最近多少次调用
+	 */
+	private final int windowSize;
+	
+	/**
+	 * 计算失败率的最少调用数
+	 */
+	private final int minimumCalls;
+	
+	/**
+	 * 熔断时间(纳秒)
+	 */
+	private final long openTime;
+	
+	/**
+	 * 半开状态下的探测调用数
+	 */
+	private final int halfOpenCalls;
+	
+	/**
+	 * 滑动窗口,环形缓冲区,每次调用的结果按位记录失败和慢调用
+	 */
+	private final byte[] window;
+	
+	private int index = 0;
+	
+	private int bufferedCalls = 0;
+	
+	private int failureCount = 0;
+	
+	private int slowCount = 0;
+	
+	private volatile State state = State.CLOSED;
+	
+	/**
+	 * 当前一代,每次状态切换加1
+	 */
+	private volatile long generation = 0L;
+	
+	/**
+	 * 熔断开始时间,System.nanoTime()的绝对值
+	 */
+	private long openedTime;
+	
+	/**
+	 * 半开状态下剩余可放行的探测调用数
+	 */
+	private int halfOpenPermits;
+	
+	private final AtomicLong rejectedCount = new AtomicLong(0L);
+	
+	private final AtomicLong transitionCount = new AtomicLong(0L);
+	
+	private volatile String lastTransition = "";
+	
+	/**
+	 * @param operation 单元子业务
+	 * @param failureRateThreshold 失败率阈值(百分比),0表示不按失败率熔断
+	 * @param slowCallRateThreshold 慢调用率阈值(百分比),0表示不按慢调用率熔断
+	 * @param slowCallDuration 慢调用耗时(毫秒)
+	 * @param windowSize 滑动窗口大小
+	 * @param minimumCalls 计算失败率的最少调用数
+	 * @param openTime 熔断时间(毫秒)
+	 * @param halfOpenCalls 半开状态下的探测调用数
+	 */
+	public OperationCircuitBreaker(String operation, int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration, int windowSize, int minimumCalls, long openTime, int halfOpenCalls) {
+		this.operation = operation;
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallDuration = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+		this.windowSize = windowSize;
+		this.minimumCalls = minimumCalls;
+		this.openTime = TimeUnit.MILLISECONDS.toNanos(openTime);
+		this.halfOpenCalls = halfOpenCalls;
+		this.window = new byte[windowSize];
+	}
+	
+	/**
+	 * 判断是否放行本次调用,放行的调用完成后必须调用record或release
+	 * @return 放行时为放行时的代,小于0表示熔断中,应直接返回熔断结果
+	 */
+	public long tryAcquire() {
+		// 先读代再读状态,读到CLOSED时代一定不晚于CLOSED
+		long current = generation;
+		if (state == State.CLOSED) {
+			return current;
+		}
+		synchronized (this) {
+			if (state == State.OPEN) {
+				if (System.nanoTime() - openedTime < openTime) {
+					rejectedCount.incrementAndGet();
+					return -1L;
+				}
+				transition(State.HALF_OPEN);
+				halfOpenPermits = halfOpenCalls;
+			}
+			if (state == State.HALF_OPEN) {
+				if (halfOpenPermits > 0) {
+					halfOpenPermits--;
+					return generation;
+				}
+				rejectedCount.incrementAndGet();
+				return -1L;
+			}
+			return generation;
+		}
+	}
+	
+	/**
+	 * 记录已执行的放行调用的结果
+	 * @param permit tryAcquire返回的代
+	 * @param failure 是否失败
+	 * @param nanos 执行耗时(纳秒)
+	 */
+	public synchronized void record(long permit, boolean failure, long nanos) {
+		if (permit != generation || state == State.OPEN) {
+			// 之前的代放行的调用,不再记录
+			return;
+		}
+		byte outcome = 0;
+		if (failure) {
+			outcome |= FAILURE;
+		}
+		if (slowCallRateThreshold > 0 && nanos >= slowCallDuration) {
+			outcome |= SLOW;
+		}
+		if (bufferedCalls == windowSize) {
+			byte eldest = window[index];
+			if ((eldest & FAILURE) != 0) {
+				failureCount--;
+			}
+			if ((eldest & SLOW) != 0) {
+				slowCount--;
+			}
+		} else {
+			bufferedCalls++;
+		}
+		window[index] = outcome;
+		index = (index + 1) % windowSize;
+		if ((outcome & FAILURE) != 0) {
+			failureCount++;
+		}
+		if ((outcome & SLOW) != 0) {
+			slowCount++;
+		}
+		if (state == State.HALF_OPEN) {
+			// 半开状态下只看探测调用的结果
+			if (bufferedCalls >= halfOpenCalls && halfOpenPermits == 0) {
+				if (isExceeded()) {
+					open();
+				} else {
+					transition(State.CLOSED);
+					clear();
+				}
+			}
+		} else if (bufferedCalls >= minimumCalls && isExceeded()) {
+			open();
+		}
+	}
+	
+	/**
+	 * 放行的调用未执行(本地线程池饱和被拒绝、在阻塞队列中即已超时),不计入结果,半开状态下归还探测许可
+	 * @param permit tryAcquire返回的代
+	 */
+	public synchronized void release(long permit) {
+		if (permit == generation && state == State.HALF_OPEN) {
+			halfOpenPermits++;
+		}
+	}
+	
+	private boolean isExceeded() {
+		return (failureRateThreshold > 0 && failureCount * 100 >= failureRateThreshold * bufferedCalls)
+				|| (slowCallRateThreshold > 0 && slowCount * 100 >= slowCallRateThreshold * bufferedCalls);
+	}
+	
+	private void open() {
+		transition(State.OPEN);
+		openedTime = System.nanoTime();
+		clear();
+	}
+	
+	private void clear() {
+		index = 0;
+		bufferedCalls = 0;
+		failureCount = 0;
+		slowCount = 0;
+	}
+	
+	private void transition(State newState) {
+		State oldState = state;
+		generation++;
+		state = newState;
+		transitionCount.incrementAndGet();
+		lastTransition = String.format("%s -> %s", oldState, newState);
+		if (newState == State.OPEN) {
+			LOGGING.warn("熔断器:[ 业务={}, 状态={} ],失败率={}%,慢调用率={}%", new Object[]{operation, lastTransition, getFailureRate(), getSlowCallRate()});
+		} else {
+			LOGGING.info("熔断器:[ 业务={}, 状态={} ]", operation, lastTransition);
+		}
+	}
+	
+	/**
+	 * 熔断配置是否相同,热加载时沿用原有的熔断器
+	 * @param other 另一个熔断器
+	 * @return 是否相同
+	 */
+	public boolean hasSameConfig(OperationCircuitBreaker other) {
+		return other != null && failureRateThreshold == other.failureRateThreshold && slowCallRateThreshold == other.slowCallRateThreshold
+				&& slowCallDuration == other.slowCallDuration && windowSize == other.windowSize && minimumCalls == other.minimumCalls
+				&& openTime == other.openTime && halfOpenCalls == other.halfOpenCalls;
+	}
+	
+	public State getStateEnum() {
+		return state;
+	}
+	
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+	
+	@Override
+	public String getState() {
+		return state.name();
+	}
+	
+	@Override
+	public synchronized double getFailureRate() {
+		return bufferedCalls == 0 ? 0.0 : failureCount * 100.0 / bufferedCalls;
+	}
+	
+	@Override
+	public synchronized double getSlowCallRate() {
+		return bufferedCalls == 0 ? 0.0 : slowCount * 100.0 / bufferedCalls;
+	}
+	
+	@Override
+	public synchronized int getBufferedCalls() {
+		return bufferedCalls;
+	}
+	
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+	
+	@Override
+	public long getTransitionCount() {
+		return transitionCount.get();
+	}
+	
+	@Override
+	public String getLastTransition() {
+		return lastTransition;
+	}
+	
+	@Override
+	public synchronized void reset() {
+		if (state != State.CLOSED) {
+			transition(State.CLOSED);
+		}
+		clear();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationCircuitBreaker [operation=%s, state=%s, failureRate=%s%%, slowCallRate=%s%%, rejected=%s ]", new Object[]{operation, state, getFailureRate(), getSlowCallRate(), getRejectedCount()});
+	}
+	
+}
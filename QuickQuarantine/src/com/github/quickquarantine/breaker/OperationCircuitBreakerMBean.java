@@ -0,0 +1,53 @@
+package com.github.quickquarantine.breaker;
+
+/**
+ * 单元子业务熔断器的JMX接口
+ *
+ * @author shangbincheng001
+ *
+ */
+public interface OperationCircuitBreakerMBean {
+	
+	String getOperation();
+	
+	/**
+	 * @return 状态:CLOSED、OPEN、HALF_OPEN
+	 */
+	String getState();
+	
+	/**
+	 * @return 滑动窗口中的失败率(百分比)
+	 */
+	double getFailureRate();
+	
+	/**
+	 * @return 滑动窗口中的慢调用率(百分比)
+	 */
+	double getSlowCallRate();
+	
+	/**
+	 * @return 滑动窗口中的调用数
+	 */
+	int getBufferedCalls();
+	
+	/**
+	 * @return 熔断期间快速失败的调用数
+	 */
+	long getRejectedCount();
+	
+	/**
+	 * @return 状态切换次数
+	 */
+	long getTransitionCount();
+	
+	/**
+	 * @return 最近一次状态切换,形如"CLOSED -> OPEN"
+	 */
+	String getLastTransition();
+	
+	/**
+	 * 手工恢复为CLOSED状态,清空滑动窗口
+	 */
+	void reset();
+	
+}
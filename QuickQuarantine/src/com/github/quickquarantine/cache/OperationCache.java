@@ -0,0 +1,176 @@
+package com.github.quickquarantine.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 单元子业务的结果缓存,适用于结果在一段时间内不变的纯查询业务
+ * a.以输入参数(OperationInput或类型化单元子业务的输入)为键,命中时直接在调用者线程返回,不再占用线程池
+ * b.只缓存成功的结果
+ * c.超过存活时间的结果失效;超过最大条目数时,淘汰最久未使用的结果(LRU)
+ * d.统计命中、未命中、淘汰次数,方便调整配置
+ * 注意:作为键的输入参数在提交后不能再修改
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationCache {
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 存活时间(纳秒)
+	 */
+	private final long ttl;
+	
+	/**
+	 * 最大条目数
+	 */
+	private final int maxEntries;
+	
+	private final AtomicLong hitCount = new AtomicLong(0L);
+	
+	private final AtomicLong missCount = new AtomicLong(0L);
+	
+	private final AtomicLong evictionCount = new AtomicLong(0L);
+	
+	/**
+	 * 按访问顺序排列,最久未使用的在最前
+	 */
+	private final LinkedHashMap<Object, CacheEntry> map;
+	
+	/**
+	 * @param operation 单元子业务
+	 * @param ttl 存活时间(毫秒)
+	 * @param maxEntries 最大条目数
+	 */
+	public OperationCache(String operation, long ttl, final int maxEntries) {
+		this.operation = operation;
+		this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.maxEntries = maxEntries;
+		this.map = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 4513318735862519021L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest) {
+				if (size() > OperationCache.this.maxEntries) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * 获取缓存的结果
+	 * @param input 输入参数
+	 * @return 缓存结果的副本,如果返回null,表示未命中或已失效
+	 */
+	public OperationResult get(Object input) {
+		CacheEntry entry;
+		synchronized (map) {
+			entry = map.get(input);
+			if (entry != null && entry.expireTime - System.nanoTime() <= 0L) {
+				map.remove(input);
+				evictionCount.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		// 返回副本,防止调用者修改缓存的结果
+		return entry.result.copy();
+	}
+	
+	/**
+	 * 缓存结果,只缓存成功的结果
+	 * @param input 输入参数
+	 * @param or 结果
+	 */
+	public void put(Object input, OperationResult or) {
+		if (!OperationResult.SUCCESS.equals(or.getResultCode())) {
+			return;
+		}
+		CacheEntry entry = new CacheEntry(or.copy(), System.nanoTime() + ttl);
+		synchronized (map) {
+			map.put(input, entry);
+		}
+	}
+	
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		synchronized (map) {
+			map.clear();
+		}
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return 存活时间(毫秒)
+	 */
+	public long getTtl() {
+		return TimeUnit.NANOSECONDS.toMillis(ttl);
+	}
+	
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	public int size() {
+		synchronized (map) {
+			return map.size();
+		}
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationCache [operation=%s, size=%s, hit=%s, miss=%s, eviction=%s ]", new Object[]{operation, size(), getHitCount(), getMissCount(), getEvictionCount()});
+	}
+	
+	/**
+	 * 缓存条目
+	 */
+	private static class CacheEntry {
+		
+		private final OperationResult result;
+		
+		/**
+		 * 失效时间,System.nanoTime()的绝对值
+		 */
+		private final long expireTime;
+		
+		private CacheEntry(OperationResult result, long expireTime) {
+			this.result = result;
+			this.expireTime = expireTime;
+		}
+	}
+}
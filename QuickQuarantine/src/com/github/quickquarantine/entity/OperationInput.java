@@ -1,7 +1,10 @@
 package com.github.quickquarantine.entity;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+
+import com.github.quickquarantine.exception.QuickQuarantineException;
 /**
  * 单元子业务的输入,有三种不同的收参方式
  * a.列表 
@@ -18,6 +21,15 @@ public class OperationInput {
 	
 	public static final byte O_TYPE = 2;
 	
+	/** 优先级:高,比如用户实时交互的请求 */
+	public static final byte PRIORITY_HIGH = 0;
+	
+	/** 优先级:普通,默认 */
+	public static final byte PRIORITY_NORMAL = 1;
+	
+	/** 优先级:低,比如批量任务 */
+	public static final byte PRIORITY_LOW = 2;
+	
 	private List<Object> list;
 	
 	private Map<String, Object> map;
@@ -26,6 +38,17 @@ public class OperationInput {
 	
 	private byte form;
 	
+	/**
+	 * 优先级,顶级业务配置了优先级阻塞队列时,高优先级的单元子业务先出队,不参与判断相等
+	 */
+	private byte priority = PRIORITY_NORMAL;
+	
+	/**
+	 * 依赖的上游单元子业务的结果,顶级业务配置了dependsOn时由框架传入,不参与判断相等
+	 * 结果缓存和并发调用合并只以调用者的输入为键,加载配置时拒绝为有依赖的单元子业务开启
+	 */
+	private Map<String, OperationResult> upstream = Collections.emptyMap();
+	
 	private OperationInput() {
 		super();
 	}
@@ -50,22 +73,70 @@ public class OperationInput {
 		oi.setForm(O_TYPE);
 		return oi;
 	}
-
+	
 	private void setList(List<Object> list) {
 		this.list = list;
 	}
-
+	
 	private void setMap(Map<String, Object> map) {
 		this.map = map;
 	}
-
+	
 	private void setO(Object o) {
 		this.o = o;
 	}
-
+	
 	public void setForm(byte form) {
 		this.form = form;
 	}
+	
+	/**
+	 * @return 依赖的上游单元子业务的结果,以单元子业务为键,没有依赖时为空
+	 */
+	public Map<String, OperationResult> getUpstream() {
+		return upstream;
+	}
+	
+	/**
+	 * @param subOperation 上游单元子业务
+	 * @return 上游单元子业务的结果,不存在时为null
+	 */
+	public OperationResult getUpstream(String subOperation) {
+		return upstream.get(subOperation);
+	}
+	
+	/**
+	 * 复制输入并附带上游单元子业务的结果,不修改调用者的输入
+	 * @param upstream 上游单元子业务的结果
+	 * @return 新的输入
+	 */
+	public OperationInput withUpstream(Map<String, OperationResult> upstream) {
+		OperationInput oi = new OperationInput();
+		oi.list = list;
+		oi.map = map;
+		oi.o = o;
+		oi.form = form;
+		oi.priority = priority;
+		oi.upstream = Collections.unmodifiableMap(upstream);
+		return oi;
+	}
+	
+	public byte getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * @param priority 优先级,PRIORITY_HIGH、PRIORITY_NORMAL或PRIORITY_LOW
+	 * @return 当前输入,方便链式调用
+	 */
+	public OperationInput setPriority(byte priority) {
+		if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) {
+			throw new QuickQuarantineException(String.format("优先级:[ %s ],无效!", priority));
+		}
+		this.priority = priority;
+		return this;
+	}
+	
 	/**
 	 * 根据输入类型,从输入包装类中获取输入
 	 * 如果输入类型与封箱时类型不匹配时,返回null
@@ -84,6 +155,32 @@ public class OperationInput {
 		}
 	}
 	
+	/**
+	 * 以输入类型和输入内容判断相等,可作为结果缓存的键
+	 */
+	@Override
+	public int hashCode() {
+		Object input = getInput(form);
+		return 31 * form + (input == null ? 0 : input.hashCode());
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof OperationInput)) {
+			return false;
+		}
+		OperationInput other = (OperationInput) obj;
+		if (form != other.form) {
+			return false;
+		}
+		Object input = getInput(form);
+		Object otherInput = other.getInput(form);
+		return input == null ? otherInput == null : input.equals(otherInput);
+	}
+	
 	@Override
 	public String toString() {
 		switch (form) {
@@ -10,6 +10,18 @@ public class OperationResult implements Serializable {
 	/** QuickQuarantine统一标准成功码  */
 	public static final String SUCCESS = "success";
 	
+	/** QuickQuarantine统一标准超时码  */
+	public static final String TIMEOUT = "timeout";
+	
+	/** QuickQuarantine统一标准熔断码,单元子业务熔断中,未执行  */
+	public static final String CIRCUIT_OPEN = "circuitOpen";
+	
+	/** QuickQuarantine统一标准拒绝码,线程池饱和,按饱和策略拒绝,未执行  */
+	public static final String REJECTED = "rejected";
+	
+	/** QuickQuarantine统一标准跳过码,依赖的上游单元子业务未成功,未执行  */
+	public static final String SKIPPED = "skipped";
+	
 	/** 具体业务 */
 	private String operation;
 	
@@ -23,23 +35,23 @@ public class OperationResult implements Serializable {
 	private Object result;
 	
 	private static final long serialVersionUID = 736190871922642627L;
-
+	
 	public String getOperation() {
 		return operation;
 	}
-
+	
 	public void setOperation(String operation) {
 		this.operation = operation;
 	}
-
+	
 	public String getErrorReason() {
 		return errorReason;
 	}
-
+	
 	public String getResultCode() {
 		return resultCode;
 	}
-
+	
 	public void error(String errorReason) {
 		this.resultCode = ERROR;
 		this.errorReason = errorReason;
@@ -49,18 +61,51 @@ public class OperationResult implements Serializable {
 		this.resultCode = SUCCESS;
 	}
 	
+	public void timeout(String errorReason) {
+		this.resultCode = TIMEOUT;
+		this.errorReason = errorReason;
+	}
+	
+	public void circuitOpen(String errorReason) {
+		this.resultCode = CIRCUIT_OPEN;
+		this.errorReason = errorReason;
+	}
+	
+	public void rejected(String errorReason) {
+		this.resultCode = REJECTED;
+		this.errorReason = errorReason;
+	}
+	
+	public void skipped(String errorReason) {
+		this.resultCode = SKIPPED;
+		this.errorReason = errorReason;
+	}
+	
 	public Object getResult() {
 		return result;
 	}
-
+	
 	public void setResult(Object result) {
 		this.result = result;
 	}
-
+	
 	public OperationResult() {
 		super();
 	}
-
+	
+	/**
+	 * 浅拷贝,结果缓存用来隔离调用方对返回结果本身的修改(不含返回对象内部)
+	 * @return 新的结果
+	 */
+	public OperationResult copy() {
+		OperationResult or = new OperationResult();
+		or.operation = operation;
+		or.errorReason = errorReason;
+		or.resultCode = resultCode;
+		or.result = result;
+		return or;
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("OperationResult [operation=%s, errorReason=%s, resultCode=%s, result=%s ]", operation, errorReason, resultCode, result);
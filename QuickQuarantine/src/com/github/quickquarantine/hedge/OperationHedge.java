@@ -0,0 +1,183 @@
+package com.github.quickquarantine.hedge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.quickquarantine.metrics.OperationMetrics;
+
+/**
+ * 单元子业务的对冲请求,用于降低幂等的单元子业务的长尾耗时(比如访问多副本的下游系统)
+ * a.单元子业务提交后经过对冲延迟仍未完成时,再提交一份相同的调用,先完成的结果生效,后完成的被中断或放弃其结果
+ * b.对冲延迟可以是固定值,也可以是实时测量的执行耗时百分位(比如p95);样本数不足时不对冲;
+ *   百分位每REFRESH_INTERVAL重新计算一次,提交时读取缓存的值,不在提交路径上遍历直方图
+ * c.对冲预算:每次调用积累budget%个令牌,每次对冲消耗1个,即对冲带来的额外负载不超过budget%,防止过载时放大流量
+ * 只能用于幂等的单元子业务,同一次调用可能被执行两次
+ *
+ * @author shangbincheng001
+ *
+ */
+public class OperationHedge {
+	
+	/**
+	 * 按百分位计算对冲延迟时,需要的最少样本数
+	 */
+	private static final long MIN_SAMPLES = 100L;
+	
+	/**
+	 * 按百分位计算的对冲延迟的刷新间隔(纳秒)
+	 */
+	private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+	
+	/**
+	 * 1个令牌,以千分之一为单位累计
+	 */
+	private static final long TOKEN = 1000L;
+	
+	/**
+	 * 令牌上限,空闲时最多积累的对冲次数
+	 */
+	private static final long MAX_TOKENS = 10L * TOKEN;
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 固定的对冲延迟(毫秒),0表示按百分位
+	 */
+	private final long delay;
+	
+	/**
+	 * 按百分位计算对冲延迟,0到100
+	 */
+	private final int percentile;
+	
+	/**
+	 * 对冲预算(百分比)
+	 */
+	private final int budget;
+	
+	/**
+	 * 单元子业务的指标,按百分位计算对冲延迟
+	 */
+	private final OperationMetrics metrics;
+	
+	/**
+	 * 剩余令牌,以千分之一为单位
+	 */
+	private final AtomicLong tokens = new AtomicLong(0L);
+	
+	/**
+	 * 按百分位计算的对冲延迟(纳秒),0表示样本数不足,不对冲
+	 */
+	private volatile long percentileDelay = 0L;
+	
+	/**
+	 * 下次刷新按百分位计算的对冲延迟的时间,System.nanoTime()的绝对值
+	 */
+	private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime());
+	
+	private final AtomicLong hedgedCount = new AtomicLong(0L);
+	
+	private final AtomicLong wonCount = new AtomicLong(0L);
+	
+	/**
+	 * @param operation 单元子业务
+	 * @param delay 固定的对冲延迟(毫秒),0表示按百分位
+	 * @param percentile 按百分位计算对冲延迟,0到100
+	 * @param budget 对冲预算(百分比)
+	 * @param metrics 单元子业务的指标
+	 */
+	public OperationHedge(String operation, long delay, int percentile, int budget, OperationMetrics metrics) {
+		this.operation = operation;
+		this.delay = delay;
+		this.percentile = percentile;
+		this.budget = budget;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * 提交一次调用,积累令牌
+	 * @return 对冲延迟(纳秒),小于等于0表示本次不对冲
+	 */
+	public long onCall() {
+		while (true) {
+			long current = tokens.get();
+			long next = Math.min(MAX_TOKENS, current + budget * TOKEN / 100L);
+			if (current == next || tokens.compareAndSet(current, next)) {
+				break;
+			}
+		}
+		if (delay > 0L) {
+			return TimeUnit.MILLISECONDS.toNanos(delay);
+		}
+		if (metrics == null) {
+			return 0L;
+		}
+		long now = System.nanoTime();
+		long next = nextRefresh.get();
+		// 到期后只有一个提交线程负责刷新,其余的沿用缓存的值
+		if (now - next >= 0L && nextRefresh.compareAndSet(next, now + REFRESH_INTERVAL)) {
+			percentileDelay = metrics.getExecution().getCount() < MIN_SAMPLES ? 0L
+					: Math.max(TimeUnit.MILLISECONDS.toNanos(1L), (long) (metrics.getExecution().getPercentile(percentile) * 1000000.0));
+		}
+		return percentileDelay;
+	}
+	
+	/**
+	 * 对冲前消耗1个令牌
+	 * @return 是否在预算之内
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			long current = tokens.get();
+			if (current < TOKEN) {
+				return false;
+			}
+			if (tokens.compareAndSet(current, current - TOKEN)) {
+				hedgedCount.incrementAndGet();
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * 对冲的调用先完成时记录
+	 */
+	public void recordWon() {
+		wonCount.incrementAndGet();
+	}
+	
+	/**
+	 * @param other 另一个对冲配置
+	 * @return 配置是否相同,热加载时配置相同的沿用原有的对冲及其令牌
+	 */
+	public boolean hasSameConfig(OperationHedge other) {
+		return other != null && delay == other.delay && percentile == other.percentile && budget == other.budget && metrics == other.metrics;
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return 对冲次数
+	 */
+	public long getHedgedCount() {
+		return hedgedCount.get();
+	}
+	
+	/**
+	 * @return 对冲的调用先完成的次数
+	 */
+	public long getWonCount() {
+		return wonCount.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationHedge [operation=%s, delay=%s, percentile=%s, budget=%s%%, hedged=%s, won=%s ]", new Object[]{operation, delay, percentile, budget, getHedgedCount(), getWonCount()});
+	}
+	
+}
@@ -1,18 +1,29 @@
 package com.github.quickquarantine.impl;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Vector;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.OperationListener;
+import com.github.quickquarantine.OperationResultIterator;
 import com.github.quickquarantine.QuickQuarantine;
+import com.github.quickquarantine.TypedOperation;
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.plan.ExecutionPlan;
+import com.github.quickquarantine.plan.OperationInvoker;
+import com.github.quickquarantine.plan.SubOperationPlan;
+import com.github.quickquarantine.thread.OperationCollector;
+import com.github.quickquarantine.thread.OperationDag;
 import com.github.quickquarantine.thread.OperationThreadPool;
 
 
@@ -23,55 +34,353 @@ public class IQuickQuarantine implements QuickQuarantine {
 	private static final Logger LOGGING = LoggerFactory.getLogger(IQuickQuarantine.class);
 	
 	@Override
-	@SuppressWarnings("unchecked")
-	public List<OperationResult> doAllOfMinimumOperation(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input) throws InterruptedException {
-		List<OperationResult> operationResult= new Vector<OperationResult>();
-	    // 根据一个独立的业务,获得对应的可以共享的线程池
-		List<Object> operationList = OperationThreadPool.getOperationList(ofMaximumOperation, true);
-		ThreadPoolExecutor threadPool = (ThreadPoolExecutor)operationList.get(0);
-		Map<String, String> map = (Map<String, String>)operationList.get(1);
-		int threadNum = allMinimumOperation.size();
-		CountDownLatch countDownLatch = new CountDownLatch(threadNum);
-		for (int i = 0; i < threadNum; i++) {
-			String operation = allMinimumOperation.get(i);
-			threadPool.execute(new OperationThreadPool.OperationThread(operation, map.get(operation), input.get(i), operationResult, countDownLatch));
-		}
-		countDownLatch.await();
-		LOGGING.info("处理结果:[ {} ].继续执行主线程!", operationResult);
+	public List<OperationResult> doAllOfMinimumOperation(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input) throws Exception {
+		List<OperationResult> operationResult = get(doAllOfMinimumOperationAsync(allMinimumOperation, ofMaximumOperation, input));
+		LOGGING.debug("处理结果:[ {} ].继续执行主线程!", operationResult);
 		return operationResult;
 	}
 	
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<OperationResult> doMaximumOperation(String maximumOperation, List<OperationInput> input) throws Exception {
-		List<OperationResult> operationResult= new Vector<OperationResult>();
-	    // 根据一个独立的业务,获得对应的可以共享的线程池
-		List<Object> operationList = OperationThreadPool.getOperationList(maximumOperation, true);
-		ThreadPoolExecutor threadPool = (ThreadPoolExecutor)operationList.get(0);
-		Map<String, String> map = (Map<String, String>)operationList.get(1);
-		int threadNum = map.size();
-		CountDownLatch countDownLatch = new CountDownLatch(threadNum);
-		int i = 0;
-		for (Entry<String, String> entry : map.entrySet()) {
-			threadPool.execute(new OperationThreadPool.OperationThread(entry.getKey(), entry.getValue(), input.get(i), operationResult, countDownLatch));
-			i++;
-		}
-		
-		countDownLatch.await();
-		LOGGING.info("处理结果:[ {} ].继续执行主线程!", operationResult);
+		List<OperationResult> operationResult = get(doMaximumOperationAsync(maximumOperation, input));
+		LOGGING.debug("处理结果:[ {} ].继续执行主线程!", operationResult);
 		return operationResult;
 	}
 	
 	@Override
 	public OperationResult doMinimumOperation(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input) throws Exception {
-		List<OperationResult> operationResult= new Vector<OperationResult>();
-	    // 根据一个独立的业务,获得对应的可以共享的线程池
-		List<Object> operationList = OperationThreadPool.getOperationList(ofMaximumOperation, false);
-		ThreadPoolExecutor threadPool = (ThreadPoolExecutor)operationList.get(0);
-		CountDownLatch countDownLatch = new CountDownLatch(1);
-		threadPool.execute(new OperationThreadPool.OperationThread(minimumOperation, classMethod, input, operationResult, countDownLatch));
-		countDownLatch.await();
-		LOGGING.info("处理结果:[ {} ].继续执行主线程!", operationResult);
-		return operationResult.get(0);
-	}
-}
\ No newline at end of file
+		OperationResult operationResult = get(doMinimumOperationAsync(minimumOperation, classMethod, ofMaximumOperation, input));
+		LOGGING.debug("处理结果:[ {} ].继续执行主线程!", operationResult);
+		return operationResult;
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationAsync(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input) {
+		return doAllOfMinimumOperationAsync(allMinimumOperation, ofMaximumOperation, input, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doMaximumOperationAsync(String maximumOperation, List<OperationInput> input) {
+		return doMaximumOperationAsync(maximumOperation, input, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public CompletableFuture<OperationResult> doMinimumOperationAsync(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input) {
+		return doMinimumOperationAsync(minimumOperation, classMethod, ofMaximumOperation, input, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationAsync(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input, long timeout, TimeUnit unit) {
+		try {
+			return doAllOfMinimumOperation(allMinimumOperation, ofMaximumOperation, input, OperationThreadPool.getDeadline(timeout, unit), null);
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doMaximumOperationAsync(String maximumOperation, List<OperationInput> input, long timeout, TimeUnit unit) {
+		try {
+			return doMaximumOperation(maximumOperation, input, OperationThreadPool.getDeadline(timeout, unit), null);
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<OperationResult> doMinimumOperationAsync(String minimumOperation, String classMethod, String ofMaximumOperation, OperationInput input, long timeout, TimeUnit unit) {
+		long deadline = OperationThreadPool.getDeadline(timeout, unit);
+		ExecutionPlan plan;
+		OperationInvoker invoker;
+		try {
+		    // 根据一个独立的业务,获得对应的可以共享的线程池
+			plan = getExecutionPlan(ofMaximumOperation);
+			invoker = OperationInvoker.getInvoker(classMethod);
+		} catch (QuickQuarantineException e) {
+			// 未知的业务或无效的类方法,与执行失败一样以错误结果完成,不在调用线程中抛出
+			return CompletableFuture.completedFuture(error(minimumOperation, e));
+		}
+		// 与配置一致时沿用编译好的单元子业务执行计划(含结果缓存),否则按指定的类方法临时组装
+		SubOperationPlan subPlan = plan.getSubOperationPlan(minimumOperation);
+		if (subPlan == null || subPlan.getInvoker() != invoker) {
+			subPlan = SubOperationPlan.builder(minimumOperation, invoker).timeout(plan.getTimeout(minimumOperation)).metrics(plan.getMetrics()).build();
+		}
+		OperationCollector collector = new OperationCollector(1);
+		try {
+			new OperationThreadPool.OperationThread(subPlan, input, collector, OperationThreadPool.getDeadline(subPlan.getTimeout(), deadline)).start(plan.getThreadPool());
+		} catch (RuntimeException e) {
+			// 提交失败(比如输入参数计算哈希值失败),同样以错误结果完成
+			return CompletableFuture.completedFuture(error(minimumOperation, e));
+		}
+		return collector.getFuture().thenApply(operationResult -> operationResult.get(0));
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doAllOfMinimumOperationStream(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input, OperationListener listener) {
+		try {
+			return doAllOfMinimumOperation(allMinimumOperation, ofMaximumOperation, input, 0L, listener);
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+	}
+	
+	@Override
+	public CompletableFuture<List<OperationResult>> doMaximumOperationStream(String maximumOperation, List<OperationInput> input, OperationListener listener) {
+		try {
+			return doMaximumOperation(maximumOperation, input, 0L, listener);
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+	}
+	
+	@Override
+	public Iterator<OperationResult> doAllOfMinimumOperationStream(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input) {
+		OperationResultIterator iterator = new OperationResultIterator();
+		doAllOfMinimumOperation(allMinimumOperation, ofMaximumOperation, input, 0L, iterator);
+		return iterator;
+	}
+	
+	@Override
+	public Iterator<OperationResult> doMaximumOperationStream(String maximumOperation, List<OperationInput> input) {
+		OperationResultIterator iterator = new OperationResultIterator();
+		doMaximumOperation(maximumOperation, input, 0L, iterator);
+		return iterator;
+	}
+	
+	@Override
+	public List<List<OperationResult>> doBatchMaximumOperation(String maximumOperation, List<List<OperationInput>> input) throws Exception {
+		List<List<OperationResult>> operationResult = get(doBatchMaximumOperationAsync(maximumOperation, input));
+		LOGGING.debug("批量处理完毕:[ 业务={}, 请求数={} ].继续执行主线程!", maximumOperation, operationResult.size());
+		return operationResult;
+	}
+	
+	@Override
+	public CompletableFuture<List<List<OperationResult>>> doBatchMaximumOperationAsync(String maximumOperation, List<List<OperationInput>> input) {
+		try {
+		    // 整批只查找一次执行计划
+			return doBatchMaximumOperation(getExecutionPlan(maximumOperation), input);
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+	}
+	
+	@Override
+	public <I, O> O doMinimumOperation(TypedOperation<I, O> operation, I input) throws Exception {
+		return get(doMinimumOperationAsync(operation, input));
+	}
+	
+	@Override
+	public <I, O> CompletableFuture<O> doMinimumOperationAsync(TypedOperation<I, O> operation, I input) {
+		return doMinimumOperationAsync(operation, input, 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <I, O> CompletableFuture<O> doMinimumOperationAsync(TypedOperation<I, O> operation, I input, long timeout, TimeUnit unit) {
+		long deadline = OperationThreadPool.getDeadline(timeout, unit);
+		String minimumOperation = operation.getSubOperation();
+		String ofMaximumOperation = operation.getOperation();
+		ExecutionPlan plan;
+		try {
+			plan = getExecutionPlan(ofMaximumOperation);
+		} catch (QuickQuarantineException e) {
+			return failedFuture(e);
+		}
+		SubOperationPlan subPlan = plan.getRegisteredPlan(minimumOperation);
+		if (subPlan == null) {
+			return failedFuture(new QuickQuarantineException(String.format("业务:[ %s ],未注册的类型化单元子业务[ %s ]!", ofMaximumOperation, minimumOperation)));
+		}
+		// 只执行句柄注册时的实现,输出的类型与句柄一致
+		if (subPlan.getInvoker() != operation.getInvoker()) {
+			return failedFuture(new QuickQuarantineException(String.format("业务:[ %s ],类型化单元子业务[ %s ]已重新注册,原句柄不再可用!", ofMaximumOperation, minimumOperation)));
+		}
+		OperationCollector collector = new OperationCollector(1);
+		try {
+			new OperationThreadPool.OperationThread(subPlan, input, collector, OperationThreadPool.getDeadline(subPlan.getTimeout(), deadline)).start(plan.getThreadPool());
+		} catch (RuntimeException e) {
+			return failedFuture(e);
+		}
+		return collector.getFuture().thenApply(operationResult -> {
+			OperationResult or = operationResult.get(0);
+			if (!OperationResult.SUCCESS.equals(or.getResultCode())) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],处理未成功:[ %s ]", minimumOperation, or));
+			}
+			return (O) or.getResult();
+		});
+	}
+	
+	/**
+	 * 批量处理顶级业务,一次性提交所有请求的所有单元子业务
+	 * @param plan 顶级业务的执行计划
+	 * @param input 每个请求的所有单元子业务参数顺序输入
+	 * @return 整批完成后,以按请求分组的结果列表完成的future
+	 */
+	private CompletableFuture<List<List<OperationResult>>> doBatchMaximumOperation(ExecutionPlan plan, List<List<OperationInput>> input) {
+		ExecutorService threadPool = plan.getThreadPool();
+		int size = plan.size();
+		int groupNum = input.size();
+		// 提交之前校验整批输入,避免部分请求已在执行时才失败
+		for (int g = 0; g < groupNum; g++) {
+			if (input.get(g).size() != size) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],第%s个请求的参数个数[ %s ]与单元子业务个数[ %s ]不一致!", new Object[]{plan.getOperation(), g, input.get(g).size(), size}));
+			}
+		}
+		if (plan.hasDependencies()) {
+			return doBatchMaximumOperationDag(plan, input);
+		}
+		// 整批共享一个结果汇总器;截止时间在提交时计算,与逐个调用doMaximumOperation一致,提交线程被饱和策略阻塞的时间不计入后面的请求
+		OperationCollector collector = new OperationCollector(groupNum, size);
+		for (int g = 0; g < groupNum; g++) {
+			List<OperationInput> groupInput = input.get(g);
+			for (int i = 0; i < size; i++) {
+				SubOperationPlan subPlan = plan.getSubOperationPlan(i);
+				new OperationThreadPool.OperationThread(subPlan, groupInput.get(i), collector, g, i, OperationThreadPool.getDeadline(subPlan.getTimeout(), 0L)).start(threadPool);
+			}
+		}
+		return collector.getBatchFuture();
+	}
+	
+	/**
+	 * 按依赖关系批量处理顶级业务,每个请求一个有向无环图
+	 * @param plan 顶级业务的执行计划
+	 * @param input 每个请求的所有单元子业务参数顺序输入
+	 * @return 整批完成后,以按请求分组的结果列表完成的future
+	 */
+	private CompletableFuture<List<List<OperationResult>>> doBatchMaximumOperationDag(ExecutionPlan plan, List<List<OperationInput>> input) {
+		int groupNum = input.size();
+		final List<CompletableFuture<List<OperationResult>>> futures = new ArrayList<CompletableFuture<List<OperationResult>>>(groupNum);
+		for (int g = 0; g < groupNum; g++) {
+			futures.add(new OperationDag(plan, input.get(g), 0L, null).start());
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[groupNum])).thenApply(v -> {
+			List<List<OperationResult>> operationResult = new ArrayList<List<OperationResult>>(futures.size());
+			for (CompletableFuture<List<OperationResult>> future : futures) {
+				operationResult.add(future.join());
+			}
+			return operationResult;
+		});
+	}
+	
+	/**
+	 * 并行处理所属顶级非单元业务中的部分单元子业务,不考虑单元子业务之间的依赖关系
+	 * @param allMinimumOperation 部分单元子业务列表
+	 * @param ofMaximumOperation 所属顶级非单元业务
+	 * @param input 部分单元子业务参数顺序输入
+	 * @param deadline 本次调用的截止时间,0表示不限时
+	 * @param listener 按完成顺序接收结果的监听器,可以为null
+	 * @return 以部分单元子业务处理结果完成的future
+	 */
+	private CompletableFuture<List<OperationResult>> doAllOfMinimumOperation(List<String> allMinimumOperation, String ofMaximumOperation, List<OperationInput> input, long deadline, OperationListener listener) {
+	    // 根据一个独立的业务,获得加载配置时编译好的执行计划
+		ExecutionPlan plan = getExecutionPlan(ofMaximumOperation);
+		ExecutorService threadPool = plan.getThreadPool();
+		int threadNum = allMinimumOperation.size();
+		checkInput(ofMaximumOperation, threadNum, input);
+		OperationCollector collector = new OperationCollector(threadNum, listener);
+		for (int i = 0; i < threadNum; i++) {
+			String operation = allMinimumOperation.get(i);
+			SubOperationPlan subPlan = plan.getSubOperationPlan(operation);
+			if (subPlan == null) {
+				// 未知的单元子业务,执行时以错误结果登记
+				subPlan = SubOperationPlan.builder(operation, null).metrics(plan.getMetrics()).build();
+			}
+			new OperationThreadPool.OperationThread(subPlan, input.get(i), collector, i, OperationThreadPool.getDeadline(subPlan.getTimeout(), deadline)).start(threadPool);
+		}
+		return collector.getFuture();
+	}
+	
+	/**
+	 * 并行处理顶级业务的所有单元子业务
+	 * @param maximumOperation 顶级业务
+	 * @param input 所有单元子业务参数顺序输入
+	 * @param deadline 本次调用的截止时间,0表示不限时
+	 * @param listener 按完成顺序接收结果的监听器,可以为null
+	 * @return 以顶级业务的处理结果完成的future
+	 */
+	private CompletableFuture<List<OperationResult>> doMaximumOperation(String maximumOperation, List<OperationInput> input, long deadline, OperationListener listener) {
+	    // 根据一个独立的业务,获得加载配置时编译好的执行计划
+		ExecutionPlan plan = getExecutionPlan(maximumOperation);
+		ExecutorService threadPool = plan.getThreadPool();
+		int threadNum = plan.size();
+		checkInput(maximumOperation, threadNum, input);
+		// 存在依赖关系时按有向无环图执行
+		if (plan.hasDependencies()) {
+			return new OperationDag(plan, input, deadline, listener).start();
+		}
+		OperationCollector collector = new OperationCollector(threadNum, listener);
+		// 按seriesOperation声明顺序,与输入一一对应
+		for (int i = 0; i < threadNum; i++) {
+			SubOperationPlan subPlan = plan.getSubOperationPlan(i);
+			new OperationThreadPool.OperationThread(subPlan, input.get(i), collector, i, OperationThreadPool.getDeadline(subPlan.getTimeout(), deadline)).start(threadPool);
+		}
+		return collector.getFuture();
+	}
+	
+	/**
+	 * 提交之前校验参数个数:参数少了会在部分单元子业务已在执行时才失败,参数多了会被忽略
+	 * @param operation 顶级业务
+	 * @param size 单元子业务个数
+	 * @param input 单元子业务参数顺序输入
+	 */
+	private static void checkInput(String operation, int size, List<OperationInput> input) {
+		if (input.size() != size) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],参数个数[ %s ]与单元子业务个数[ %s ]不一致!", new Object[]{operation, input.size(), size}));
+		}
+	}
+	
+	/**
+	 * 单元业务未能提交执行,与执行失败一样转换为错误结果
+	 * @param operation 单元业务
+	 * @param e 异常
+	 * @return 错误结果
+	 */
+	private static OperationResult error(String operation, RuntimeException e) {
+		// 记录日志信息
+		LOGGING.error("执行业务失败!", e);
+		OperationResult or = new OperationResult();
+		or.setOperation(operation);
+		// 保存案发现场信息
+		or.error(String.format("案发现场信息:[ %s ]", e.toString()));
+		return or;
+	}
+	
+	/**
+	 * 异步接口不在调用线程中抛出异常,以异常完成future
+	 * @param e 异常
+	 * @return 以异常完成的future
+	 */
+	private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(e);
+		return future;
+	}
+	
+	/**
+	 * 阻塞接口等待异步接口的future,直接抛出原始异常,调用方不必再拆包
+	 * @param future 异步接口的future
+	 * @return future的结果
+	 */
+	private static <T> T get(CompletableFuture<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * 根据顶级业务获取执行计划,校验执行计划列表中是否存在当前业务
+	 * @param operation 顶级业务
+	 * @return 执行计划
+	 */
+	private static ExecutionPlan getExecutionPlan(String operation) {
+		ExecutionPlan plan = Factory.getExecutionPlan(operation);
+		if (plan == null) {
+			throw new QuickQuarantineException("未知或匹配失败的业务!");
+		}
+		return plan;
+	}
+}
@@ -0,0 +1,162 @@
+package com.github.quickquarantine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图,参考HdrHistogram的对数-线性分桶
+ * a.以微秒为单位,每个2的幂区间再等分为8个桶,相对误差不超过12.5%,覆盖1微秒到约25天
+ * b.桶在创建时一次性分配,记录时只做位运算和LongAdder累加,不分配对象,多线程记录不争用同一个计数器
+ * c.读取时遍历所有桶计算百分位,读取不影响记录,结果是近似的快照
+ *
+ * @author shangbincheng001
+ *
+ */
+public class LatencyHistogram {
+	
+	/**
+	 * 每个2的幂区间等分的桶数,2^SUB_BITS
+	 */
+	private static final int SUB_BITS = 3;
+	
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	
+	/**
+	 * 可记录的最大值(微秒)的位数,超过的记入最后一个桶
+	 */
+	private static final int MAX_BITS = 41;
+	
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1L;
+	
+	private static final int BUCKET_COUNT = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+	
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	
+	private final LongAdder count = new LongAdder();
+	
+	/**
+	 * 耗时之和(微秒)
+	 */
+	private final LongAdder sum = new LongAdder();
+	
+	/**
+	 * 最大耗时(微秒)
+	 */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+	
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * 记录一次耗时
+	 * @param nanos 耗时(纳秒),小于0的按0记录
+	 */
+	public void record(long nanos) {
+		long micros = nanos <= 0L ? 0L : Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_VALUE);
+		buckets[indexOf(micros)].increment();
+		count.increment();
+		sum.add(micros);
+		max.accumulate(micros);
+	}
+	
+	/**
+	 * @param micros 耗时(微秒)
+	 * @return 桶的位置
+	 */
+	private static int indexOf(long micros) {
+		if (micros < SUB_COUNT) {
+			return (int) micros;
+		}
+		// 最高位所在的位置,不小于SUB_BITS
+		int exp = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+	
+	/**
+	 * @param index 桶的位置
+	 * @return 桶内的最大值(微秒)
+	 */
+	private static long highestValueOf(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int exp = index / SUB_COUNT + SUB_BITS - 1;
+		int sub = index % SUB_COUNT;
+		long lowest = (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+		return lowest + (1L << (exp - SUB_BITS)) - 1L;
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * @return 耗时之和(微秒)
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	/**
+	 * @return 平均耗时(毫秒)
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0L ? 0.0 : sum.sum() / 1000.0 / n;
+	}
+	
+	/**
+	 * @return 最大耗时(毫秒)
+	 */
+	public double getMax() {
+		return max.get() / 1000.0;
+	}
+	
+	/**
+	 * @param percentile 百分位,0到100
+	 * @return 百分位耗时(毫秒),取所在桶的上限
+	 */
+	public double getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0L;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets[i].sum();
+			total += snapshot[i];
+		}
+		if (total == 0L) {
+			return 0.0;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0L;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), max.get()) / 1000.0;
+			}
+		}
+		return max.get() / 1000.0;
+	}
+	
+	/**
+	 * 清空,与记录并发时不保证原子性
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("LatencyHistogram [count=%s, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms ]", new Object[]{getCount(), getMean(), getPercentile(50.0), getPercentile(99.0), getMax()});
+	}
+	
+}
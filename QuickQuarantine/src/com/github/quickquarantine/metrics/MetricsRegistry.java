@@ -0,0 +1,113 @@
+package com.github.quickquarantine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
+
+/**
+ * 指标注册中心,加载配置时为每个顶级业务、单元子业务创建指标,并注册为JMX MBean
+ * ObjectName:
+ * a.com.github.quickquarantine:type=Operation,operation=顶级业务
+ * b.com.github.quickquarantine:type=SubOperation,operation=顶级业务,subOperation=单元子业务
+ * c.com.github.quickquarantine:type=ThreadPool,operation=顶级业务
+ * d.com.github.quickquarantine:type=CircuitBreaker,operation=顶级业务,subOperation=单元子业务
+ * 注册失败(比如没有JMX环境)只记录日志,不影响业务
+ *
+ * @author shangbincheng001
+ *
+ */
+public class MetricsRegistry {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(MetricsRegistry.class);
+	
+	public static final String DOMAIN = "com.github.quickquarantine";
+	
+	private static final ConcurrentMap<String, OperationMetrics> metricsMap = new ConcurrentHashMap<String, OperationMetrics>();
+	
+	private static final ConcurrentMap<String, ThreadPoolMetrics> threadPoolMetricsMap = new ConcurrentHashMap<String, ThreadPoolMetrics>();
+	
+	/**
+	 * 获取顶级业务的指标,不存在则创建并注册
+	 * @param operation 顶级业务
+	 * @return 顶级业务的指标
+	 */
+	public static OperationMetrics getOperationMetrics(final String operation) {
+		return metricsMap.computeIfAbsent(operation, key -> {
+			OperationMetrics metrics = new OperationMetrics(operation, null);
+			register(String.format("%s:type=Operation,operation=%s", DOMAIN, ObjectName.quote(operation)), metrics);
+			return metrics;
+		});
+	}
+	
+	/**
+	 * 获取单元子业务的指标,不存在则创建并注册
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @return 单元子业务的指标
+	 */
+	public static OperationMetrics getSubOperationMetrics(final String operation, final String subOperation) {
+		final OperationMetrics parent = getOperationMetrics(operation);
+		return metricsMap.computeIfAbsent(operation + "." + subOperation, key -> {
+			OperationMetrics metrics = new OperationMetrics(key, parent);
+			register(String.format("%s:type=SubOperation,operation=%s,subOperation=%s", DOMAIN, ObjectName.quote(operation), ObjectName.quote(subOperation)), metrics);
+			return metrics;
+		});
+	}
+	
+	/**
+	 * 获取顶级业务线程池的指标,不存在则创建并注册
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 * @return 线程池的指标
+	 */
+	public static ThreadPoolMetrics getThreadPoolMetrics(final String operation, final ExecutorService threadPool) {
+		return threadPoolMetricsMap.computeIfAbsent(operation, key -> {
+			ThreadPoolMetrics metrics = new ThreadPoolMetrics(operation, threadPool);
+			register(String.format("%s:type=ThreadPool,operation=%s", DOMAIN, ObjectName.quote(operation)), metrics);
+			return metrics;
+		});
+	}
+	
+	/**
+	 * 注册单元子业务的熔断器,热加载时新的熔断器替换原有的注册
+	 * @param operation 顶级业务
+	 * @param subOperation 单元子业务
+	 * @param circuitBreaker 熔断器
+	 */
+	public static void registerCircuitBreaker(String operation, String subOperation, OperationCircuitBreaker circuitBreaker) {
+		String name = String.format("%s:type=CircuitBreaker,operation=%s,subOperation=%s", DOMAIN, ObjectName.quote(operation), ObjectName.quote(subOperation));
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (Exception e) {
+			LOGGING.warn(String.format("注销指标:[ %s ],失败!", name), e);
+		}
+		register(name, circuitBreaker);
+	}
+	
+	private static void register(String name, Object mbean) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(mbean, objectName);
+			}
+			LOGGING.info("注册指标:[ {} ],成功!", name);
+		} catch (Exception e) {
+			LOGGING.warn(String.format("注册指标:[ %s ],失败!", name), e);
+		}
+	}
+	
+}
@@ -0,0 +1,327 @@
+package com.github.quickquarantine.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 业务指标,顶级业务和单元子业务各一份
+ * 单元子业务的指标同时累加到所属顶级业务的指标中
+ * 记录时不加锁、不分配对象,可以在业务线程中直接调用
+ *
+ * @author shangbincheng001
+ *
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+	
+	/**
+	 * 业务,单元子业务形如"顶级业务.单元子业务"
+	 */
+	private final String operation;
+	
+	/**
+	 * 所属顶级业务的指标,顶级业务为null
+	 */
+	private final OperationMetrics parent;
+	
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	
+	private final LatencyHistogram execution = new LatencyHistogram();
+	
+	private final LatencyHistogram endToEnd = new LatencyHistogram();
+	
+	private final LongAdder successCount = new LongAdder();
+	
+	private final LongAdder errorCount = new LongAdder();
+	
+	private final LongAdder exceptionCount = new LongAdder();
+	
+	private final LongAdder timeoutCount = new LongAdder();
+	
+	/**
+	 * 线程池饱和的次数,无论采用哪种饱和策略
+	 */
+	private final LongAdder rejectedCount = new LongAdder();
+	
+	/**
+	 * 按饱和策略拒绝、未执行的次数
+	 */
+	private final LongAdder shedCount = new LongAdder();
+	
+	private final LongAdder circuitOpenCount = new LongAdder();
+	
+	/**
+	 * 依赖的上游单元子业务未成功而跳过的次数
+	 */
+	private final LongAdder skippedCount = new LongAdder();
+	
+	/**
+	 * 发起对冲请求的次数
+	 */
+	private final LongAdder hedgedCount = new LongAdder();
+	
+	/**
+	 * 执行业务的CPU耗时之和(纳秒),开启后才统计
+	 */
+	private final LongAdder cpuTime = new LongAdder();
+	
+	/**
+	 * 是否统计CPU耗时,需要额外的系统调用,默认不统计
+	 */
+	private volatile boolean cpuTimeEnabled = false;
+	
+	/**
+	 * @param operation 业务
+	 * @param parent 所属顶级业务的指标,顶级业务为null
+	 */
+	public OperationMetrics(String operation, OperationMetrics parent) {
+		this.operation = operation;
+		this.parent = parent;
+	}
+	
+	/**
+	 * @param nanos 排队耗时(纳秒)
+	 */
+	public void recordQueueWait(long nanos) {
+		queueWait.record(nanos);
+		if (parent != null) {
+			parent.recordQueueWait(nanos);
+		}
+	}
+	
+	/**
+	 * @param nanos 执行耗时(纳秒)
+	 */
+	public void recordExecution(long nanos) {
+		execution.record(nanos);
+		if (parent != null) {
+			parent.recordExecution(nanos);
+		}
+	}
+	
+	/**
+	 * 登记结果时记录
+	 * @param nanos 端到端耗时(纳秒)
+	 * @param resultCode 返回码
+	 * @param exception 是否因抛出异常而失败
+	 */
+	public void recordCompletion(long nanos, String resultCode, boolean exception) {
+		endToEnd.record(nanos);
+		if (exception) {
+			exceptionCount.increment();
+		} else if (OperationResult.SUCCESS.equals(resultCode)) {
+			successCount.increment();
+		} else if (OperationResult.TIMEOUT.equals(resultCode)) {
+			timeoutCount.increment();
+		} else if (OperationResult.CIRCUIT_OPEN.equals(resultCode)) {
+			circuitOpenCount.increment();
+		} else if (OperationResult.REJECTED.equals(resultCode)) {
+			shedCount.increment();
+		} else if (OperationResult.SKIPPED.equals(resultCode)) {
+			skippedCount.increment();
+		} else {
+			errorCount.increment();
+		}
+		if (parent != null) {
+			parent.recordCompletion(nanos, resultCode, exception);
+		}
+	}
+	
+	/**
+	 * @param nanos 执行业务的CPU耗时(纳秒)
+	 */
+	public void recordCpuTime(long nanos) {
+		cpuTime.add(nanos);
+		if (parent != null) {
+			parent.recordCpuTime(nanos);
+		}
+	}
+	
+	/**
+	 * 开启CPU耗时统计,对当前业务及其所有单元子业务生效
+	 */
+	public void enableCpuTime() {
+		cpuTimeEnabled = true;
+	}
+	
+	public boolean isCpuTimeEnabled() {
+		return cpuTimeEnabled || (parent != null && parent.isCpuTimeEnabled());
+	}
+	
+	/**
+	 * @return CPU耗时之和(纳秒)
+	 */
+	public long getCpuTime() {
+		return cpuTime.sum();
+	}
+	
+	public void recordRejected() {
+		rejectedCount.increment();
+		if (parent != null) {
+			parent.recordRejected();
+		}
+	}
+	
+	public void recordHedged() {
+		hedgedCount.increment();
+		if (parent != null) {
+			parent.recordHedged();
+		}
+	}
+	
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+	
+	public LatencyHistogram getExecution() {
+		return execution;
+	}
+	
+	public LatencyHistogram getEndToEnd() {
+		return endToEnd;
+	}
+	
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+	
+	@Override
+	public long getSuccessCount() {
+		return successCount.sum();
+	}
+	
+	@Override
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+	
+	@Override
+	public long getExceptionCount() {
+		return exceptionCount.sum();
+	}
+	
+	@Override
+	public long getTimeoutCount() {
+		return timeoutCount.sum();
+	}
+	
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+	
+	@Override
+	public long getShedCount() {
+		return shedCount.sum();
+	}
+	
+	@Override
+	public long getCircuitOpenCount() {
+		return circuitOpenCount.sum();
+	}
+	
+	@Override
+	public long getSkippedCount() {
+		return skippedCount.sum();
+	}
+	
+	@Override
+	public long getHedgedCount() {
+		return hedgedCount.sum();
+	}
+	
+	@Override
+	public double getQueueWaitMean() {
+		return queueWait.getMean();
+	}
+	
+	@Override
+	public double getQueueWaitP50() {
+		return queueWait.getPercentile(50.0);
+	}
+	
+	@Override
+	public double getQueueWaitP99() {
+		return queueWait.getPercentile(99.0);
+	}
+	
+	@Override
+	public double getQueueWaitMax() {
+		return queueWait.getMax();
+	}
+	
+	@Override
+	public double getExecutionMean() {
+		return execution.getMean();
+	}
+	
+	@Override
+	public double getExecutionP50() {
+		return execution.getPercentile(50.0);
+	}
+	
+	@Override
+	public double getExecutionP99() {
+		return execution.getPercentile(99.0);
+	}
+	
+	@Override
+	public double getExecutionMax() {
+		return execution.getMax();
+	}
+	
+	@Override
+	public double getEndToEndMean() {
+		return endToEnd.getMean();
+	}
+	
+	@Override
+	public double getEndToEndP50() {
+		return endToEnd.getPercentile(50.0);
+	}
+	
+	@Override
+	public double getEndToEndP99() {
+		return endToEnd.getPercentile(99.0);
+	}
+	
+	@Override
+	public double getEndToEndMax() {
+		return endToEnd.getMax();
+	}
+	
+	@Override
+	public double getBlockingCoefficient() {
+		long wall = execution.getSum();
+		if (!isCpuTimeEnabled() || wall == 0L) {
+			return -1.0;
+		}
+		double cpu = cpuTime.sum() / 1000.0;
+		return Math.max(0.0, Math.min(1.0, 1.0 - cpu / wall));
+	}
+	
+	@Override
+	public void reset() {
+		queueWait.reset();
+		execution.reset();
+		endToEnd.reset();
+		successCount.reset();
+		errorCount.reset();
+		exceptionCount.reset();
+		timeoutCount.reset();
+		rejectedCount.reset();
+		shedCount.reset();
+		circuitOpenCount.reset();
+		hedgedCount.reset();
+		skippedCount.reset();
+		cpuTime.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationMetrics [operation=%s, success=%s, error=%s, exception=%s, timeout=%s, rejected=%s, shed=%s, circuitOpen=%s, skipped=%s, hedged=%s, queueWait=%s, execution=%s, endToEnd=%s ]",
+				new Object[]{operation, getSuccessCount(), getErrorCount(), getExceptionCount(), getTimeoutCount(), getRejectedCount(), getShedCount(), getCircuitOpenCount(), getSkippedCount(), getHedgedCount(), queueWait, execution, endToEnd});
+	}
+	
+}
@@ -0,0 +1,79 @@
+package com.github.quickquarantine.metrics;
+
+/**
+ * 业务指标的JMX接口,耗时单位均为毫秒
+ * 排队耗时:提交到线程池至开始执行;执行耗时:调用类的静态方法;端到端耗时:提交至登记结果
+ *
+ * @author shangbincheng001
+ *
+ */
+public interface OperationMetricsMBean {
+	
+	String getOperation();
+	
+	long getSuccessCount();
+	
+	long getErrorCount();
+	
+	long getExceptionCount();
+	
+	long getTimeoutCount();
+	
+	long getRejectedCount();
+	
+	/**
+	 * @return 按饱和策略拒绝、未执行的次数
+	 */
+	long getShedCount();
+	
+	/**
+	 * @return 熔断中快速失败的次数
+	 */
+	long getCircuitOpenCount();
+	
+	/**
+	 * @return 依赖的上游单元子业务未成功而跳过的次数
+	 */
+	long getSkippedCount();
+	
+	/**
+	 * @return 发起对冲请求的次数
+	 */
+	long getHedgedCount();
+	
+	double getQueueWaitMean();
+	
+	double getQueueWaitP50();
+	
+	double getQueueWaitP99();
+	
+	double getQueueWaitMax();
+	
+	double getExecutionMean();
+	
+	double getExecutionP50();
+	
+	double getExecutionP99();
+	
+	double getExecutionMax();
+	
+	double getEndToEndMean();
+	
+	double getEndToEndP50();
+	
+	double getEndToEndP99();
+	
+	double getEndToEndMax();
+	
+	/**
+	 * 阻塞系数 = 1 - CPU耗时/执行耗时,开启CPU耗时统计后才有效,否则返回-1
+	 * 接近0为计算密集型,接近1为IO密集型
+	 */
+	double getBlockingCoefficient();
+	
+	/**
+	 * 清空所有指标
+	 */
+	void reset();
+	
+}
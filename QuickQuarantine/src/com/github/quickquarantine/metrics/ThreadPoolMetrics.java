@@ -0,0 +1,140 @@
+package com.github.quickquarantine.metrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import com.github.quickquarantine.thread.ForkJoinThreadExecutor;
+import com.github.quickquarantine.thread.VirtualThreadExecutor;
+
+/**
+ * 顶级业务线程池的指标,读取时直接从线程池采样,不影响业务线程
+ *
+ * @author shangbincheng001
+ *
+ */
+public class ThreadPoolMetrics implements ThreadPoolMetricsMBean {
+	
+	private final String operation;
+	
+	private final ExecutorService threadPool;
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 */
+	public ThreadPoolMetrics(String operation, ExecutorService threadPool) {
+		this.operation = operation;
+		this.threadPool = threadPool;
+	}
+	
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+	
+	@Override
+	public String getExecutorType() {
+		return threadPool.getClass().getSimpleName();
+	}
+	
+	@Override
+	public int getQueueSize() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getQueue().size();
+		}
+		if (threadPool instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) threadPool).getQueueSize();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getQueueSize();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getQueueRemainingCapacity() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getQueue().remainingCapacity();
+		}
+		if (threadPool instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) threadPool).getRemainingCapacity();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getRemainingCapacity();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getActiveCount() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getActiveCount();
+		}
+		if (threadPool instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) threadPool).getActiveCount();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getActiveCount();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getPoolSize() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getPoolSize();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getPoolSize();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getCorePoolSize() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getCorePoolSize();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getMaximumPoolSize() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getMaximumPoolSize();
+		}
+		if (threadPool instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) threadPool).getMaximumPoolSize();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getMaximumPoolSize();
+		}
+		return -1;
+	}
+	
+	@Override
+	public int getLargestPoolSize() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getLargestPoolSize();
+		}
+		return -1;
+	}
+	
+	@Override
+	public long getCompletedTaskCount() {
+		if (threadPool instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) threadPool).getCompletedTaskCount();
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return ((ForkJoinThreadExecutor) threadPool).getCompletedTaskCount();
+		}
+		return -1L;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("ThreadPoolMetrics [operation=%s, executorType=%s, queueSize=%s, activeCount=%s, poolSize=%s, maximumPoolSize=%s ]",
+				new Object[]{operation, getExecutorType(), getQueueSize(), getActiveCount(), getPoolSize(), getMaximumPoolSize()});
+	}
+	
+}
@@ -0,0 +1,41 @@
+package com.github.quickquarantine.metrics;
+
+/**
+ * 顶级业务线程池的JMX接口,每次读取时采样
+ * 虚拟线程执行器没有的指标返回-1
+ *
+ * @author shangbincheng001
+ *
+ */
+public interface ThreadPoolMetricsMBean {
+	
+	String getOperation();
+	
+	String getExecutorType();
+	
+	/**
+	 * @return 阻塞队列中等待执行的单元子业务个数
+	 */
+	int getQueueSize();
+	
+	/**
+	 * @return 阻塞队列剩余容量
+	 */
+	int getQueueRemainingCapacity();
+	
+	/**
+	 * @return 正在执行的单元子业务个数
+	 */
+	int getActiveCount();
+	
+	int getPoolSize();
+	
+	int getCorePoolSize();
+	
+	int getMaximumPoolSize();
+	
+	int getLargestPoolSize();
+	
+	long getCompletedTaskCount();
+	
+}
@@ -0,0 +1,347 @@
+package com.github.quickquarantine.plan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.metrics.OperationMetrics;
+
+/**
+ * 顶级业务的执行计划,加载配置时一次性编译生成,之后不可变
+ * 包含:
+ * a.顶级业务对应的线程池
+ * b.按seriesOperation声明顺序排列的单元子业务执行计划(调用器、超时时间、结果缓存等)
+ * c.顶级业务的指标
+ * d.单元子业务之间的依赖关系(有向无环图),加载配置时拒绝循环依赖
+ * e.以编程方式注册的类型化单元子业务执行计划,不属于seriesOperation,只能单独调用
+ * 执行业务时只需一次查找,不再为每个请求组装执行计划
+ * 
+ * @author shangbincheng001
+ *
+ */
+public final class ExecutionPlan {
+	
+	/**
+	 * 顶级业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 顶级业务对应的线程池,平台线程的ThreadPoolExecutor或虚拟线程执行器
+	 */
+	private final ExecutorService threadPool;
+	
+	/**
+	 * 一系列单元子业务,保持声明顺序
+	 */
+	private final List<String> seriesOperation;
+	
+	/**
+	 * 一系列单元子业务执行计划,与seriesOperation一一对应
+	 */
+	private final List<SubOperationPlan> seriesPlan;
+	
+	/**
+	 * 单元子业务在执行计划中的位置
+	 */
+	private final Map<String, Integer> indexMap;
+	
+	/**
+	 * 顶级业务默认的超时时间(毫秒),0表示不限时
+	 */
+	private final long timeout;
+	
+	/**
+	 * 顶级业务的指标,汇总所有单元子业务
+	 */
+	private final OperationMetrics metrics;
+	
+	/**
+	 * 每个单元子业务依赖的上游单元子业务,以单元子业务为键,没有依赖的不在其中
+	 */
+	private final Map<String, List<String>> dependsOn;
+	
+	/**
+	 * 每个单元子业务依赖的上游单元子业务在执行计划中的位置
+	 */
+	private final int[][] upstream;
+	
+	/**
+	 * 依赖每个单元子业务的下游单元子业务在执行计划中的位置
+	 */
+	private final int[][] downstream;
+	
+	/**
+	 * 以编程方式注册的类型化单元子业务执行计划,以单元子业务为键
+	 */
+	private final Map<String, SubOperationPlan> registeredPlan;
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 * @param seriesPlan 一系列单元子业务执行计划,保持声明顺序
+	 * @param timeout 默认的超时时间(毫秒),0表示不限时
+	 * @param metrics 顶级业务的指标
+	 * @param dependsOn 每个单元子业务依赖的上游单元子业务,没有依赖时为空
+	 */
+	public ExecutionPlan(String operation, ExecutorService threadPool, List<SubOperationPlan> seriesPlan, long timeout, OperationMetrics metrics, Map<String, List<String>> dependsOn) {
+		this(operation, threadPool, seriesPlan, timeout, metrics, dependsOn, Collections.<String, SubOperationPlan>emptyMap());
+	}
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 * @param seriesPlan 一系列单元子业务执行计划,保持声明顺序
+	 * @param timeout 默认的超时时间(毫秒),0表示不限时
+	 * @param metrics 顶级业务的指标
+	 * @param dependsOn 每个单元子业务依赖的上游单元子业务,没有依赖时为空
+	 * @param registeredPlan 以编程方式注册的类型化单元子业务执行计划,以单元子业务为键,不能与seriesOperation重名
+	 */
+	public ExecutionPlan(String operation, ExecutorService threadPool, List<SubOperationPlan> seriesPlan, long timeout, OperationMetrics metrics, Map<String, List<String>> dependsOn, Map<String, SubOperationPlan> registeredPlan) {
+		this.operation = operation;
+		this.threadPool = threadPool;
+		this.seriesPlan = Collections.unmodifiableList(new ArrayList<SubOperationPlan>(seriesPlan));
+		this.timeout = timeout;
+		this.metrics = metrics;
+		List<String> list = new ArrayList<String>(seriesPlan.size());
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		int size = seriesPlan.size();
+		for (int i = 0; i < size; i++) {
+			String subOperation = seriesPlan.get(i).getOperation();
+			if (map.put(subOperation, i) != null) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],单元子业务[ %s ]重复!", operation, subOperation));
+			}
+			list.add(subOperation);
+		}
+		this.seriesOperation = Collections.unmodifiableList(list);
+		this.indexMap = Collections.unmodifiableMap(map);
+		Map<String, List<String>> dependsOnMap = new HashMap<String, List<String>>();
+		List<List<Integer>> downstreamList = new ArrayList<List<Integer>>(size);
+		for (int i = 0; i < size; i++) {
+			downstreamList.add(new ArrayList<Integer>());
+		}
+		this.upstream = new int[size][];
+		for (int i = 0; i < size; i++) {
+			String subOperation = list.get(i);
+			List<String> upstreamOperation = dependsOn.get(subOperation);
+			if (upstreamOperation == null || upstreamOperation.isEmpty()) {
+				upstream[i] = new int[0];
+				continue;
+			}
+			upstream[i] = new int[upstreamOperation.size()];
+			for (int j = 0; j < upstream[i].length; j++) {
+				Integer u = map.get(upstreamOperation.get(j));
+				if (u == null) {
+					throw new QuickQuarantineException(String.format("业务:[ %s ],单元子业务[ %s ]依赖的[ %s ]不存在!", operation, subOperation, upstreamOperation.get(j)));
+				}
+				upstream[i][j] = u;
+				downstreamList.get(u).add(i);
+			}
+			dependsOnMap.put(subOperation, Collections.unmodifiableList(new ArrayList<String>(upstreamOperation)));
+		}
+		for (String subOperation : dependsOn.keySet()) {
+			if (!map.containsKey(subOperation)) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],依赖关系中的单元子业务[ %s ]不存在!", operation, subOperation));
+			}
+		}
+		this.downstream = new int[size][];
+		for (int i = 0; i < size; i++) {
+			List<Integer> d = downstreamList.get(i);
+			downstream[i] = new int[d.size()];
+			for (int j = 0; j < downstream[i].length; j++) {
+				downstream[i][j] = d.get(j);
+			}
+		}
+		this.dependsOn = Collections.unmodifiableMap(dependsOnMap);
+		checkCycle();
+		for (String subOperation : registeredPlan.keySet()) {
+			if (map.containsKey(subOperation)) {
+				throw new QuickQuarantineException(String.format("业务:[ %s ],注册的单元子业务[ %s ]与seriesOperation重名!", operation, subOperation));
+			}
+		}
+		this.registeredPlan = Collections.unmodifiableMap(new HashMap<String, SubOperationPlan>(registeredPlan));
+	}
+	
+	/**
+	 * 新增或替换一个类型化单元子业务,执行计划不可变,返回新的执行计划
+	 * @param subPlan 类型化单元子业务执行计划
+	 * @return 新的执行计划
+	 */
+	public ExecutionPlan withRegisteredPlan(SubOperationPlan subPlan) {
+		Map<String, SubOperationPlan> map = new HashMap<String, SubOperationPlan>(registeredPlan);
+		map.put(subPlan.getOperation(), subPlan);
+		return new ExecutionPlan(operation, threadPool, seriesPlan, timeout, metrics, dependsOn, map);
+	}
+	
+	/**
+	 * 拓扑排序,不能全部排出的单元子业务存在循环依赖
+	 */
+	private void checkCycle() {
+		int size = seriesPlan.size();
+		int[] pending = new int[size];
+		Deque<Integer> ready = new ArrayDeque<Integer>();
+		for (int i = 0; i < size; i++) {
+			pending[i] = upstream[i].length;
+			if (pending[i] == 0) {
+				ready.add(i);
+			}
+		}
+		int sorted = 0;
+		while (!ready.isEmpty()) {
+			int i = ready.poll();
+			sorted++;
+			for (int d : downstream[i]) {
+				if (--pending[d] == 0) {
+					ready.add(d);
+				}
+			}
+		}
+		if (sorted < size) {
+			List<String> cycle = new ArrayList<String>();
+			for (int i = 0; i < size; i++) {
+				if (pending[i] > 0) {
+					cycle.add(seriesOperation.get(i));
+				}
+			}
+			throw new QuickQuarantineException(String.format("业务:[ %s ],单元子业务%s存在循环依赖!", operation, cycle));
+		}
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public ExecutorService getThreadPool() {
+		return threadPool;
+	}
+	
+	/**
+	 * @return 单元子业务个数
+	 */
+	public int size() {
+		return seriesPlan.size();
+	}
+	
+	/**
+	 * @param i 单元子业务在执行计划中的位置
+	 * @return 单元子业务
+	 */
+	public String getSubOperation(int i) {
+		return seriesOperation.get(i);
+	}
+	
+	/**
+	 * @param i 单元子业务在执行计划中的位置
+	 * @return 单元子业务执行计划
+	 */
+	public SubOperationPlan getSubOperationPlan(int i) {
+		return seriesPlan.get(i);
+	}
+	
+	/**
+	 * @param subOperation 单元子业务
+	 * @return 单元子业务执行计划,如果返回null,表示当前顶级业务不包含该单元子业务
+	 */
+	public SubOperationPlan getSubOperationPlan(String subOperation) {
+		int i = indexOf(subOperation);
+		return i < 0 ? null : seriesPlan.get(i);
+	}
+	
+	/**
+	 * @param subOperation 单元子业务
+	 * @return 单元子业务调用器,如果返回null,表示当前顶级业务不包含该单元子业务
+	 */
+	public OperationInvoker getInvoker(String subOperation) {
+		int i = indexOf(subOperation);
+		return i < 0 ? null : seriesPlan.get(i).getInvoker();
+	}
+	
+	/**
+	 * @param subOperation 单元子业务
+	 * @return 单元子业务在执行计划中的位置,如果返回-1,表示当前顶级业务不包含该单元子业务
+	 */
+	public int indexOf(String subOperation) {
+		Integer i = indexMap.get(subOperation);
+		return i == null ? -1 : i.intValue();
+	}
+	
+	/**
+	 * @return 顶级业务默认的超时时间(毫秒),0表示不限时
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * @param subOperation 单元子业务,可以不属于当前顶级业务
+	 * @return 单元子业务的超时时间(毫秒),不属于当前顶级业务的,使用默认的超时时间
+	 */
+	public long getTimeout(String subOperation) {
+		int i = indexOf(subOperation);
+		return i < 0 ? timeout : seriesPlan.get(i).getTimeout();
+	}
+	
+	public OperationMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @return 单元子业务之间是否存在依赖关系
+	 */
+	public boolean hasDependencies() {
+		return !dependsOn.isEmpty();
+	}
+	
+	/**
+	 * @param subOperation 单元子业务
+	 * @return 依赖的上游单元子业务,没有依赖时为空
+	 */
+	public List<String> getDependsOn(String subOperation) {
+		List<String> list = dependsOn.get(subOperation);
+		return list == null ? Collections.<String>emptyList() : list;
+	}
+	
+	/**
+	 * @param i 单元子业务在执行计划中的位置
+	 * @return 依赖的上游单元子业务在执行计划中的位置,不能修改
+	 */
+	public int[] getUpstream(int i) {
+		return upstream[i];
+	}
+	
+	/**
+	 * @param i 单元子业务在执行计划中的位置
+	 * @return 依赖它的下游单元子业务在执行计划中的位置,不能修改
+	 */
+	public int[] getDownstream(int i) {
+		return downstream[i];
+	}
+	
+	public List<String> getSeriesOperation() {
+		return seriesOperation;
+	}
+	
+	/**
+	 * @param subOperation 单元子业务
+	 * @return 类型化单元子业务执行计划,如果返回null,表示未注册
+	 */
+	public SubOperationPlan getRegisteredPlan(String subOperation) {
+		return registeredPlan.get(subOperation);
+	}
+	
+	public Map<String, SubOperationPlan> getRegisteredPlan() {
+		return registeredPlan;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("ExecutionPlan [operation=%s, seriesPlan=%s, dependsOn=%s, registeredPlan=%s ]", operation, seriesPlan, dependsOn, registeredPlan.values());
+	}
+	
+}
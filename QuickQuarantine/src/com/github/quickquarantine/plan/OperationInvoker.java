@@ -0,0 +1,202 @@
+package com.github.quickquarantine.plan;
+
+import static com.github.quickquarantine.utils.SecurityUtils.PTN_CLASSNAME;
+import static com.github.quickquarantine.utils.SecurityUtils.PTN_METHODNAME;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.quickquarantine.SubOperation;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.utils.SecurityUtils;
+
+/**
+ * 单元子业务执行计划的调用器
+ * 执行计划"类的全限命名.静态方法名"只在第一次使用(一般是加载配置)时解析、校验一次,并缓存为MethodHandle.
+ * 之后每次执行业务都是直接调用,不再有正则匹配、Class.forName、遍历方法以及访问检查.
+ * 配置错误的执行计划在加载配置时就失败,而不是等到第一次请求.
+ * 以编程方式注册的类型化单元子业务(SubOperation)也包装为调用器,输入直接传给它,不经过反射.
+ * 注解处理器生成的注册表在启动时预先登记直接调用的调用器,之后按执行计划获取时不再解析.
+ * 
+ * @author shangbincheng001
+ *
+ */
+public final class OperationInvoker {
+	
+	/**
+	 * 执行计划的方法签名,必须是 static OperationResult xxx(OperationInput input)
+	 */
+	private static final MethodType METHOD_TYPE = MethodType.methodType(OperationResult.class, OperationInput.class);
+	
+	/**
+	 * 已解析的调用器列表,键为执行计划
+	 */
+	private static final ConcurrentMap<String, OperationInvoker> invokerMap = new ConcurrentHashMap<String, OperationInvoker>();
+	
+	/**
+	 * 执行计划,类的全限命名.静态方法名
+	 */
+	private final String classMethod;
+	
+	private final String className;
+	
+	private final String methodName;
+	
+	private final MethodHandle methodHandle;
+	
+	/**
+	 * 类型化的单元子业务,如果为null,表示调用类的静态方法
+	 */
+	private final SubOperation<Object, Object> subOperation;
+	
+	/**
+	 * 注解处理器生成的直接调用,如果为null,表示不是预先登记的调用器
+	 */
+	private final SubOperation<OperationInput, OperationResult> dispatcher;
+	
+	private OperationInvoker(String classMethod, String className, String methodName, MethodHandle methodHandle, SubOperation<Object, Object> subOperation, SubOperation<OperationInput, OperationResult> dispatcher) {
+		this.classMethod = classMethod;
+		this.className = className;
+		this.methodName = methodName;
+		this.methodHandle = methodHandle;
+		this.subOperation = subOperation;
+		this.dispatcher = dispatcher;
+	}
+	
+	/**
+	 * 预先登记执行计划的调用器,由注解处理器生成的注册表调用,替换已解析的调用器
+	 * 之后按"类的全限命名.静态方法名"获取时直接返回,不再通过反射解析
+	 * @param className 类的全限命名
+	 * @param methodName 静态方法名
+	 * @param dispatcher 直接调用静态方法
+	 * @return 调用器
+	 */
+	public static OperationInvoker register(String className, String methodName, SubOperation<OperationInput, OperationResult> dispatcher) {
+		if (dispatcher == null) {
+			throw new QuickQuarantineException(String.format("执行计划:[ %s.%s ],缺少直接调用!", className, methodName));
+		}
+		String classMethod = className + "." + methodName;
+		OperationInvoker invoker = new OperationInvoker(classMethod, className, methodName, null, null, dispatcher);
+		invokerMap.put(classMethod, invoker);
+		return invoker;
+	}
+	
+	/**
+	 * 包装类型化的单元子业务,每次注册都是新的调用器,不缓存
+	 * @param subOperation 类型化的单元子业务
+	 * @return 调用器
+	 */
+	@SuppressWarnings("unchecked")
+	public static OperationInvoker of(SubOperation<?, ?> subOperation) {
+		if (subOperation == null) {
+			throw new QuickQuarantineException("缺少类型化的单元子业务!");
+		}
+		String className = subOperation.getClass().getName();
+		return new OperationInvoker(className + ".apply", className, "apply", null, (SubOperation<Object, Object>) subOperation, null);
+	}
+	
+	/**
+	 * 根据执行计划获取调用器,第一次获取时解析并校验,之后直接从缓存中获取
+	 * @param classMethod 执行计划,类的全限命名.静态方法名
+	 * @return 调用器
+	 * @throws QuickQuarantineException 执行计划配置错误
+	 */
+	public static OperationInvoker getInvoker(String classMethod) {
+		OperationInvoker invoker = invokerMap.get(classMethod);
+		if (invoker != null) {
+			return invoker;
+		}
+		invoker = resolve(classMethod);
+		OperationInvoker old = invokerMap.putIfAbsent(classMethod, invoker);
+		return old == null ? invoker : old;
+	}
+	
+	private static OperationInvoker resolve(String classMethod) {
+		if (classMethod == null || classMethod.isEmpty()) {
+			throw new QuickQuarantineException("缺少执行计划!");
+		}
+		String className = PTN_CLASSNAME.matcher(classMethod).replaceAll("");
+		String methodName = SecurityUtils.getFirstStr(PTN_METHODNAME, classMethod);
+		if (methodName == null || className.equals(classMethod)) {
+			throw new QuickQuarantineException(String.format("执行计划:[ %s ],格式错误,应为类的全限命名.静态方法名!", classMethod));
+		}
+		try {
+			Class<?> c = Class.forName(className);
+			Method method = c.getDeclaredMethod(methodName, OperationInput.class);
+			if (!Modifier.isStatic(method.getModifiers())) {
+				throw new QuickQuarantineException(String.format("执行计划:[ %s ],当前%s类的%s方法实际是对象的方法,不是期望的类的方法!", classMethod, className, methodName));
+			}
+			if (method.getReturnType() != OperationResult.class) {
+				throw new QuickQuarantineException(String.format("执行计划:[ %s ],当前%s类的%s方法返回值实际是[ %s ]类型,不是期望的[ %s ]类型!", new Object[]{classMethod, className, methodName, method.getReturnType().getName(), OperationResult.class.getName()}));
+			}
+			// 只做一次访问检查
+			method.setAccessible(true);
+			MethodHandle methodHandle = MethodHandles.lookup().unreflect(method).asType(METHOD_TYPE);
+			return new OperationInvoker(classMethod, className, methodName, methodHandle, null, null);
+		} catch (QuickQuarantineException e) {
+			throw e;
+		} catch (ClassNotFoundException e) {
+			throw new QuickQuarantineException(String.format("执行计划:[ %s ],不存在%s类!", classMethod, className));
+		} catch (NoSuchMethodException e) {
+			throw new QuickQuarantineException(String.format("执行计划:[ %s ],当前%s类,不存在%s(OperationInput)方法!", classMethod, className, methodName));
+		} catch (Exception e) {
+			throw new QuickQuarantineException(String.format("执行计划:[ %s ],解析失败:[ %s ]", classMethod, e.toString()));
+		}
+	}
+	
+	/**
+	 * 直接调用执行计划
+	 * 类型化的单元子业务,输出作为成功的结果;输出为null时返回null,由调用方按返回结果为空处理
+	 * @param input 输入参数,类的静态方法必须是OperationInput
+	 * @return 执行计划的返回结果
+	 * @throws Throwable 执行计划抛出的原始异常
+	 */
+	public OperationResult invoke(Object input) throws Throwable {
+		if (dispatcher != null) {
+			return dispatcher.apply((OperationInput) input);
+		}
+		if (subOperation == null) {
+			return (OperationResult) methodHandle.invokeExact((OperationInput) input);
+		}
+		Object output = subOperation.apply(input);
+		if (output == null) {
+			return null;
+		}
+		OperationResult or = new OperationResult();
+		or.setResult(output);
+		or.success();
+		return or;
+	}
+	
+	/**
+	 * @return 是否为类型化的单元子业务
+	 */
+	public boolean isTyped() {
+		return subOperation != null;
+	}
+	
+	public String getClassMethod() {
+		return classMethod;
+	}
+	
+	public String getClassName() {
+		return className;
+	}
+	
+	public String getMethodName() {
+		return methodName;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationInvoker [classMethod=%s ]", classMethod);
+	}
+	
+}
@@ -0,0 +1,195 @@
+package com.github.quickquarantine.plan;
+
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
+import com.github.quickquarantine.cache.OperationCache;
+import com.github.quickquarantine.hedge.OperationHedge;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.thread.OperationSingleFlight;
+import com.github.quickquarantine.trace.OperationTrace;
+
+/**
+ * 单元子业务的执行计划,加载配置时一次性编译生成,之后不可变
+ * 包含单元子业务执行时需要的全部配置:调用器、超时时间、结果缓存、并发调用合并、熔断器、对冲请求、执行日志、指标
+ * 通过Builder创建,只设置需要的配置,未设置的表示不开启
+ * 
+ * @author shangbincheng001
+ *
+ */
+public final class SubOperationPlan {
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 已解析好的调用器,如果为null,表示未知的单元子业务
+	 */
+	private final OperationInvoker invoker;
+	
+	/**
+	 * 超时时间(毫秒),0表示不限时
+	 */
+	private final long timeout;
+	
+	/**
+	 * 结果缓存,如果为null,表示不缓存
+	 */
+	private final OperationCache cache;
+	
+	/**
+	 * 并发调用合并,如果为null,表示不合并
+	 */
+	private final OperationSingleFlight singleFlight;
+	
+	/**
+	 * 熔断器,如果为null,表示不熔断
+	 */
+	private final OperationCircuitBreaker circuitBreaker;
+	
+	/**
+	 * 对冲请求,如果为null,表示不对冲
+	 */
+	private final OperationHedge hedge;
+	
+	/**
+	 * 执行日志,如果为null,表示不记录
+	 */
+	private final OperationTrace trace;
+	
+	/**
+	 * 指标,如果为null,表示不记录
+	 */
+	private final OperationMetrics metrics;
+	
+	private SubOperationPlan(Builder builder) {
+		this.operation = builder.operation;
+		this.invoker = builder.invoker;
+		this.timeout = builder.timeout;
+		this.cache = builder.cache;
+		this.singleFlight = builder.singleFlight;
+		this.circuitBreaker = builder.circuitBreaker;
+		this.hedge = builder.hedge;
+		this.trace = builder.trace;
+		this.metrics = builder.metrics;
+	}
+	
+	/**
+	 * @param operation 单元子业务
+	 * @param invoker 已解析好的调用器,如果为null,表示未知的单元子业务
+	 * @return 单元子业务执行计划的Builder
+	 */
+	public static Builder builder(String operation, OperationInvoker invoker) {
+		return new Builder(operation, invoker);
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public OperationInvoker getInvoker() {
+		return invoker;
+	}
+	
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	public OperationCache getCache() {
+		return cache;
+	}
+	
+	public OperationSingleFlight getSingleFlight() {
+		return singleFlight;
+	}
+	
+	public OperationCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+	
+	public OperationHedge getHedge() {
+		return hedge;
+	}
+	
+	public OperationTrace getTrace() {
+		return trace;
+	}
+	
+	public OperationMetrics getMetrics() {
+		return metrics;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("SubOperationPlan [operation=%s, invoker=%s, timeout=%s, cache=%s, singleFlight=%s, circuitBreaker=%s, hedge=%s, trace=%s ]", new Object[]{operation, invoker, timeout, cache != null, singleFlight != null, circuitBreaker != null, hedge != null, trace});
+	}
+	
+	/**
+	 * 单元子业务执行计划的Builder,未设置的配置表示不开启,超时时间默认不限时
+	 */
+	public static final class Builder {
+		
+		private final String operation;
+		
+		private final OperationInvoker invoker;
+		
+		private long timeout = 0L;
+		
+		private OperationCache cache;
+		
+		private OperationSingleFlight singleFlight;
+		
+		private OperationCircuitBreaker circuitBreaker;
+		
+		private OperationHedge hedge;
+		
+		private OperationTrace trace;
+		
+		private OperationMetrics metrics;
+		
+		private Builder(String operation, OperationInvoker invoker) {
+			this.operation = operation;
+			this.invoker = invoker;
+		}
+		
+		public Builder timeout(long timeout) {
+			this.timeout = timeout;
+			return this;
+		}
+		
+		public Builder cache(OperationCache cache) {
+			this.cache = cache;
+			return this;
+		}
+		
+		public Builder singleFlight(OperationSingleFlight singleFlight) {
+			this.singleFlight = singleFlight;
+			return this;
+		}
+		
+		public Builder circuitBreaker(OperationCircuitBreaker circuitBreaker) {
+			this.circuitBreaker = circuitBreaker;
+			return this;
+		}
+		
+		public Builder hedge(OperationHedge hedge) {
+			this.hedge = hedge;
+			return this;
+		}
+		
+		public Builder trace(OperationTrace trace) {
+			this.trace = trace;
+			return this;
+		}
+		
+		public Builder metrics(OperationMetrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+		
+		public SubOperationPlan build() {
+			return new SubOperationPlan(this);
+		}
+	}
+	
+}
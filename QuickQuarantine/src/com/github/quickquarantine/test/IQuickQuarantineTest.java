@@ -1,20 +1,57 @@
 package com.github.quickquarantine.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 
 import org.junit.Test;
 
 import com.github.quickquarantine.Factory;
 import com.github.quickquarantine.FactoryBuilder;
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
 import com.github.quickquarantine.QuickQuarantine;
+import com.github.quickquarantine.SubOperation;
+import com.github.quickquarantine.TypedOperation;
+import com.github.quickquarantine.annotation.OperationRegistry;
+import com.github.quickquarantine.annotation.OperationRegistryProcessor;
+import com.github.quickquarantine.cache.OperationCache;
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
 import com.github.quickquarantine.impl.IQuickQuarantine;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.plan.OperationInvoker;
 
 public class IQuickQuarantineTest {
-
+	
 	@Test
 	public void testDoAllOfMinimumOperation() throws Exception {
 		// FactoryBuilder.setPath("node1", "quickquarantine.properties");
@@ -41,9 +78,12 @@ public class IQuickQuarantineTest {
 				}
 			}
 			System.out.println("已经处理的业务:" + doOperation);
+			// 结果与allMinimumOperation一一对应
+			assertEquals("operation2_sub1", list.get(0).getOperation());
+			assertEquals("operation2_sub2", list.get(1).getOperation());
 		}
 	}
-
+	
 	@Test
 	public void testDoMaximumOperation() throws Exception {
 		FactoryBuilder.setPath("node1", "quickquarantine.properties");
@@ -70,9 +110,15 @@ public class IQuickQuarantineTest {
 				}
 			}
 			System.out.println("当前处理成功的业务:" + doOperation);
+			// 结果与seriesOperation一一对应
+			assertEquals(3, list.size());
+			List<String> seriesOperation = Factory.getExecutionPlan(maximumOperation).getSeriesOperation();
+			for (int i = 0; i < list.size(); i++) {
+				assertEquals(seriesOperation.get(i), list.get(i).getOperation());
+			}
 		}
 	}
-
+	
 	@Test
 	public void testDoMinimumOperation() throws Exception {
 		// FactoryBuilder.setPath("node1", "quickquarantine.properties");
@@ -94,4 +140,492 @@ public class IQuickQuarantineTest {
 		}
 	}
 	
-}
+	@Test
+	public void testDoTypedMinimumOperation() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			// lambda,输入、输出的类型由返回的句柄确定
+			TypedOperation<Integer, String> lambda = Factory.register("operation2", "operation2_user", (Integer id) -> "user" + id);
+			String user = qq.doMinimumOperation(lambda, 1);
+			assertEquals("user1", user);
+			// 持有状态的对象的方法,同名重复注册替换原有的实现
+			UserClient client = new UserClient("vip");
+			TypedOperation<Integer, String> find = Factory.register("operation2", "operation2_user", client::find);
+			CompletableFuture<String> future = qq.doMinimumOperationAsync(find, 2);
+			assertEquals("vip2", future.get());
+			assertEquals(1, client.calls.get());
+			// 原句柄不再可用,不会按原来的类型取出新实现的输出
+			try {
+				qq.doMinimumOperation(lambda, 1);
+				assertTrue("未拒绝已失效的句柄", false);
+			} catch (QuickQuarantineException e) {
+				System.out.println(e.getMessage());
+			}
+			assertEquals(1, client.calls.get());
+			// 配置文件中单独配置的超时时间同样生效
+			assertEquals(200L, Factory.getExecutionPlan("operation2").getRegisteredPlan("operation2_user").getTimeout());
+			TypedOperation<Integer, String> hang = Factory.register("operation2", "operation2_user", (Integer id) -> {
+				Thread.sleep(5000L);
+				return "user" + id;
+			});
+			try {
+				qq.doMinimumOperation(hang, 3);
+				assertTrue("未抛出超时异常", false);
+			} catch (QuickQuarantineException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(OperationResult.TIMEOUT));
+			}
+			// 不能与seriesOperation重名
+			try {
+				Factory.register("operation2", "operation2_sub1", (SubOperation<Integer, String>) id -> "user" + id);
+				assertTrue("未拒绝重名的单元子业务", false);
+			} catch (QuickQuarantineException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * 持有状态的客户端,模拟类型化单元子业务的实现
+	 */
+	private static class UserClient {
+		
+		private final String prefix;
+		
+		private final AtomicInteger calls = new AtomicInteger(0);
+		
+		private UserClient(String prefix) {
+			this.prefix = prefix;
+		}
+		
+		private String find(Integer id) {
+			calls.incrementAndGet();
+			return prefix + id;
+		}
+	}
+	
+	@Test
+	public void testDoMaximumOperationAsync() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			String maximumOperation = "operation2";
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			input.add(OperationInput.initOperationInput(""));
+			input.add(OperationInput.initOperationInput(new ArrayList<Object>()));
+			input.add(OperationInput.initOperationInput(new HashMap<String, Object>()));
+			CompletableFuture<List<OperationResult>> future = qq.doMaximumOperationAsync(maximumOperation, input);
+			// 不等待,组合后续处理
+			CompletableFuture<List<String>> doOperation = future.thenApply(list -> {
+				List<String> success = new ArrayList<String>();
+				for (OperationResult or : list) {
+					if (OperationResult.SUCCESS.equals(or.getResultCode())) {
+						success.add(or.getOperation());
+					}
+				}
+				return success;
+			});
+			assertEquals(3, future.get().size());
+			System.out.println("当前处理成功的业务:" + doOperation.get());
+			// 未知的业务不在调用线程中抛出异常,以异常完成future
+			future = qq.doMaximumOperationAsync("unknown_operation", input);
+			assertTrue(future.isCompletedExceptionally());
+			// 无效的类方法与执行失败一样以错误结果完成
+			OperationResult or = qq.doMinimumOperationAsync("operation2_sub9", "com.github.quickquarantine.test.Operation2.sub9", maximumOperation, input.get(0)).get();
+			assertEquals(OperationResult.ERROR, or.getResultCode());
+			assertEquals("operation2_sub9", or.getOperation());
+			// 参数个数不一致时,提交之前即以异常完成,不会有单元子业务已在执行
+			future = qq.doMaximumOperationAsync(maximumOperation, input.subList(0, 2));
+			assertTrue(future.isCompletedExceptionally());
+			future = qq.doAllOfMinimumOperationAsync(Arrays.asList("operation2_sub1", "operation2_sub3"), maximumOperation, input);
+			assertTrue(future.isCompletedExceptionally());
+			try {
+				qq.doMaximumOperation(maximumOperation, input.subList(0, 2));
+				assertTrue("未拒绝参数个数不一致的请求", false);
+			} catch (QuickQuarantineException e) {
+				System.out.println(e.getMessage());
+			}
+			// 提交失败(开启结果缓存的单元子业务计算输入参数的哈希值失败)同样以错误结果完成
+			Map<String, Object> key = new HashMap<String, Object>();
+			key.put("id", new Object() {
+				@Override
+				public int hashCode() {
+					throw new IllegalStateException("hashCode");
+				}
+			});
+			or = qq.doMinimumOperationAsync("operation2_sub3", "com.github.quickquarantine.test.Operation2.sub3", "operation2", OperationInput.initOperationInput(key)).get();
+			assertEquals(OperationResult.ERROR, or.getResultCode());
+			assertEquals("operation2_sub3", or.getOperation());
+		}
+	}
+	
+	@Test
+	public void testDoMinimumOperationTimeout() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			long start = System.currentTimeMillis();
+			OperationResult doOperation = qq.doMinimumOperationAsync("operation1_sub3", "com.github.quickquarantine.test.Operation1.sub3", "operation1", OperationInput.initOperationInput(""), 200L, TimeUnit.MILLISECONDS).get();
+			assertEquals(OperationResult.TIMEOUT, doOperation.getResultCode());
+			assertTrue(System.currentTimeMillis() - start < 5000L);
+			System.out.println("当前的业务:" + doOperation);
+		}
+	}
+	
+	@Test
+	public void testDoMaximumOperationStream() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			String maximumOperation = "operation2";
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			input.add(OperationInput.initOperationInput(""));
+			input.add(OperationInput.initOperationInput(new ArrayList<Object>()));
+			input.add(OperationInput.initOperationInput(new HashMap<String, Object>()));
+			// 按完成顺序逐个处理结果
+			Iterator<OperationResult> it = qq.doMaximumOperationStream(maximumOperation, input);
+			int count = 0;
+			while (it.hasNext()) {
+				System.out.println("已完成的业务:" + it.next());
+				count++;
+			}
+			assertEquals(3, count);
+		}
+	}
+	
+	@Test
+	public void testDoBatchMaximumOperation() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			String maximumOperation = "operation2";
+			List<List<OperationInput>> input = new ArrayList<List<OperationInput>>();
+			for (int i = 0; i < 10; i++) {
+				List<OperationInput> requestInput = new ArrayList<OperationInput>();
+				requestInput.add(OperationInput.initOperationInput("customer" + i));
+				requestInput.add(OperationInput.initOperationInput(new ArrayList<Object>()));
+				requestInput.add(OperationInput.initOperationInput(new HashMap<String, Object>()));
+				input.add(requestInput);
+			}
+			List<List<OperationResult>> list = qq.doBatchMaximumOperation(maximumOperation, input);
+			assertEquals(10, list.size());
+			for (List<OperationResult> requestResult : list) {
+				assertEquals(3, requestResult.size());
+			}
+			System.out.println("批量处理的结果:" + list);
+			// 任一请求的参数个数与单元子业务个数不一致时,提交之前整批拒绝
+			input.get(5).remove(2);
+			try {
+				qq.doBatchMaximumOperation(maximumOperation, input);
+				assertTrue("未拒绝参数个数不一致的请求", false);
+			} catch (QuickQuarantineException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void testDoMaximumOperationCache() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			String maximumOperation = "operation2";
+			OperationCache cache = Factory.getExecutionPlan(maximumOperation).getSubOperationPlan("operation2_sub3").getCache();
+			assertNotNull(cache);
+			Map<String, Object> key = new HashMap<String, Object>();
+			key.put("id", System.nanoTime());
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			input.add(OperationInput.initOperationInput(""));
+			input.add(OperationInput.initOperationInput(new ArrayList<Object>()));
+			input.add(OperationInput.initOperationInput(key));
+			// 第一次执行并缓存成功的结果,第二次相同输入命中缓存
+			qq.doMaximumOperation(maximumOperation, input);
+			long hitCount = cache.getHitCount();
+			List<OperationResult> list = qq.doMaximumOperation(maximumOperation, input);
+			assertEquals(hitCount + 1, cache.getHitCount());
+			assertEquals(3, list.size());
+			// 结果按单元子业务的顺序返回,命中缓存的第三个结果仍在原位置
+			assertEquals("operation2_sub3", list.get(2).getOperation());
+			assertEquals(OperationResult.SUCCESS, list.get(2).getResultCode());
+			System.out.println("缓存统计:" + cache);
+		}
+	}
+	
+	@Test
+	public void testDoMaximumOperationDag() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			// 测试专用的顶级业务,不影响共享的operation2:dag_sub3依赖成功的dag_sub1,dag_sub4还依赖返回错误的dag_sub2
+			String[] config = new String[]{
+					"seriesClassStaticMethodName = com.github.quickquarantine.test.Operation2.sub1|com.github.quickquarantine.test.Operation2.sub2|com.github.quickquarantine.test.Operation2.sub4|com.github.quickquarantine.test.Operation2.sub4",
+					"seriesOperation = dag_sub1|dag_sub2|dag_sub3|dag_sub4",
+					"dependsOn.dag_sub3 = dag_sub1",
+					"dependsOn.dag_sub4 = dag_sub1|dag_sub2"};
+			registerFixture("dag_operation", config);
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			for (int i = 0; i < 4; i++) {
+				input.add(OperationInput.initOperationInput(""));
+			}
+			List<OperationResult> list = qq.doMaximumOperation("dag_operation", input);
+			assertEquals(OperationResult.SUCCESS, list.get(0).getResultCode());
+			assertEquals(OperationResult.ERROR, list.get(1).getResultCode());
+			// 上游的结果通过OperationInput.getUpstream传入
+			assertEquals(OperationResult.SUCCESS, list.get(2).getResultCode());
+			assertEquals("[dag_sub1]", String.valueOf(list.get(2).getResult()));
+			// 任一上游未成功则跳过
+			assertEquals(OperationResult.SKIPPED, list.get(3).getResultCode());
+			// 有依赖的单元子业务不能合并并发调用,保持原执行计划
+			String[] coalesce = Arrays.copyOf(config, config.length + 1);
+			coalesce[config.length] = "coalesce.dag_sub3 = 1";
+			try {
+				registerFixture("dag_operation", coalesce);
+				assertTrue("未拒绝有依赖的单元子业务合并并发调用", false);
+			} catch (QuickQuarantineException e) {
+				System.out.println(e.getMessage());
+			}
+			assertNull(Factory.getExecutionPlan("dag_operation").getSubOperationPlan("dag_sub3").getSingleFlight());
+		}
+	}
+	
+	@Test
+	public void testDoMinimumOperationCoalesce() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			// 测试专用的顶级业务,不影响共享的operation1
+			registerFixture("coalesce_operation",
+					"seriesClassStaticMethodName = com.github.quickquarantine.test.Operation1.sub4",
+					"seriesOperation = coalesce_sub1",
+					"coalesce.coalesce_sub1 = 1");
+			int count = Operation1.SUB4_COUNT.get();
+			String key = "coalesce" + System.nanoTime();
+			// 同时到达的相同调用只执行一次
+			List<CompletableFuture<OperationResult>> futures = new ArrayList<CompletableFuture<OperationResult>>();
+			for (int i = 0; i < 10; i++) {
+				futures.add(qq.doMinimumOperationAsync("coalesce_sub1", "com.github.quickquarantine.test.Operation1.sub4", "coalesce_operation", OperationInput.initOperationInput(key)));
+			}
+			for (CompletableFuture<OperationResult> future : futures) {
+				OperationResult or = future.get();
+				assertEquals(OperationResult.SUCCESS, or.getResultCode());
+				assertEquals(key, or.getResult());
+			}
+			assertEquals(count + 1, Operation1.SUB4_COUNT.get());
+			System.out.println("合并统计:" + Factory.getExecutionPlan("coalesce_operation").getSubOperationPlan("coalesce_sub1").getSingleFlight());
+		}
+	}
+	
+	@Test
+	public void testDoMinimumOperationCircuitBreaker() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			// 测试专用的顶级业务,不影响共享的operation1
+			registerFixture("breaker_operation",
+					"seriesClassStaticMethodName = com.github.quickquarantine.test.Operation1.sub2",
+					"seriesOperation = breaker_sub1",
+					"breaker.breaker_sub1.failureRate = 50",
+					"breaker.breaker_sub1.window = 4",
+					"breaker.breaker_sub1.minimumCalls = 4",
+					"breaker.breaker_sub1.openTime = 200",
+					"breaker.breaker_sub1.halfOpenCalls = 1");
+			OperationCircuitBreaker circuitBreaker = Factory.getExecutionPlan("breaker_operation").getSubOperationPlan("breaker_sub1").getCircuitBreaker();
+			assertNotNull(circuitBreaker);
+			circuitBreaker.reset();
+			// breaker_sub1总是返回错误,窗口内4次调用全部失败后熔断
+			for (int i = 0; i < 4; i++) {
+				OperationResult or = qq.doMinimumOperation("breaker_sub1", "com.github.quickquarantine.test.Operation1.sub2", "breaker_operation", OperationInput.initOperationInput(""));
+				assertEquals(OperationResult.ERROR, or.getResultCode());
+			}
+			assertEquals(OperationCircuitBreaker.State.OPEN, circuitBreaker.getStateEnum());
+			OperationResult or = qq.doMinimumOperation("breaker_sub1", "com.github.quickquarantine.test.Operation1.sub2", "breaker_operation", OperationInput.initOperationInput(""));
+			assertEquals(OperationResult.CIRCUIT_OPEN, or.getResultCode());
+			// 熔断时间到期后放行探测调用,探测仍失败则再次熔断
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+			while (OperationResult.CIRCUIT_OPEN.equals(or.getResultCode()) && System.nanoTime() < deadline) {
+				Thread.sleep(10L);
+				or = qq.doMinimumOperation("breaker_sub1", "com.github.quickquarantine.test.Operation1.sub2", "breaker_operation", OperationInput.initOperationInput(""));
+			}
+			assertEquals(OperationResult.ERROR, or.getResultCode());
+			assertEquals(OperationCircuitBreaker.State.OPEN, circuitBreaker.getStateEnum());
+			System.out.println("熔断器:" + circuitBreaker);
+			circuitBreaker.reset();
+		}
+	}
+	
+	@Test
+	public void testOperationMetrics() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			String maximumOperation = "operation2";
+			OperationMetrics metrics = Factory.getExecutionPlan(maximumOperation).getMetrics();
+			long success = metrics.getSuccessCount();
+			long error = metrics.getErrorCount();
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			input.add(OperationInput.initOperationInput(""));
+			input.add(OperationInput.initOperationInput(new ArrayList<Object>()));
+			input.add(OperationInput.initOperationInput(new HashMap<String, Object>()));
+			qq.doMaximumOperation(maximumOperation, input);
+			// operation2_sub2返回错误,其余成功
+			assertEquals(success + 2, metrics.getSuccessCount());
+			assertEquals(error + 1, metrics.getErrorCount());
+			// 通过JMX读取
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("com.github.quickquarantine:type=SubOperation,operation=\"operation2\",subOperation=\"operation2_sub2\"");
+			assertTrue(((Long) server.getAttribute(name, "ErrorCount")).longValue() > 0L);
+			assertTrue(((Double) server.getAttribute(name, "EndToEndP99")).doubleValue() >= 0.0);
+			System.out.println("业务指标:" + metrics);
+		}
+	}
+	
+	@Test
+	public void testOperationRegistry() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			QuickQuarantine qq = new IQuickQuarantine();
+			
+			File dir = Files.createTempDirectory("quickquarantine-registry").toFile();
+			String source = "package com.github.quickquarantine.test.registry;\n"
+					+ "import com.github.quickquarantine.annotation.*;\n"
+					+ "import com.github.quickquarantine.entity.*;\n"
+					+ "@QuarantinedOperation(value = \"operation3\", maximumPoolSize = 4, corePoolSize = 2, workQueueSize = 10, timeout = 1000L)\n"
+					+ "public class Operation3 {\n"
+					+ "	@QuarantinedSubOperation(\"operation3_sub1\")\n"
+					+ "	public static OperationResult sub1(OperationInput input) { OperationResult or = new OperationResult(); or.setResult(\"sub1:\" + input.getInput(OperationInput.O_TYPE)); or.success(); return or; }\n"
+					+ "	@QuarantinedSubOperation(\"operation3_sub2\")\n"
+					+ "	static OperationResult sub2(OperationInput input) { OperationResult or = new OperationResult(); or.setResult(\"sub2:\" + input.getInput(OperationInput.O_TYPE)); or.success(); return or; }\n"
+					+ "}\n";
+			// 编译时生成注册表,并登记到META-INF/services
+			assertEquals(0, compile(dir, "Operation3", source));
+			URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader());
+			Iterator<OperationRegistry> registries = ServiceLoader.load(OperationRegistry.class, loader).iterator();
+			OperationRegistry registry = registries.next();
+			assertEquals("operation3", registry.getOperation());
+			assertEquals("operation3_sub1|operation3_sub2", registry.getConfig().getProperty(Factory.SERIES_OPERATION));
+			Factory.register(registry);
+			// 预先登记的调用器,不再通过反射解析
+			assertSame(OperationInvoker.getInvoker("com.github.quickquarantine.test.registry.Operation3.sub1"), Factory.getExecutionPlan("operation3").getInvoker("operation3_sub1"));
+			assertEquals(1000L, Factory.getExecutionPlan("operation3").getTimeout());
+			assertEquals(4, ((ThreadPoolExecutor) Factory.getExecutionPlan("operation3").getThreadPool()).getMaximumPoolSize());
+			List<OperationInput> input = new ArrayList<OperationInput>();
+			input.add(OperationInput.initOperationInput((Object) "a"));
+			input.add(OperationInput.initOperationInput((Object) "b"));
+			List<OperationResult> list = qq.doMaximumOperation("operation3", input);
+			assertEquals("sub1:a", list.get(0).getResult());
+			assertEquals("sub2:b", list.get(1).getResult());
+			// 注解使用错误在编译时即失败
+			String invalid = source.replace("static OperationResult sub2", "OperationResult sub2").replace("Operation3", "Operation4").replace("operation3", "operation4");
+			assertTrue(compile(dir, "Operation4", invalid) != 0);
+		}
+	}
+	
+	/**
+	 * 以编程方式注册测试专用的顶级业务,不修改共享的示例配置
+	 * @param operation 顶级业务
+	 * @param config 线程池以外的配置项,格式与配置文件相同
+	 */
+	private static void registerFixture(final String operation, String... config) throws IOException {
+		final Properties p = new Properties();
+		p.load(new StringReader("maximumPoolSize = 20\ncorePoolSize = 10\nworkQueueSize = 50\nkeepAliveTime = 180\nallowCoreThreadTimeout = 0\n" + String.join("\n", config)));
+		Factory.register(new OperationRegistry() {
+			
+			@Override
+			public String getOperation() {
+				return operation;
+			}
+			
+			@Override
+			public Properties getConfig() {
+				return p;
+			}
+			
+			@Override
+			public void registerInvokers() {
+				// 通过反射解析调用器
+			}
+		});
+	}
+	
+	/**
+	 * 使用注解处理器编译一个源文件
+	 * @return 编译器的返回码,0表示成功
+	 */
+	private static int compile(File dir, String className, String source) throws Exception {
+		File file = new File(dir, className + ".java");
+		Files.write(file.toPath(), source.getBytes("UTF-8"));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		return compiler.run(null, null, null, "-encoding", "UTF-8", "-processor", OperationRegistryProcessor.class.getName(),
+				"-classpath", System.getProperty("java.class.path"), "-d", dir.getPath(), file.getPath());
+	}
+	
+	@Test
+	public void testReload() throws Exception {
+		Class.forName("com.github.quickquarantine.Factory");
+		if (Factory.isBuilder) {
+			// 把加载时的配置复制到临时目录,优先从临时目录读取,不修改原配置文件
+			String manifestPath = Factory.getManifestPath();
+			String dirName = manifestPath.substring(0, manifestPath.lastIndexOf('/'));
+			ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+			final File root = Files.createTempDirectory("quickquarantine").toFile();
+			File dir = new File(root, dirName);
+			dir.mkdirs();
+			Properties manifest = new Properties();
+			InputStream is = contextClassLoader.getResourceAsStream(manifestPath);
+			manifest.load(is);
+			is.close();
+			Files.copy(contextClassLoader.getResourceAsStream(manifestPath), new File(root, manifestPath).toPath());
+			for (String operation : manifest.stringPropertyNames()) {
+				String fileName = manifest.getProperty(operation).trim();
+				Files.copy(contextClassLoader.getResourceAsStream(dirName + "/" + fileName), new File(dir, fileName).toPath());
+			}
+			Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{root.toURI().toURL()}, contextClassLoader) {
+				
+				@Override
+				public URL getResource(String name) {
+					URL url = findResource(name);
+					return url != null ? url : super.getResource(name);
+				}
+			});
+			File file = new File(dir, manifest.getProperty("operation2").trim());
+			byte[] original = Files.readAllBytes(file.toPath());
+			try {
+				assertTrue(Factory.reload().isEmpty());
+				ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Factory.getExecutionPlan("operation2").getThreadPool();
+				int maximumPoolSize = threadPool.getMaximumPoolSize();
+				// 调整线程池,新增超时时间
+				String config = new String(original, "UTF-8").replace("maximumPoolSize = 80", "maximumPoolSize = 90") + "\ntimeout = 1000";
+				Files.write(file.toPath(), config.getBytes("UTF-8"));
+				List<String> changes = Factory.reload();
+				System.out.println("配置变化:" + changes);
+				assertEquals(2, changes.size());
+				assertEquals(90, threadPool.getMaximumPoolSize());
+				assertSame(threadPool, Factory.getExecutionPlan("operation2").getThreadPool());
+				assertEquals(1000L, Factory.getExecutionPlan("operation2").getTimeout("operation2_sub1"));
+				// 配置有误时保持原配置
+				Files.write(file.toPath(), config.replace("maximumPoolSize = 90", "maximumPoolSize = abc").getBytes("UTF-8"));
+				assertEquals(1, Factory.reload().size());
+				assertEquals(90, threadPool.getMaximumPoolSize());
+				assertEquals(1000L, Factory.getExecutionPlan("operation2").getTimeout());
+			} finally {
+				// 恢复原配置
+				Files.write(file.toPath(), original);
+				Factory.reload();
+				Thread.currentThread().setContextClassLoader(contextClassLoader);
+			}
+			assertEquals(0L, Factory.getExecutionPlan("operation2").getTimeout());
+			assertEquals(80, ((ThreadPoolExecutor) Factory.getExecutionPlan("operation2").getThreadPool()).getMaximumPoolSize());
+		}
+	}
+	
+}
\ No newline at end of file
@@ -1,12 +1,17 @@
 package com.github.quickquarantine.test;
 
 import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
 
 public class Operation1 {
 	
+	/** operation1_sub4实际执行的次数 */
+	public static final AtomicInteger SUB4_COUNT = new AtomicInteger(0);
+	
 	@SuppressWarnings("unchecked")
 	public static OperationResult sub1(OperationInput input) {
 		System.out.println("**************operation2_sub1**************");
@@ -29,4 +34,81 @@ public class Operation1 {
 		or.error("通信超时!");
 		return or;
 	}
+	
+	public static OperationResult sub3(OperationInput input) throws InterruptedException {
+		System.out.println("**************operation1_sub3**************");
+		// 模拟挂起的业务
+		Thread.sleep(10000L);
+		OperationResult or = new OperationResult();
+		or.success();
+		return or;
+	}
+	
+	public static OperationResult sub4(OperationInput input) throws InterruptedException {
+		System.out.println("**************operation1_sub4**************");
+		SUB4_COUNT.incrementAndGet();
+		// 模拟较慢的查询
+		Thread.sleep(300L);
+		OperationResult or = new OperationResult();
+		or.setResult(input.getInput(OperationInput.O_TYPE));
+		or.success();
+		return or;
+	}
+	
+	/** operation1_sub6实际执行的次数 */
+	public static final AtomicInteger SUB6_COUNT = new AtomicInteger(0);
+	
+	/**
+	 * 模拟长尾的查询:奇数次调用很慢,偶数次调用很快
+	 */
+	public static OperationResult sub6(OperationInput input) throws InterruptedException {
+		System.out.println("**************operation1_sub6**************");
+		if (SUB6_COUNT.incrementAndGet() % 2 == 1) {
+			Thread.sleep(5000L);
+		}
+		OperationResult or = new OperationResult();
+		or.setResult(input.getInput(OperationInput.O_TYPE));
+		or.success();
+		return or;
+	}
+	
+	/**
+	 * 模拟CPU密集型业务,在工作窃取执行器中fork嵌套的子任务求和
+	 */
+	public static OperationResult sub5(OperationInput input) {
+		System.out.println("**************operation1_sub5**************");
+		long n = (Long) input.getInput(OperationInput.O_TYPE);
+		OperationResult or = new OperationResult();
+		or.setResult(new SumTask(1L, n).invoke());
+		or.success();
+		return or;
+	}
+	
+	@SuppressWarnings("serial")
+	private static class SumTask extends RecursiveTask<Long> {
+		
+		private final long from;
+		
+		private final long to;
+		
+		private SumTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Long compute() {
+			if (to - from < 1000L) {
+				long sum = 0L;
+				for (long i = from; i <= to; i++) {
+					sum += i;
+				}
+				return sum;
+			}
+			long mid = (from + to) >>> 1;
+			SumTask left = new SumTask(from, mid);
+			left.fork();
+			return new SumTask(mid + 1, to).compute() + left.join();
+		}
+	}
 }
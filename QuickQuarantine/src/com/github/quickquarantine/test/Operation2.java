@@ -1,5 +1,7 @@
 package com.github.quickquarantine.test;
 
+import java.util.TreeSet;
+
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
 
@@ -26,4 +28,23 @@ public class Operation2 {
 		or.success();
 		return or;		
 	}
+	
+	/**
+	 * 模拟返回结果为空的业务
+	 */
+	public static OperationResult sub5(OperationInput input) {
+		System.out.println("**************operation2_sub5**************");
+		return null;
+	}
+	
+	/**
+	 * 汇总依赖的上游单元子业务,以上游单元子业务列表作为结果
+	 */
+	public static OperationResult sub4(OperationInput input) {
+		System.out.println("**************operation2_sub4**************");
+		OperationResult or = new OperationResult();
+		or.setResult(new TreeSet<String>(input.getUpstream().keySet()));
+		or.success();
+		return or;
+	}
 }
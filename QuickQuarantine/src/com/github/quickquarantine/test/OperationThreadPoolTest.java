@@ -0,0 +1,723 @@
+package com.github.quickquarantine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.OperationListener;
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.hedge.OperationHedge;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.plan.ExecutionPlan;
+import com.github.quickquarantine.plan.OperationInvoker;
+import com.github.quickquarantine.plan.SubOperationPlan;
+import com.github.quickquarantine.thread.AdaptivePoolController;
+import com.github.quickquarantine.thread.ForkJoinThreadExecutor;
+import com.github.quickquarantine.thread.OperationCollector;
+import com.github.quickquarantine.thread.OperationDag;
+import com.github.quickquarantine.thread.OperationPriorityQueue;
+import com.github.quickquarantine.thread.OperationSingleFlight;
+import com.github.quickquarantine.thread.OperationThreadPool;
+import com.github.quickquarantine.thread.OperationThreadPool.OperationThread;
+import com.github.quickquarantine.thread.VirtualThreadExecutor;
+import com.github.quickquarantine.trace.OperationEventRing;
+import com.github.quickquarantine.trace.OperationLogLimiter;
+import com.github.quickquarantine.trace.OperationTrace;
+
+public class OperationThreadPoolTest {
+	
+	/**
+	 * 本测试创建的线程池所属的业务,测试结束后从线程池注册表中移除并关闭
+	 */
+	private final List<String> operations = new ArrayList<String>();
+	
+	@After
+	public void removeThreadPools() {
+		for (String operation : operations) {
+			OperationThreadPool.remove(operation);
+		}
+	}
+	
+	/**
+	 * 冷启动时,数百个线程同时首次获取同一业务的线程池,每种业务只能存在一个线程池
+	 */
+	@Test
+	public void testGetThreadPoolConcurrently() throws Exception {
+		final String operation = "stress_operation_" + System.nanoTime();
+		Map<String, Object> threadPoolParam = threadPoolParam(8, 0, 16);
+		
+		int threadNum = 500;
+		final Set<ExecutorService> threadPools = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<ExecutorService, Boolean>()));
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadNum);
+		for (int i = 0; i < threadNum; i++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						threadPools.add(OperationThreadPool.getThreadPool(operation, threadPoolParam));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		
+		assertEquals(1, threadPools.size());
+		ExecutorService threadPool = threadPools.iterator().next();
+		assertSame(threadPool, OperationThreadPool.getThreadPool(operation, threadPoolParam));
+		OperationThreadPool.remove(operation);
+	}
+	
+	/**
+	 * 虚拟线程执行器中,maximumPoolSize是并发上限而不是线程数
+	 */
+	@Test
+	public void testVirtualThreadBulkhead() throws Exception {
+		if (!VirtualThreadExecutor.isSupported()) {
+			System.out.println("当前JDK不支持虚拟线程,跳过!");
+			return;
+		}
+		final int maximumPoolSize = 4;
+		int taskNum = 64;
+		VirtualThreadExecutor executor = new VirtualThreadExecutor("virtual_operation", maximumPoolSize, taskNum);
+		final AtomicInteger active = new AtomicInteger(0);
+		final AtomicInteger maxActive = new AtomicInteger(0);
+		final CountDownLatch done = new CountDownLatch(taskNum);
+		for (int i = 0; i < taskNum; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					int n = active.incrementAndGet();
+					while (true) {
+						int max = maxActive.get();
+						if (n <= max || maxActive.compareAndSet(max, n)) {
+							break;
+						}
+					}
+					try {
+						Thread.sleep(10L);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						active.decrementAndGet();
+						done.countDown();
+					}
+				}
+			});
+		}
+		done.await();
+		assertTrue(maxActive.get() <= maximumPoolSize);
+		executor.shutdown();
+	}
+	
+	/**
+	 * 虚拟线程执行器已关闭时,与线程池一样以拒绝结果登记,不在提交线程中抛出异常
+	 */
+	@Test
+	public void testVirtualThreadExecutorShutdown() throws Exception {
+		if (!VirtualThreadExecutor.isSupported()) {
+			System.out.println("当前JDK不支持虚拟线程,跳过!");
+			return;
+		}
+		String operation = "virtual_shutdown_operation_" + System.nanoTime();
+		VirtualThreadExecutor executor = new VirtualThreadExecutor(operation, 1, 1);
+		executor.shutdown();
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub5")).build();
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(10L), collector, 0L).start(executor);
+		assertEquals(OperationResult.REJECTED, collector.getFuture().get(1L, TimeUnit.SECONDS).get(0).getResultCode());
+	}
+	
+	/**
+	 * 自适应调整:阻塞队列积压且几乎全是阻塞时扩容,没有积压时收缩到实际需要的并发数
+	 */
+	@Test
+	public void testAdaptivePoolController() throws Exception {
+		String operation = "adaptive_operation_" + System.nanoTime();
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(2, 2, 1, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(16));
+		OperationMetrics metrics = new OperationMetrics(operation, null);
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 6; i++) {
+			threadPool.execute(new Runnable() {
+				public void run() {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		AdaptivePoolController.start(operation, threadPool, metrics, 1, 32, 100L);
+		try {
+			// 模拟一个周期内:执行耗时50ms,几乎不占用CPU
+			for (int i = 0; i < 20; i++) {
+				metrics.recordExecution(TimeUnit.MILLISECONDS.toNanos(50L));
+			}
+			assertTrue(await(() -> threadPool.getCorePoolSize() > 2));
+			assertEquals(32, threadPool.getMaximumPoolSize());
+			release.countDown();
+			// 积压消化后,少量的短业务只需要很少的线程
+			assertTrue(await(() -> threadPool.getQueue().isEmpty()));
+			metrics.recordExecution(TimeUnit.MILLISECONDS.toNanos(1L));
+			assertTrue(await(() -> threadPool.getCorePoolSize() == 1));
+		} finally {
+			AdaptivePoolController.stop(operation);
+			threadPool.shutdown();
+		}
+	}
+	
+	/**
+	 * 开启自适应调整时,热加载不按配置重置核心线程数与最大线程数;移除的线程池被关闭
+	 */
+	@Test
+	public void testResizeAdaptive() throws Exception {
+		String operation = "resize_operation_" + System.nanoTime();
+		Map<String, Object> threadPoolParam = threadPoolParam(8, 2, 10);
+		ThreadPoolExecutor threadPool = (ThreadPoolExecutor) OperationThreadPool.getThreadPool(operation, threadPoolParam);
+		try {
+			// 自适应调整后的核心线程数
+			threadPool.setCorePoolSize(5);
+			assertTrue(OperationThreadPool.resize(operation, threadPoolParam, true).isEmpty());
+			assertEquals(5, threadPool.getCorePoolSize());
+			assertEquals(1, OperationThreadPool.resize(operation, threadPoolParam, false).size());
+			assertEquals(2, threadPool.getCorePoolSize());
+		} finally {
+			assertSame(threadPool, OperationThreadPool.remove(operation));
+		}
+		assertTrue(threadPool.isShutdown());
+		assertNull(OperationThreadPool.remove(operation));
+	}
+	
+	/**
+	 * 线程池饱和时,按饱和策略处理,未能执行的单元子业务一定以拒绝结果登记,调用者不会一直等待
+	 */
+	@Test
+	public void testRejectPolicy() throws Exception {
+		// 1个线程执行A,阻塞队列容纳B,C到达时饱和
+		List<OperationResult> results = submitSaturated(Factory.REJECT_POLICY_SHED);
+		assertEquals(OperationResult.REJECTED, results.get(2).getResultCode());
+		assertSuccess(results, "A", "B");
+		// 挤出等待最久的B,C进入阻塞队列
+		results = submitSaturated(Factory.REJECT_POLICY_SHED_OLDEST);
+		assertEquals(OperationResult.REJECTED, results.get(1).getResultCode());
+		assertSuccess(results, "A", "C");
+		// 等待50毫秒仍饱和,拒绝C
+		results = submitSaturated(Factory.REJECT_POLICY_WAIT);
+		assertEquals(OperationResult.REJECTED, results.get(2).getResultCode());
+		assertSuccess(results, "A", "B");
+		// C在提交线程中执行
+		results = submitSaturated(Factory.REJECT_POLICY_CALLER_RUNS);
+		assertSuccess(results, "A", "B", "C");
+	}
+	
+	/**
+	 * 优先级阻塞队列:高优先级先出队,低优先级等待足够久后提升,不会饿死
+	 */
+	@Test
+	public void testPriorityQueue() throws Exception {
+		String operation = "priority_operation_" + System.nanoTime();
+		ThreadPoolExecutor threadPool = (ThreadPoolExecutor) getThreadPool(operation, threadPoolParam(1, 1, 3, Factory.WORK_QUEUE_TYPE, Factory.WORK_QUEUE_TYPE_PRIORITY, Factory.WORK_QUEUE_AGING_TIME, 10000L));
+		assertTrue(threadPool.getQueue() instanceof OperationPriorityQueue);
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).build();
+		final CountDownLatch release = new CountDownLatch(1);
+		// 占住唯一的线程,让后续业务在阻塞队列中排队
+		threadPool.execute(new Runnable() {
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		final List<Object> order = Collections.synchronizedList(new ArrayList<Object>());
+		OperationCollector collector = new OperationCollector(3, new OperationListener() {
+			public void onResult(OperationResult or) {
+				order.add(or.getResult());
+			}
+			
+			public void onComplete(List<OperationResult> operationResult) {
+			}
+		});
+		new OperationThread(plan, OperationInput.initOperationInput("L1").setPriority(OperationInput.PRIORITY_LOW), collector, 0, 0L).start(threadPool);
+		new OperationThread(plan, OperationInput.initOperationInput("L2").setPriority(OperationInput.PRIORITY_LOW), collector, 1, 0L).start(threadPool);
+		new OperationThread(plan, OperationInput.initOperationInput("H").setPriority(OperationInput.PRIORITY_HIGH), collector, 2, 0L).start(threadPool);
+		// workQueueSize仍是总容量
+		assertEquals(0, threadPool.getQueue().remainingCapacity());
+		release.countDown();
+		List<OperationResult> results = collector.getFuture().get(5L, TimeUnit.SECONDS);
+		// 结果按位置登记,完成顺序由监听器记录
+		assertEquals("L1", results.get(0).getResult());
+		assertEquals("H", results.get(2).getResult());
+		assertEquals(Arrays.asList("H", "L1", "L2"), order);
+		
+		// 低优先级等待超过2倍agingTime后,优先于新到的高优先级
+		OperationPriorityQueue queue = new OperationPriorityQueue(2, 50L);
+		OperationThread low = new OperationThread(plan, OperationInput.initOperationInput("L").setPriority(OperationInput.PRIORITY_LOW), new OperationCollector(1), 0L);
+		OperationThread high = new OperationThread(plan, OperationInput.initOperationInput("H").setPriority(OperationInput.PRIORITY_HIGH), new OperationCollector(1), 0L);
+		assertTrue(queue.offer(low));
+		// 按时钟而不是休眠时长判断:高优先级入队时,低优先级已等待超过3倍agingTime
+		long offered = System.nanoTime();
+		assertTrue(await(() -> System.nanoTime() - offered > TimeUnit.MILLISECONDS.toNanos(150L)));
+		assertTrue(queue.offer(high));
+		assertFalse(queue.offer(new OperationThread(plan, OperationInput.initOperationInput("N"), new OperationCollector(1), 0L)));
+		assertSame(low, queue.poll());
+		assertSame(high, queue.poll());
+		assertNull(queue.poll());
+	}
+	
+	/**
+	 * 优先级阻塞队列的shedOldest策略:挤出优先级最低的级别中等待最久的,而不是下一个出队的
+	 */
+	@Test
+	public void testShedOldestPriorityQueue() throws Exception {
+		String operation = "priority_shed_operation_" + System.nanoTime();
+		ThreadPoolExecutor threadPool = (ThreadPoolExecutor) getThreadPool(operation, threadPoolParam(1, 1, 2, Factory.WORK_QUEUE_TYPE, Factory.WORK_QUEUE_TYPE_PRIORITY, Factory.WORK_QUEUE_AGING_TIME, 10000L, Factory.REJECT_POLICY, Factory.REJECT_POLICY_SHED_OLDEST));
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).build();
+		final CountDownLatch release = new CountDownLatch(1);
+		// 占住唯一的线程,阻塞队列容纳较早的L和H
+		threadPool.execute(new Runnable() {
+			public void run() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		OperationCollector collector = new OperationCollector(4);
+		new OperationThread(plan, OperationInput.initOperationInput("L").setPriority(OperationInput.PRIORITY_LOW), collector, 0, 0L).start(threadPool);
+		new OperationThread(plan, OperationInput.initOperationInput("H").setPriority(OperationInput.PRIORITY_HIGH), collector, 1, 0L).start(threadPool);
+		// N到达时挤出L而不是H
+		new OperationThread(plan, OperationInput.initOperationInput("N"), collector, 2, 0L).start(threadPool);
+		// 阻塞队列中都是优先级更高的业务,拒绝新到的L2
+		new OperationThread(plan, OperationInput.initOperationInput("L2").setPriority(OperationInput.PRIORITY_LOW), collector, 3, 0L).start(threadPool);
+		release.countDown();
+		List<OperationResult> results = collector.getFuture().get(5L, TimeUnit.SECONDS);
+		assertEquals(OperationResult.REJECTED, results.get(0).getResultCode());
+		assertEquals(OperationResult.REJECTED, results.get(3).getResultCode());
+		assertSuccess(results, "H", "N");
+	}
+	
+	/**
+	 * 工作窃取执行器:workQueueSize仍是等待上限,单元子业务可以fork嵌套的子任务
+	 */
+	@Test
+	public void testForkJoinExecutor() throws Exception {
+		String operation = "forkjoin_operation_" + System.nanoTime();
+		ForkJoinThreadExecutor threadPool = (ForkJoinThreadExecutor) getThreadPool(operation, threadPoolParam(2, 2, 2, Factory.EXECUTOR_TYPE, Factory.EXECUTOR_TYPE_FORKJOIN, Factory.REJECT_POLICY, Factory.REJECT_POLICY_SHED));
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub5")).build();
+		final CountDownLatch release = new CountDownLatch(1);
+		// 2个执行中,2个等待,达到上限
+		for (int i = 0; i < 4; i++) {
+			threadPool.execute(new Runnable() {
+				public void run() {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		assertEquals(0, threadPool.getRemainingCapacity());
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(100000L), collector, 0L).start(threadPool);
+		assertEquals(OperationResult.REJECTED, collector.getFuture().get(1L, TimeUnit.SECONDS).get(0).getResultCode());
+		release.countDown();
+		assertTrue(await(() -> threadPool.getRemainingCapacity() == 4));
+		
+		collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(100000L), collector, 0L).start(threadPool);
+		OperationResult or = collector.getFuture().get(5L, TimeUnit.SECONDS).get(0);
+		assertEquals(OperationResult.SUCCESS, or.getResultCode());
+		assertEquals(100000L * 100001L / 2L, or.getResult());
+	}
+	
+	/**
+	 * 工作窃取执行器已关闭时,与线程池一样以拒绝结果登记,不在提交线程中抛出异常
+	 */
+	@Test
+	public void testForkJoinExecutorShutdown() throws Exception {
+		String operation = "forkjoin_shutdown_operation_" + System.nanoTime();
+		ForkJoinThreadExecutor threadPool = new ForkJoinThreadExecutor(operation, 1, 1);
+		threadPool.shutdown();
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub5")).build();
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(10L), collector, 0L).start(threadPool);
+		assertEquals(OperationResult.REJECTED, collector.getFuture().get(1L, TimeUnit.SECONDS).get(0).getResultCode());
+	}
+	
+	/**
+	 * 返回结果无效时以错误结果登记,执行耗时只记录一次
+	 */
+	@Test
+	public void testInvalidResultRecordedOnce() throws Exception {
+		String operation = "invalid_result_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(1, 1, 1));
+		OperationMetrics metrics = new OperationMetrics(operation, null);
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub5")).metrics(metrics).build();
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(""), collector, 0L).start(threadPool);
+		assertEquals(OperationResult.ERROR, collector.getFuture().get(5L, TimeUnit.SECONDS).get(0).getResultCode());
+		assertEquals(1L, metrics.getExecution().getCount());
+	}
+	
+	/**
+	 * 超时定时器登记超时结果后,调用者的回调不在所有业务共享的超时定时器中执行
+	 */
+	@Test
+	public void testTimeoutCallbackThread() throws Exception {
+		String operation = "timeout_callback_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(1, 1, 1));
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub3")).timeout(100L).build();
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(""), collector, OperationThreadPool.getDeadline(plan.getTimeout(), 0L)).start(threadPool);
+		String callbackThread = collector.getFuture().thenApply(results -> {
+			assertEquals(OperationResult.TIMEOUT, results.get(0).getResultCode());
+			return Thread.currentThread().getName();
+		}).get(5L, TimeUnit.SECONDS);
+		assertTrue(callbackThread, callbackThread.startsWith("OperationCallback-"));
+	}
+	
+	/**
+	 * 对冲请求:原调用落入长尾时,对冲的调用先完成,原调用被中断
+	 */
+	@Test
+	public void testHedge() throws Exception {
+		String operation = "hedge_operation_" + System.nanoTime();
+		ThreadPoolExecutor threadPool = (ThreadPoolExecutor) getThreadPool(operation, threadPoolParam(2, 2, 2));
+		OperationMetrics metrics = new OperationMetrics(operation, null);
+		OperationHedge hedge = new OperationHedge(operation + "_sub", 100L, 0, 100, metrics);
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub6")).hedge(hedge).metrics(metrics).build();
+		// 保证原调用是很慢的奇数次调用
+		if (Operation1.SUB6_COUNT.get() % 2 == 1) {
+			Operation1.SUB6_COUNT.incrementAndGet();
+		}
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput("hedge"), collector, 0L).start(threadPool);
+		OperationResult or = collector.getFuture().get(5L, TimeUnit.SECONDS).get(0);
+		assertEquals(OperationResult.SUCCESS, or.getResultCode());
+		assertEquals("hedge", or.getResult());
+		// 登记的是对冲调用的结果,不依赖耗时判断
+		assertEquals(1L, hedge.getHedgedCount());
+		assertEquals(1L, hedge.getWonCount());
+		assertEquals(1L, metrics.getHedgedCount());
+		assertEquals(1L, metrics.getSuccessCount());
+		// 原调用被中断,不再占用线程
+		assertTrue(await(() -> threadPool.getActiveCount() == 0));
+	}
+	
+	/**
+	 * 合并调用:领头者超时的结果不共享,没有截止时间的跟随者重新加入并自己执行;提交失败时结束本次合并调用
+	 */
+	@Test
+	public void testSingleFlightLeaderTimeout() throws Exception {
+		String operation = "single_flight_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(2, 2, 2));
+		OperationSingleFlight singleFlight = new OperationSingleFlight(operation + "_sub");
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).singleFlight(singleFlight).build();
+		int count = Operation1.SUB4_COUNT.get();
+		OperationCollector leader = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(operation), leader, OperationThreadPool.getDeadline(100L, TimeUnit.MILLISECONDS)).start(threadPool);
+		OperationCollector follower = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(operation), follower, 0L).start(threadPool);
+		assertEquals(1L, singleFlight.getCoalescedCount());
+		assertEquals(OperationResult.TIMEOUT, leader.getFuture().get(5L, TimeUnit.SECONDS).get(0).getResultCode());
+		OperationResult or = follower.getFuture().get(5L, TimeUnit.SECONDS).get(0);
+		assertEquals(OperationResult.SUCCESS, or.getResultCode());
+		assertEquals(operation, or.getResult());
+		assertEquals(count + 2, Operation1.SUB4_COUNT.get());
+		// 先通知调用者,再结束本次合并调用
+		assertTrue(await(() -> singleFlight.size() == 0));
+		
+		// 提交失败时以拒绝结果登记,不在调用线程中抛出异常,也不会留下本次合并调用
+		OperationCollector collector = new OperationCollector(1);
+		new OperationThread(plan, OperationInput.initOperationInput(operation), collector, 0L).start(new Executor() {
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("rejected");
+			}
+		});
+		assertEquals(OperationResult.REJECTED, collector.getFuture().get(1L, TimeUnit.SECONDS).get(0).getResultCode());
+		assertEquals(0, singleFlight.size());
+	}
+	
+	@Test
+	public void testOperationDag() throws Exception {
+		String operation = "dag_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(4, 4, 10));
+		OperationMetrics metrics = new OperationMetrics(operation, null);
+		List<SubOperationPlan> seriesPlan = Arrays.asList(
+				SubOperationPlan.builder("dag_a", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub1")).metrics(metrics).build(),
+				SubOperationPlan.builder("dag_b", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub2")).metrics(metrics).build(),
+				SubOperationPlan.builder("dag_c", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub4")).metrics(metrics).build(),
+				SubOperationPlan.builder("dag_d", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub4")).metrics(metrics).build(),
+				SubOperationPlan.builder("dag_e", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub4")).metrics(metrics).build());
+		Map<String, List<String>> dependsOn = new HashMap<String, List<String>>();
+		dependsOn.put("dag_c", Arrays.asList("dag_a"));
+		dependsOn.put("dag_d", Arrays.asList("dag_b", "dag_c"));
+		dependsOn.put("dag_e", Arrays.asList("dag_c"));
+		ExecutionPlan plan = new ExecutionPlan(operation, threadPool, seriesPlan, 0L, metrics, dependsOn);
+		assertTrue(plan.hasDependencies());
+		List<OperationInput> input = new ArrayList<OperationInput>();
+		for (int i = 0; i < plan.size(); i++) {
+			input.add(OperationInput.initOperationInput(""));
+		}
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		OperationListener listener = new OperationListener() {
+			public void onResult(OperationResult or) {
+				order.add(or.getOperation());
+			}
+			
+			public void onComplete(List<OperationResult> operationResult) {
+			}
+		};
+		List<OperationResult> results = new OperationDag(plan, input, 0L, listener).start().get(5L, TimeUnit.SECONDS);
+		assertEquals(5, results.size());
+		// 结果与执行计划的位置一一对应
+		for (int i = 0; i < plan.size(); i++) {
+			assertEquals(plan.getSubOperation(i), results.get(i).getOperation());
+		}
+		Map<String, OperationResult> resultMap = new HashMap<String, OperationResult>();
+		for (OperationResult or : results) {
+			resultMap.put(or.getOperation(), or);
+		}
+		// 上游成功时传入上游的结果
+		assertEquals(OperationResult.SUCCESS, resultMap.get("dag_c").getResultCode());
+		assertEquals(Collections.singleton("dag_a"), resultMap.get("dag_c").getResult());
+		assertEquals(Collections.singleton("dag_c"), resultMap.get("dag_e").getResult());
+		// 任一上游失败时跳过
+		assertEquals(OperationResult.SKIPPED, resultMap.get("dag_d").getResultCode());
+		assertEquals(1L, metrics.getSkippedCount());
+		// 下游在上游之后登记结果
+		assertTrue(order.indexOf("dag_a") < order.indexOf("dag_c"));
+		assertTrue(order.indexOf("dag_c") < order.indexOf("dag_e"));
+		// 拒绝循环依赖和不存在的上游
+		dependsOn.put("dag_a", Arrays.asList("dag_e"));
+		assertInvalidPlan(operation, threadPool, seriesPlan, dependsOn);
+		dependsOn.put("dag_a", Arrays.asList("dag_x"));
+		assertInvalidPlan(operation, threadPool, seriesPlan, dependsOn);
+	}
+	
+	/**
+	 * 线程池饱和时,上游在工作线程中提交下游不会阻塞在自己所在的线程池上:
+	 * 1个线程执行dag_a,阻塞队列容纳dag_b,dag_a完成时提交dag_c,block策略下在工作线程中直接执行
+	 */
+	@Test
+	public void testOperationDagSaturated() throws Exception {
+		String operation = "dag_saturated_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(1, 1, 1, Factory.REJECT_POLICY, Factory.REJECT_POLICY_BLOCK));
+		List<SubOperationPlan> seriesPlan = Arrays.asList(
+				SubOperationPlan.builder("dag_a", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).build(),
+				SubOperationPlan.builder("dag_b", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).build(),
+				SubOperationPlan.builder("dag_c", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub4")).build());
+		Map<String, List<String>> dependsOn = new HashMap<String, List<String>>();
+		dependsOn.put("dag_c", Arrays.asList("dag_a"));
+		ExecutionPlan plan = new ExecutionPlan(operation, threadPool, seriesPlan, 0L, null, dependsOn);
+		List<OperationInput> input = Arrays.asList(OperationInput.initOperationInput("a"), OperationInput.initOperationInput("b"), OperationInput.initOperationInput(""));
+		List<OperationResult> results = new OperationDag(plan, input, 0L, null).start().get(5L, TimeUnit.SECONDS);
+		assertSuccess(results, "a", "b", Collections.singleton("dag_a"));
+	}
+	
+	@Test
+	public void testOperationTrace() throws Exception {
+		String operation = "trace_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(2, 2, 10));
+		OperationEventRing ring = new OperationEventRing(4, operation + "-writer");
+		OperationTrace trace = new OperationTrace(operation + "_sub", OperationTrace.LEVEL_PAYLOAD, 2L, ring);
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation2.sub1")).trace(trace).build();
+		try {
+			OperationCollector collector = new OperationCollector(4);
+			for (int i = 0; i < 4; i++) {
+				new OperationThread(plan, OperationInput.initOperationInput("trace" + i), collector, i, 0L).start(threadPool);
+			}
+			assertEquals(4, collector.getFuture().get(5L, TimeUnit.SECONDS).size());
+			// 每2次执行采样1次输入参数和返回结果
+			assertEquals(2L, trace.getSampledCount());
+			// 后台写线程异步写出
+			assertTrue(await(() -> ring.getWrittenCount() == 4L));
+			assertEquals(4L, ring.getPublishedCount());
+			assertEquals(4L, ring.getWrittenCount());
+			// 写得慢时缓冲区已满,丢弃新事件,不阻塞业务线程
+			OperationResult or = new OperationResult();
+			or.success();
+			for (int i = 0; i < 1000; i++) {
+				trace.record("trace", or, 1L, 2L, 3L);
+			}
+			assertTrue(ring.getDroppedCount() > 0L);
+			assertEquals(1004L, ring.getPublishedCount() + ring.getDroppedCount());
+		} finally {
+			ring.shutdown();
+		}
+	}
+	
+	/**
+	 * 过载事件的日志限流:每种事件每个周期最多打印一条,并带上被抑制的次数
+	 */
+	@Test
+	public void testOperationLogLimiter() throws Exception {
+		OperationLogLimiter limiter = OperationLogLimiter.get("log_limiter_operation_" + System.nanoTime());
+		assertEquals(0L, limiter.tryAcquire(OperationLogLimiter.TIMEOUT));
+		assertEquals(-1L, limiter.tryAcquire(OperationLogLimiter.TIMEOUT));
+		assertEquals(-1L, limiter.tryAcquire(OperationLogLimiter.TIMEOUT));
+		// 各种事件分别限流
+		assertEquals(0L, limiter.tryAcquire(OperationLogLimiter.REJECT));
+		// REJECT的周期晚于TIMEOUT开始,REJECT可以再次打印时TIMEOUT的周期一定已经结束
+		assertTrue(await(() -> limiter.tryAcquire(OperationLogLimiter.REJECT) >= 0L));
+		assertEquals(2L, limiter.tryAcquire(OperationLogLimiter.TIMEOUT));
+	}
+	
+	/**
+	 * 熔断器半开时只记录探测调用的结果,未执行的调用只归还许可
+	 */
+	@Test
+	public void testCircuitBreakerProbe() throws Exception {
+		OperationCircuitBreaker breaker = new OperationCircuitBreaker("breaker_operation_" + System.nanoTime(), 50, 0, 1000L, 4, 2, 200L, 2);
+		long stale = breaker.tryAcquire();
+		long permit = breaker.tryAcquire();
+		assertTrue(stale >= 0L);
+		breaker.record(permit, true, 0L);
+		breaker.record(permit, true, 0L);
+		assertEquals(OperationCircuitBreaker.State.OPEN, breaker.getStateEnum());
+		assertEquals(-1L, breaker.tryAcquire());
+		// 熔断时间到期后第一次放行的就是探测调用
+		final AtomicLong acquired = new AtomicLong();
+		assertTrue(await(() -> {
+			acquired.set(breaker.tryAcquire());
+			return acquired.get() >= 0L;
+		}));
+		long probe = acquired.get();
+		assertEquals(OperationCircuitBreaker.State.HALF_OPEN, breaker.getStateEnum());
+		// 熔断前放行、半开时才完成的调用不计入探测结果
+		breaker.record(stale, true, 0L);
+		assertEquals(0, breaker.getBufferedCalls());
+		// 未执行的探测调用归还许可
+		breaker.release(probe);
+		long probe1 = breaker.tryAcquire();
+		long probe2 = breaker.tryAcquire();
+		assertTrue(probe1 >= 0L && probe2 >= 0L);
+		assertEquals(-1L, breaker.tryAcquire());
+		breaker.record(probe1, false, 0L);
+		breaker.record(probe2, false, 0L);
+		assertEquals(OperationCircuitBreaker.State.CLOSED, breaker.getStateEnum());
+	}
+	
+	private static void assertInvalidPlan(String operation, ExecutorService threadPool, List<SubOperationPlan> seriesPlan, Map<String, List<String>> dependsOn) {
+		try {
+			new ExecutionPlan(operation, threadPool, seriesPlan, 0L, null, dependsOn);
+		} catch (QuickQuarantineException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+		assertTrue("未拒绝无效的依赖关系:" + dependsOn, false);
+	}
+	
+	private List<OperationResult> submitSaturated(String rejectPolicy) throws Exception {
+		String operation = "reject_operation_" + System.nanoTime();
+		ExecutorService threadPool = getThreadPool(operation, threadPoolParam(1, 1, 1, Factory.REJECT_POLICY, rejectPolicy, Factory.REJECT_POLICY_WAIT_TIME, 50L));
+		OperationMetrics metrics = new OperationMetrics(operation, null);
+		SubOperationPlan plan = SubOperationPlan.builder(operation + "_sub", OperationInvoker.getInvoker("com.github.quickquarantine.test.Operation1.sub4")).metrics(metrics).build();
+		OperationCollector collector = new OperationCollector(3);
+		String[] input = new String[]{"A", "B", "C"};
+		for (int i = 0; i < input.length; i++) {
+			new OperationThread(plan, OperationInput.initOperationInput(input[i]), collector, i, 0L).start(threadPool);
+		}
+		List<OperationResult> results = collector.getFuture().get(5L, TimeUnit.SECONDS);
+		assertEquals(3, results.size());
+		assertEquals(1L, metrics.getRejectedCount());
+		assertEquals(Factory.REJECT_POLICY_CALLER_RUNS.equals(rejectPolicy) ? 0L : 1L, metrics.getShedCount());
+		return results;
+	}
+	
+	/**
+	 * 获取测试专用的线程池,测试结束后移除
+	 * @param operation 业务,每个测试唯一
+	 * @param threadPoolParam 线程池参数
+	 * @return 线程池
+	 */
+	private ExecutorService getThreadPool(String operation, Map<String, Object> threadPoolParam) {
+		operations.add(operation);
+		return OperationThreadPool.getThreadPool(operation, threadPoolParam);
+	}
+	
+	/**
+	 * 线程池参数,空闲线程1秒后回收,核心线程不回收
+	 * @param maximumPoolSize 最大线程数
+	 * @param corePoolSize 核心线程数
+	 * @param workQueueSize 阻塞队列大小
+	 * @param param 其他参数,依次为配置项和值
+	 * @return 线程池参数
+	 */
+	private static Map<String, Object> threadPoolParam(int maximumPoolSize, int corePoolSize, int workQueueSize, Object... param) {
+		Map<String, Object> threadPoolParam = new HashMap<String, Object>();
+		threadPoolParam.put(Factory.MAXIMUM_POOL_SIZE, maximumPoolSize);
+		threadPoolParam.put(Factory.CORE_POOL_SIZE, corePoolSize);
+		threadPoolParam.put(Factory.WORK_QUEUE_SIZE, workQueueSize);
+		threadPoolParam.put(Factory.KEEP_ALIVE_TIME, 1);
+		threadPoolParam.put(Factory.ALLOW_CORE_THREAD_TIMEOUT, Boolean.FALSE);
+		for (int i = 0; i < param.length; i += 2) {
+			threadPoolParam.put((String) param[i], param[i + 1]);
+		}
+		return threadPoolParam;
+	}
+	
+	/**
+	 * 轮询等待条件成立,代替固定时长的休眠
+	 * @param condition 条件
+	 * @return 5秒内条件是否成立
+	 */
+	private static boolean await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() - deadline >= 0L) {
+				return false;
+			}
+			Thread.sleep(10L);
+		}
+		return true;
+	}
+	
+	private static void assertSuccess(List<OperationResult> results, Object... expected) {
+		Set<Object> success = new HashSet<Object>();
+		for (OperationResult or : results) {
+			if (OperationResult.SUCCESS.equals(or.getResultCode())) {
+				success.add(or.getResult());
+			}
+		}
+		assertEquals(new HashSet<Object>(Arrays.asList(expected)), success);
+	}
+}
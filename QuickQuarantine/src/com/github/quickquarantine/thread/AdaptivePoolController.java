@@ -0,0 +1,198 @@
+package com.github.quickquarantine.thread;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.quickquarantine.metrics.OperationMetrics;
+
+/**
+ * 线程池自适应调整,替代手工估算 最大线程数=CPU核数/(1-阻塞系数)
+ * 每个周期根据顶级业务的指标计算:
+ * a.阻塞系数 b = 1 - CPU耗时/执行耗时,由此得到线程数的上限 CPU核数/(1-b),超过它增加线程不再提高吞吐量
+ * b.利特尔法则 L = 吞吐量 * 平均执行耗时,即实际需要的并发数
+ * c.阻塞队列有积压时,需求大于处理能力,核心线程数按1.5倍增长,但不超过a的上限;
+ *   没有积压时,核心线程数收缩到 L * 1.25,保留25%的余量
+ * 结果限制在[minPoolSize, maxPoolSize]之间,最大线程数固定为maxPoolSize以吸收突发流量
+ * 在超时定时器线程中运行,不影响业务线程;只支持平台线程的线程池
+ *
+ * @author shangbincheng001
+ *
+ */
+public class AdaptivePoolController implements Runnable {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(AdaptivePoolController.class);
+	
+	/**
+	 * 阻塞系数的上限,防止CPU耗时为0时线程数上限无穷大
+	 */
+	private static final double MAX_BLOCKING_COEFFICIENT = 0.99;
+	
+	/**
+	 * 正在运行的自适应调整,每个顶级业务一个
+	 */
+	private static final ConcurrentMap<String, AdaptivePoolController> controllerMap = new ConcurrentHashMap<String, AdaptivePoolController>();
+	
+	private final String operation;
+	
+	private final ThreadPoolExecutor threadPool;
+	
+	private final OperationMetrics metrics;
+	
+	private final int minPoolSize;
+	
+	private final int maxPoolSize;
+	
+	/**
+	 * 调整周期(毫秒)
+	 */
+	private final long interval;
+	
+	private final int processors = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * 上一周期的累计值
+	 */
+	private long lastCount;
+	
+	private long lastWallTime;
+	
+	private long lastCpuTime;
+	
+	private volatile ScheduledFuture<?> future;
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 * @param metrics 顶级业务的指标
+	 * @param minPoolSize 核心线程数下限
+	 * @param maxPoolSize 最大线程数上限
+	 * @param interval 调整周期(毫秒)
+	 */
+	private AdaptivePoolController(String operation, ThreadPoolExecutor threadPool, OperationMetrics metrics, int minPoolSize, int maxPoolSize, long interval) {
+		this.operation = operation;
+		this.threadPool = threadPool;
+		this.metrics = metrics;
+		this.minPoolSize = minPoolSize;
+		this.maxPoolSize = maxPoolSize;
+		this.interval = interval;
+	}
+	
+	/**
+	 * 开始自适应调整顶级业务的线程池,替换之前的调整
+	 * @param operation 顶级业务
+	 * @param threadPool 顶级业务对应的线程池
+	 * @param metrics 顶级业务的指标
+	 * @param minPoolSize 核心线程数下限
+	 * @param maxPoolSize 最大线程数上限
+	 * @param interval 调整周期(毫秒)
+	 * @return 自适应调整
+	 */
+	public static AdaptivePoolController start(String operation, ThreadPoolExecutor threadPool, OperationMetrics metrics, int minPoolSize, int maxPoolSize, long interval) {
+		AdaptivePoolController controller = new AdaptivePoolController(operation, threadPool, metrics, minPoolSize, maxPoolSize, interval);
+		metrics.enableCpuTime();
+		controller.lastCount = metrics.getExecution().getCount();
+		controller.lastWallTime = metrics.getExecution().getSum();
+		controller.lastCpuTime = metrics.getCpuTime();
+		// 先放大最大线程数,再调整核心线程数,保证核心线程数不超过最大线程数
+		if (threadPool.getMaximumPoolSize() < maxPoolSize) {
+			threadPool.setMaximumPoolSize(maxPoolSize);
+		}
+		threadPool.setCorePoolSize(Math.max(minPoolSize, Math.min(maxPoolSize, threadPool.getCorePoolSize())));
+		threadPool.setMaximumPoolSize(maxPoolSize);
+		controller.future = OperationThreadPool.timer.scheduleWithFixedDelay(controller, interval, interval, TimeUnit.MILLISECONDS);
+		AdaptivePoolController old = controllerMap.put(operation, controller);
+		if (old != null) {
+			old.stop();
+		}
+		LOGGING.info("开始自适应调整线程池:[ 业务={}, 核心线程数下限={}, 最大线程数上限={}, 周期={}ms ]", new Object[]{operation, minPoolSize, maxPoolSize, interval});
+		return controller;
+	}
+	
+	/**
+	 * 停止自适应调整顶级业务的线程池,线程池保持当前大小
+	 * @param operation 顶级业务
+	 */
+	public static void stop(String operation) {
+		AdaptivePoolController controller = controllerMap.remove(operation);
+		if (controller != null) {
+			controller.stop();
+		}
+	}
+	
+	private void stop() {
+		ScheduledFuture<?> f = future;
+		if (f != null) {
+			f.cancel(false);
+		}
+	}
+	
+	public void run() {
+		try {
+			adjust();
+		} catch (RuntimeException e) {
+			// 不能抛出,否则定时任务不再执行
+			LOGGING.error(String.format("业务:[ %s ],自适应调整线程池失败!", operation), e);
+		}
+	}
+	
+	private void adjust() {
+		long count = metrics.getExecution().getCount();
+		long wallTime = metrics.getExecution().getSum();
+		long cpuTime = metrics.getCpuTime();
+		long n = count - lastCount;
+		// 执行耗时(微秒)
+		double wall = wallTime - lastWallTime;
+		// CPU耗时(微秒)
+		double cpu = (cpuTime - lastCpuTime) / 1000.0;
+		lastCount = count;
+		lastWallTime = wallTime;
+		lastCpuTime = cpuTime;
+		int queueSize = threadPool.getQueue().size();
+		if (n <= 0L || wall <= 0.0) {
+			// 没有业务,保持不变
+			return;
+		}
+		double blocking = Math.max(0.0, Math.min(MAX_BLOCKING_COEFFICIENT, 1.0 - cpu / wall));
+		int limit = (int) Math.ceil(processors / (1.0 - blocking));
+		// 利特尔法则:并发数 = 吞吐量(个/微秒) * 平均执行耗时(微秒)
+		double throughput = n / (interval * 1000.0);
+		double concurrency = throughput * (wall / n);
+		int current = threadPool.getCorePoolSize();
+		int target;
+		if (queueSize > 0) {
+			target = Math.min(limit, (int) Math.ceil(Math.max(concurrency, current) * 1.5));
+		} else {
+			target = (int) Math.ceil(concurrency * 1.25);
+		}
+		target = Math.max(minPoolSize, Math.min(maxPoolSize, target));
+		if (target != current) {
+			threadPool.setCorePoolSize(target);
+			LOGGING.info("自适应调整线程池:[ 业务={}, 阻塞系数={}, 吞吐量={}/s, 平均执行耗时={}ms, 队列积压={}, 核心线程数={}->{} ]",
+					new Object[]{operation, String.format("%.2f", blocking), String.format("%.1f", throughput * 1000000.0), String.format("%.3f", wall / n / 1000.0), queueSize, current, target});
+		}
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public int getMinPoolSize() {
+		return minPoolSize;
+	}
+	
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("AdaptivePoolController [operation=%s, minPoolSize=%s, maxPoolSize=%s, interval=%s ]", new Object[]{operation, minPoolSize, maxPoolSize, interval});
+	}
+	
+}
@@ -0,0 +1,212 @@
+package com.github.quickquarantine.thread;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.quickquarantine.Factory;
+
+/**
+ * 工作窃取执行器,适用于几乎不阻塞的CPU密集型业务(比如评分、转换)
+ * 由ForkJoinPool支撑,每个工作线程一个双端队列,空闲的工作线程从其他线程的队列中窃取任务,不再争用ArrayBlockingQueue的同一把锁
+ * a.maximumPoolSize是并行度,即工作线程数,按CPU核数设置即可
+ * b.workQueueSize仍然是等待执行的单元子业务上限,超过maximumPoolSize+workQueueSize时,按饱和策略处理,见OperationRejectedHandler;
+ *   已关闭时与线程池一样以拒绝结果登记
+ * c.单元子业务在工作线程中执行,可以直接fork嵌套的子任务(RecursiveTask、RecursiveAction、ForkJoinTask.invokeAll),
+ *   子任务进入当前工作线程的双端队列,由同一个ForkJoinPool执行,不计入workQueueSize
+ * 注意:不要在工作线程中长时间阻塞,阻塞型业务请使用platform或virtual
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class ForkJoinThreadExecutor extends AbstractExecutorService {
+	
+	private final ForkJoinPool pool;
+	
+	/**
+	 * 并行度,即maximumPoolSize
+	 */
+	private final int maximumPoolSize;
+	
+	/**
+	 * 等待执行的单元子业务上限,即workQueueSize
+	 */
+	private final int workQueueSize;
+	
+	/**
+	 * 执行中与等待执行的单元子业务上限,即maximumPoolSize+workQueueSize
+	 */
+	private final Semaphore admission;
+	
+	/**
+	 * 饱和策略
+	 */
+	private final OperationRejectedHandler handler;
+	
+	/**
+	 * 正在执行的单元子业务个数
+	 */
+	private final AtomicInteger activeCount = new AtomicInteger(0);
+	
+	private final AtomicLong completedTaskCount = new AtomicLong(0L);
+	
+	/**
+	 * 饱和时提交阻塞
+	 * @param operation 顶级业务
+	 * @param maximumPoolSize 并行度
+	 * @param workQueueSize 等待执行的单元子业务上限
+	 */
+	public ForkJoinThreadExecutor(String operation, int maximumPoolSize, int workQueueSize) {
+		this(operation, maximumPoolSize, workQueueSize, new OperationRejectedHandler(operation, Factory.REJECT_POLICY_BLOCK, Factory.DEFAULT_REJECT_POLICY_WAIT_TIME));
+	}
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param maximumPoolSize 并行度
+	 * @param workQueueSize 等待执行的单元子业务上限
+	 * @param handler 饱和策略
+	 */
+	public ForkJoinThreadExecutor(final String operation, int maximumPoolSize, int workQueueSize, OperationRejectedHandler handler) {
+		final AtomicInteger count = new AtomicInteger(0);
+		this.pool = new ForkJoinPool(maximumPoolSize, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				// 方便跟踪日志信息
+				t.setName(ForkJoinThreadExecutor.class.getSimpleName() + "-" + operation + "-" + count.incrementAndGet());
+				return t;
+			}
+		}, null, false);
+		this.maximumPoolSize = maximumPoolSize;
+		this.workQueueSize = workQueueSize;
+		this.admission = new Semaphore(maximumPoolSize + workQueueSize);
+		this.handler = handler;
+	}
+	
+	@Override
+	public void execute(final Runnable command) {
+		// 已关闭时以拒绝结果登记,与线程池一致
+		if (pool.isShutdown()) {
+			handler.rejectShutdown(command);
+			return;
+		}
+		// 超过maximumPoolSize+workQueueSize时按饱和策略处理,与线程池一致
+		if (!admission.tryAcquire() && !handler.acquire(command, admission)) {
+			return;
+		}
+		try {
+			pool.execute(new Runnable() {
+				public void run() {
+					activeCount.incrementAndGet();
+					try {
+						command.run();
+					} finally {
+						activeCount.decrementAndGet();
+						completedTaskCount.incrementAndGet();
+						admission.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// 取得许可之后恰好关闭
+			admission.release();
+			handler.rejectShutdown(command);
+		}
+	}
+	
+	/**
+	 * @return 底层的ForkJoinPool
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	public OperationRejectedHandler getRejectedHandler() {
+		return handler;
+	}
+	
+	/**
+	 * @return 正在执行的单元子业务个数
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+	
+	/**
+	 * @return 等待执行的单元子业务个数
+	 */
+	public int getQueueSize() {
+		return Math.max(0, maximumPoolSize + workQueueSize - admission.availablePermits() - activeCount.get());
+	}
+	
+	/**
+	 * @return 还可以提交而不阻塞的单元子业务个数
+	 */
+	public int getRemainingCapacity() {
+		return admission.availablePermits();
+	}
+	
+	/**
+	 * @return 工作线程数
+	 */
+	public int getPoolSize() {
+		return pool.getPoolSize();
+	}
+	
+	/**
+	 * @return 工作线程之间窃取任务的次数
+	 */
+	public long getStealCount() {
+		return pool.getStealCount();
+	}
+	
+	public long getCompletedTaskCount() {
+		return completedTaskCount.get();
+	}
+	
+	/**
+	 * @return 等待执行的单元子业务上限
+	 */
+	public int getWorkQueueSize() {
+		return workQueueSize;
+	}
+	
+	/**
+	 * @return 并行度
+	 */
+	public int getMaximumPoolSize() {
+		return maximumPoolSize;
+	}
+	
+	@Override
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	@Override
+	public List<Runnable> shutdownNow() {
+		return pool.shutdownNow();
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+	
+	@Override
+	public boolean isTerminated() {
+		return pool.isTerminated();
+	}
+	
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+	
+}
@@ -0,0 +1,151 @@
+package com.github.quickquarantine.thread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.quickquarantine.OperationListener;
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 一次请求的结果汇总器
+ * 子线程执行完毕后登记各子业务的结果,由最后一个完成的子线程完成future,
+ * 整个过程没有任何线程需要等待:
+ * a.阻塞接口在future上等待,等价于原来的countDownLatch.await()
+ * b.异步接口直接返回future,调用者可以继续组合,不必占用线程
+ * c.流式接口按完成顺序逐个通知监听器,不必等待最慢的子业务
+ * d.批量请求整批共享一个汇总器,结果按请求分组
+ * 结果按位置登记:每个请求一个预先分配的数组,各子业务写入自己的位置,不加锁;
+ * 返回的结果列表与seriesOperation或allMinimumOperation的顺序一致,可以按位置读取
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationCollector {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(OperationCollector.class);
+	
+	/**
+	 * 按位置登记的结果数组,批量请求时每个请求一个,按请求分组
+	 * 普通写即可:每个写入都在remaining.decrementAndGet()之前,最后一个递减的线程能看到全部写入
+	 */
+	private final OperationResult[][] groupResult;
+	
+	/**
+	 * 尚未完成的子业务个数,批量请求时整批共享一个计数器
+	 */
+	private final AtomicInteger remaining;
+	
+	/**
+	 * 单个请求的future,批量请求时为null
+	 */
+	private final CompletableFuture<List<OperationResult>> future;
+	
+	/**
+	 * 批量请求的future,单个请求时为null
+	 */
+	private final CompletableFuture<List<List<OperationResult>>> batchFuture;
+	
+	/**
+	 * 按完成顺序接收结果的监听器,可以为null
+	 */
+	private final OperationListener listener;
+	
+	/**
+	 * @param threadNum 子业务个数
+	 */
+	public OperationCollector(int threadNum) {
+		this(threadNum, null);
+	}
+	
+	/**
+	 * @param threadNum 子业务个数
+	 * @param listener 按完成顺序接收结果的监听器,可以为null
+	 */
+	public OperationCollector(int threadNum, OperationListener listener) {
+		this.groupResult = new OperationResult[][]{new OperationResult[threadNum]};
+		this.remaining = new AtomicInteger(threadNum);
+		this.listener = listener;
+		this.future = new CompletableFuture<List<OperationResult>>();
+		this.batchFuture = null;
+		if (threadNum == 0) {
+			complete();
+		}
+	}
+	
+	/**
+	 * 批量请求的结果汇总器
+	 * @param groupNum 请求个数
+	 * @param threadNum 每个请求的子业务个数
+	 */
+	public OperationCollector(int groupNum, int threadNum) {
+		this.groupResult = new OperationResult[groupNum][threadNum];
+		this.remaining = new AtomicInteger(groupNum * threadNum);
+		this.listener = null;
+		this.future = null;
+		this.batchFuture = new CompletableFuture<List<List<OperationResult>>>();
+		if (groupNum * threadNum == 0) {
+			complete();
+		}
+	}
+	
+	/**
+	 * 登记一个子业务的结果,全部登记完毕则完成future
+	 * @param group 子业务所属的请求,单个请求时为0
+	 * @param index 子业务在请求中的位置
+	 * @param or 子业务的结果
+	 */
+	public void collect(int group, int index, OperationResult or) {
+		groupResult[group][index] = or;
+		if (listener != null) {
+			try {
+				listener.onResult(or);
+			} catch (RuntimeException e) {
+				LOGGING.error("监听器处理结果失败!", e);
+			}
+		}
+		if (remaining.decrementAndGet() == 0) {
+			complete();
+		}
+	}
+	
+	private void complete() {
+		if (batchFuture != null) {
+			List<List<OperationResult>> list = new ArrayList<List<OperationResult>>(groupResult.length);
+			for (OperationResult[] operationResult : groupResult) {
+				list.add(Arrays.asList(operationResult));
+			}
+			batchFuture.complete(list);
+			return;
+		}
+		List<OperationResult> operationResult = Arrays.asList(groupResult[0]);
+		if (listener != null) {
+			try {
+				listener.onComplete(operationResult);
+			} catch (RuntimeException e) {
+				LOGGING.error("监听器处理结果失败!", e);
+			}
+		}
+		future.complete(operationResult);
+	}
+	
+	/**
+	 * @return 全部子业务完成后,以各子业务结果列表完成的future,与子业务的位置一一对应
+	 */
+	public CompletableFuture<List<OperationResult>> getFuture() {
+		return future;
+	}
+	
+	/**
+	 * @return 整批子业务完成后,以按请求分组的结果列表完成的future
+	 */
+	public CompletableFuture<List<List<OperationResult>>> getBatchFuture() {
+		return batchFuture;
+	}
+	
+}
@@ -0,0 +1,133 @@
+package com.github.quickquarantine.thread;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.quickquarantine.OperationListener;
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+import com.github.quickquarantine.plan.ExecutionPlan;
+import com.github.quickquarantine.plan.SubOperationPlan;
+
+/**
+ * 按依赖关系(有向无环图)执行顶级业务的结果汇总器
+ * a.没有依赖的单元子业务立即提交,其余的等所有上游单元子业务登记结果后,由最后一个完成的上游在其线程中提交,没有线程需要等待;
+ *   下游的提交不会阻塞,线程池饱和时block、wait策略改为在提交线程中直接执行,避免工作线程阻塞在自己所在的线程池上
+ * b.上游单元子业务全部成功时,下游的输入附带上游的结果,见OperationInput.getUpstream
+ * c.任一上游单元子业务未成功(失败、超时、熔断、拒绝或跳过)时,下游不再执行,以跳过码登记结果,并继续向下游传递
+ * d.每个单元子业务的超时时间从提交时开始计算,本次调用的截止时间对所有单元子业务生效
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationDag extends OperationCollector {
+	
+	private final ExecutionPlan plan;
+	
+	private final List<OperationInput> input;
+	
+	/**
+	 * 本次调用的截止时间,0表示不限时
+	 */
+	private final long deadline;
+	
+	/**
+	 * 每个单元子业务尚未登记结果的上游个数
+	 */
+	private final AtomicIntegerArray pending;
+	
+	/**
+	 * 每个单元子业务的结果,按执行计划中的位置
+	 */
+	private final AtomicReferenceArray<OperationResult> results;
+	
+	/**
+	 * @param plan 顶级业务的执行计划,存在依赖关系
+	 * @param input 所有单元子业务参数顺序输入
+	 * @param deadline 本次调用的截止时间,0表示不限时
+	 * @param listener 按完成顺序接收结果的监听器,可以为null
+	 */
+	public OperationDag(ExecutionPlan plan, List<OperationInput> input, long deadline, OperationListener listener) {
+		super(plan.size(), listener);
+		// 下游单元子业务在上游完成后才取参数,提交之前校验,避免上游已在执行时才失败
+		if (input.size() != plan.size()) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],参数个数[ %s ]与单元子业务个数[ %s ]不一致!", new Object[]{plan.getOperation(), input.size(), plan.size()}));
+		}
+		this.plan = plan;
+		this.input = input;
+		this.deadline = deadline;
+		int size = plan.size();
+		this.pending = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++) {
+			pending.set(i, plan.getUpstream(i).length);
+		}
+		this.results = new AtomicReferenceArray<OperationResult>(size);
+	}
+	
+	/**
+	 * 提交所有没有依赖的单元子业务
+	 * @return 全部单元子业务完成后,以各单元子业务结果列表完成的future
+	 */
+	public CompletableFuture<List<OperationResult>> start() {
+		for (int i = 0; i < plan.size(); i++) {
+			if (plan.getUpstream(i).length == 0) {
+				launch(i, false);
+			}
+		}
+		return getFuture();
+	}
+	
+	/**
+	 * 上游单元子业务全部登记结果后,执行或跳过单元子业务
+	 * @param i 单元子业务在执行计划中的位置
+	 * @param downstream 是否由上游单元子业务提交,提交时不能阻塞
+	 */
+	private void launch(int i, boolean downstream) {
+		SubOperationPlan subPlan = plan.getSubOperationPlan(i);
+		int[] upstream = plan.getUpstream(i);
+		Map<String, OperationResult> upstreamResult = new HashMap<String, OperationResult>(upstream.length * 2);
+		for (int u : upstream) {
+			OperationResult or = results.get(u);
+			if (!OperationResult.SUCCESS.equals(or.getResultCode())) {
+				OperationResult skipped = new OperationResult();
+				skipped.setOperation(subPlan.getOperation());
+				skipped.skipped(String.format("业务:[ %s ],依赖的[ %s ]未成功,跳过!", subPlan.getOperation(), plan.getSubOperation(u)));
+				if (subPlan.getMetrics() != null) {
+					subPlan.getMetrics().recordCompletion(0L, skipped.getResultCode(), false);
+				}
+				collect(0, i, skipped);
+				return;
+			}
+			upstreamResult.put(plan.getSubOperation(u), or);
+		}
+		OperationInput oi = upstream.length == 0 ? input.get(i) : input.get(i).withUpstream(upstreamResult);
+		OperationThreadPool.OperationThread thread = new OperationThreadPool.OperationThread(subPlan, oi, this, i, OperationThreadPool.getDeadline(subPlan.getTimeout(), deadline));
+		if (downstream) {
+			thread.nonBlocking();
+		}
+		thread.start(plan.getThreadPool());
+	}
+	
+	/**
+	 * 登记单元子业务的结果,并提交上游已全部登记结果的下游单元子业务
+	 * @param group 单个请求,总是0
+	 * @param i 单元子业务在执行计划中的位置
+	 * @param or 单元子业务的结果
+	 */
+	@Override
+	public void collect(int group, int i, OperationResult or) {
+		results.set(i, or);
+		super.collect(group, i, or);
+		for (int d : plan.getDownstream(i)) {
+			if (pending.decrementAndGet(d) == 0) {
+				launch(d, true);
+			}
+		}
+	}
+	
+}
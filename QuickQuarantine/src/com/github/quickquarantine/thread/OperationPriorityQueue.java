@@ -0,0 +1,425 @@
+package com.github.quickquarantine.thread;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.quickquarantine.entity.OperationInput;
+import com.github.quickquarantine.thread.OperationThreadPool.OperationThread;
+
+/**
+ * 有界的多级优先级阻塞队列,替代先进先出的ArrayBlockingQueue
+ * 同一顶级业务下,用户实时交互的请求不再排在批量任务后面
+ * a.按OperationInput的优先级分为高、普通、低三级,每级内部先进先出
+ * b.出队时取优先级最高的非空级别;低级别的队首等待超过agingTime时提升一级,等待超过2*agingTime时再提升一级,防止饿死
+ * c.capacity是所有级别的总容量,即workQueueSize,可在线调整
+ * d.饱和时挤出的是优先级最低的级别中等待最久的,而不是下一个出队的,见evict
+ * 所有操作由一把锁保护,与ArrayBlockingQueue一致
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationPriorityQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+	
+	private static final int LEVELS = OperationInput.PRIORITY_LOW + 1;
+	
+	/**
+	 * 每级一个先进先出队列
+	 */
+	private final List<ArrayDeque<Node>> levels = new ArrayList<ArrayDeque<Node>>(LEVELS);
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	private final Condition notEmpty = lock.newCondition();
+	
+	private final Condition notFull = lock.newCondition();
+	
+	/**
+	 * 所有级别的总容量
+	 */
+	private int capacity;
+	
+	/**
+	 * 提升一级需要的等待时间(纳秒)
+	 */
+	private final long agingTime;
+	
+	private int count = 0;
+	
+	/**
+	 * @param capacity 所有级别的总容量
+	 * @param agingTime 提升一级需要的等待时间(毫秒)
+	 */
+	public OperationPriorityQueue(int capacity, long agingTime) {
+		if (capacity <= 0 || agingTime <= 0L) {
+			throw new IllegalArgumentException();
+		}
+		this.capacity = capacity;
+		this.agingTime = TimeUnit.MILLISECONDS.toNanos(agingTime);
+		for (int i = 0; i < LEVELS; i++) {
+			levels.add(new ArrayDeque<Node>());
+		}
+	}
+	
+	private static int priorityOf(Runnable r) {
+		return r instanceof OperationThread ? ((OperationThread) r).getPriority() : OperationInput.PRIORITY_NORMAL;
+	}
+	
+	private void enqueue(Runnable r) {
+		levels.get(priorityOf(r)).addLast(new Node(r, System.nanoTime()));
+		count++;
+		notEmpty.signal();
+	}
+	
+	/**
+	 * 选出下一个出队的级别:计入等待提升的级别后,有效优先级最高的;有效优先级相同时取原优先级高的
+	 * @return 级别,队列为空时为-1
+	 */
+	private int select() {
+		long now = System.nanoTime();
+		int selected = -1;
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < LEVELS; i++) {
+			Node head = levels.get(i).peekFirst();
+			if (head == null) {
+				continue;
+			}
+			long effective = i - (now - head.enqueueTime) / agingTime;
+			if (effective < best) {
+				best = effective;
+				selected = i;
+			}
+		}
+		return selected;
+	}
+	
+	private Runnable dequeue() {
+		Node node = levels.get(select()).pollFirst();
+		count--;
+		notFull.signal();
+		return node.runnable;
+	}
+	
+	@Override
+	public boolean offer(Runnable r) {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			if (count >= capacity) {
+				return false;
+			}
+			enqueue(r);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void put(Runnable r) throws InterruptedException {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		lock.lockInterruptibly();
+		try {
+			while (count >= capacity) {
+				notFull.await();
+			}
+			enqueue(r);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+		if (r == null) {
+			throw new NullPointerException();
+		}
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count >= capacity) {
+				if (nanos <= 0L) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(r);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0L) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			return count == 0 ? null : levels.get(select()).peekFirst().runnable;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return Math.max(0, capacity - count);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * 在线调整总容量,缩小时已入队的不受影响,直到出队后低于新容量才能再入队
+	 * @param capacity 所有级别的总容量
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			this.capacity = capacity;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int getCapacity() {
+		lock.lock();
+		try {
+			return capacity;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public long getAgingTime() {
+		return TimeUnit.NANOSECONDS.toMillis(agingTime);
+	}
+	
+	/**
+	 * shedOldest策略挤出一个等待执行的任务,为新到的任务腾出位置
+	 * 从优先级最低的级别开始,取该级别中等待最久的;不会挤出优先级高于新到任务的
+	 * @param r 新到的任务
+	 * @return 被挤出的任务,没有优先级不高于新到任务的等待任务时为null
+	 */
+	public Runnable evict(Runnable r) {
+		int priority = priorityOf(r);
+		lock.lock();
+		try {
+			for (int i = LEVELS - 1; i >= priority; i--) {
+				Node node = levels.get(i).pollFirst();
+				if (node != null) {
+					count--;
+					notFull.signal();
+					return node.runnable;
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @param priority 优先级
+	 * @return 该级别等待执行的单元子业务个数
+	 */
+	public int size(int priority) {
+		lock.lock();
+		try {
+			return levels.get(priority).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+		lock.lock();
+		try {
+			for (ArrayDeque<Node> level : levels) {
+				Iterator<Node> it = level.iterator();
+				while (it.hasNext()) {
+					if (o.equals(it.next().runnable)) {
+						it.remove();
+						count--;
+						notFull.signal();
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		if (o == null) {
+			return false;
+		}
+		lock.lock();
+		try {
+			for (ArrayDeque<Node> level : levels) {
+				for (Node node : level) {
+					if (o.equals(node.runnable)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public int drainTo(Collection<? super Runnable> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public int drainTo(Collection<? super Runnable> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int n = 0;
+			while (n < maxElements && count > 0) {
+				c.add(dequeue());
+				n++;
+			}
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * 弱一致的快照迭代器,按级别由高到低
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		List<Runnable> snapshot = new ArrayList<Runnable>();
+		lock.lock();
+		try {
+			for (ArrayDeque<Node> level : levels) {
+				for (Node node : level) {
+					snapshot.add(node.runnable);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		final Iterator<Runnable> it = snapshot.iterator();
+		return new Iterator<Runnable>() {
+			
+			private Runnable last;
+			
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+			
+			public Runnable next() {
+				last = it.next();
+				return last;
+			}
+			
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				OperationPriorityQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+	
+	/**
+	 * 入队的单元子业务及入队时间
+	 */
+	private static class Node {
+		
+		private final Runnable runnable;
+		
+		/**
+		 * 入队时间,System.nanoTime()的绝对值
+		 */
+		private final long enqueueTime;
+		
+		private Node(Runnable runnable, long enqueueTime) {
+			this.runnable = runnable;
+			this.enqueueTime = enqueueTime;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.github.quickquarantine.thread;
+
+import static com.github.quickquarantine.Factory.REJECT_POLICY_BLOCK;
+import static com.github.quickquarantine.Factory.REJECT_POLICY_CALLER_RUNS;
+import static com.github.quickquarantine.Factory.REJECT_POLICY_SHED_OLDEST;
+import static com.github.quickquarantine.Factory.REJECT_POLICY_WAIT;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.quickquarantine.thread.OperationThreadPool.OperationThread;
+
+/**
+ * 顶级业务线程池饱和时的策略,每个线程池一个,热加载时在线切换
+ * 原来的做法是把任务重新用阻塞操作put放入阻塞队列,提交线程可能无限阻塞,被中断时任务丢失,调用者一直等待.
+ * 现在无论哪种策略,未能执行的单元子业务都以拒绝结果登记,调用者不会一直等待:
+ * a.block:提交阻塞,直到阻塞队列有空位;被中断时以拒绝结果登记,并恢复中断状态
+ * b.wait:最多等待waitTime毫秒
+ * c.callerRuns:在提交线程中直接执行
+ * d.shed:立即以拒绝结果登记
+ * e.shedOldest:挤出阻塞队列中等待最久的单元子业务并以拒绝结果登记,再重新提交当前业务;
+ *   优先级阻塞队列挤出优先级最低的级别中等待最久的,阻塞队列中都是优先级更高的业务时拒绝当前业务
+ * 对冲的调用不按饱和策略处理,直接放弃
+ * 提交时不能阻塞的单元子业务(由工作线程提交的下游单元子业务),block、wait策略改为在提交线程中直接执行
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationRejectedHandler implements RejectedExecutionHandler {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(OperationRejectedHandler.class);
+	
+	/**
+	 * 顶级业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 饱和策略
+	 */
+	private volatile String policy;
+	
+	/**
+	 * wait策略的最长等待时间(毫秒)
+	 */
+	private volatile long waitTime;
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param policy 饱和策略
+	 * @param waitTime wait策略的最长等待时间(毫秒)
+	 */
+	public OperationRejectedHandler(String operation, String policy, long waitTime) {
+		this.operation = operation;
+		this.policy = policy;
+		this.waitTime = waitTime;
+	}
+	
+	@Override
+	public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+		if (isHedge(r)) {
+			return;
+		}
+		if (r instanceof OperationThread) {
+			((OperationThread) r).rejected();
+		}
+		if (executor.isShutdown()) {
+			reject(r, "线程池已关闭");
+			return;
+		}
+		String policy = this.policy;
+		if (mustRunInline(r, policy)) {
+			r.run();
+		} else if (REJECT_POLICY_BLOCK.equals(policy)) {
+			try {
+				executor.getQueue().put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				reject(r, "提交阻塞被中断");
+			}
+		} else if (REJECT_POLICY_WAIT.equals(policy)) {
+			try {
+				if (!executor.getQueue().offer(r, waitTime, TimeUnit.MILLISECONDS)) {
+					reject(r, String.format("等待%s毫秒仍饱和", waitTime));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				reject(r, "等待被中断");
+			}
+		} else if (REJECT_POLICY_CALLER_RUNS.equals(policy)) {
+			r.run();
+		} else if (REJECT_POLICY_SHED_OLDEST.equals(policy)) {
+			BlockingQueue<Runnable> queue = executor.getQueue();
+			Runnable oldest;
+			if (queue instanceof OperationPriorityQueue) {
+				oldest = ((OperationPriorityQueue) queue).evict(r);
+				if (oldest == null) {
+					reject(r, "阻塞队列中都是优先级更高的业务");
+					return;
+				}
+			} else {
+				oldest = queue.poll();
+			}
+			if (oldest instanceof OperationThread) {
+				((OperationThread) oldest).reject("被后到的业务挤出阻塞队列");
+			} else if (oldest != null) {
+				LOGGING.warn("业务:[ {} ],线程池饱和,丢弃阻塞队列中的任务:[ {} ]", operation, oldest);
+			}
+			executor.execute(r);
+		} else {
+			reject(r, "立即拒绝");
+		}
+	}
+	
+	/**
+	 * 虚拟线程执行器超过maximumPoolSize+workQueueSize时,按饱和策略取得许可
+	 * 虚拟线程执行器没有可挤出的阻塞队列,shedOldest等同于shed
+	 * @param r 单元子业务
+	 * @param admission 执行中与等待执行的单元子业务许可
+	 * @return 是否取得许可,未取得时单元子业务已按策略执行或登记拒绝结果
+	 */
+	boolean acquire(Runnable r, Semaphore admission) {
+		if (isHedge(r)) {
+			return false;
+		}
+		if (r instanceof OperationThread) {
+			((OperationThread) r).rejected();
+		}
+		String policy = this.policy;
+		try {
+			if (mustRunInline(r, policy)) {
+				r.run();
+			} else if (REJECT_POLICY_BLOCK.equals(policy)) {
+				admission.acquire();
+				return true;
+			} else if (REJECT_POLICY_WAIT.equals(policy)) {
+				if (admission.tryAcquire(waitTime, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+				reject(r, String.format("等待%s毫秒仍饱和", waitTime));
+			} else if (REJECT_POLICY_CALLER_RUNS.equals(policy)) {
+				r.run();
+			} else {
+				reject(r, "立即拒绝");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reject(r, "提交阻塞被中断");
+		}
+		return false;
+	}
+	
+	/**
+	 * 工作窃取执行器、虚拟线程执行器已关闭时,与线程池一样以拒绝结果登记,不在提交线程中抛出异常
+	 * @param r 任务
+	 */
+	void rejectShutdown(Runnable r) {
+		if (isHedge(r)) {
+			return;
+		}
+		if (r instanceof OperationThread) {
+			((OperationThread) r).rejected();
+		}
+		reject(r, "线程池已关闭");
+	}
+	
+	/**
+	 * 对冲的调用在饱和时直接放弃,原调用仍在执行,不会阻塞或挤占其他业务
+	 * @param r 任务
+	 * @return 是否为对冲的调用
+	 */
+	private static boolean isHedge(Runnable r) {
+		return r instanceof OperationThread && ((OperationThread) r).isHedge();
+	}
+	
+	/**
+	 * 提交时不能阻塞的单元子业务遇到block、wait策略时,在提交线程中直接执行
+	 * @param r 任务
+	 * @param policy 饱和策略
+	 * @return 是否在提交线程中直接执行
+	 */
+	private static boolean mustRunInline(Runnable r, String policy) {
+		return r instanceof OperationThread && ((OperationThread) r).isNonBlocking()
+				&& (REJECT_POLICY_BLOCK.equals(policy) || REJECT_POLICY_WAIT.equals(policy));
+	}
+	
+	/**
+	 * 以拒绝结果登记,不是单元子业务的任务抛出RejectedExecutionException
+	 * @param r 任务
+	 * @param reason 拒绝原因
+	 */
+	private void reject(Runnable r, String reason) {
+		if (r instanceof OperationThread) {
+			((OperationThread) r).reject(reason);
+			return;
+		}
+		throw new RejectedExecutionException(String.format("业务:[ %s ],线程池饱和,%s!", operation, reason));
+	}
+	
+	/**
+	 * 热加载时在线切换饱和策略
+	 * @param policy 饱和策略
+	 * @param waitTime wait策略的最长等待时间(毫秒)
+	 */
+	public void update(String policy, long waitTime) {
+		this.waitTime = waitTime;
+		this.policy = policy;
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public String getPolicy() {
+		return policy;
+	}
+	
+	public long getWaitTime() {
+		return waitTime;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationRejectedHandler [operation=%s, policy=%s, waitTime=%s ]", operation, policy, waitTime);
+	}
+	
+}
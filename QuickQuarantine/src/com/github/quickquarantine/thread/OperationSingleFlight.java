@@ -0,0 +1,158 @@
+package com.github.quickquarantine.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.quickquarantine.entity.OperationResult;
+import com.github.quickquarantine.thread.OperationThreadPool.OperationThread;
+
+/**
+ * 单元子业务的并发调用合并(single-flight)
+ * a.同一单元子业务、相等的输入参数,同一时刻只有第一个调用(领头者)真正提交到线程池执行
+ * b.执行期间到达的相同调用(跟随者)不再占用线程池和阻塞队列,等领头者登记结果时一并登记相同的结果
+ * c.跟随者仍按各自的截止时间超时
+ * d.只共享真正执行得到的结果(成功,或单元子业务本身返回的错误);领头者超时、被拒绝或被熔断时,
+ *   跟随者不沿用其结果,重新加入,其中一个成为新的领头者自己执行
+ * 适用于流量突增时大量相同的查询,减轻阻塞队列和下游系统的压力
+ * 注意:作为键的输入参数在提交后不能再修改
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationSingleFlight {
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	/**
+	 * 正在执行的调用
+	 */
+	private final ConcurrentMap<Object, Flight> flightMap = new ConcurrentHashMap<Object, Flight>();
+	
+	/**
+	 * 被合并的调用次数
+	 */
+	private final AtomicLong coalescedCount = new AtomicLong(0L);
+	
+	/**
+	 * @param operation 单元子业务
+	 */
+	public OperationSingleFlight(String operation) {
+		this.operation = operation;
+	}
+	
+	/**
+	 * 加入正在执行的相同调用
+	 * @param input 输入参数
+	 * @param thread 当前调用
+	 * @return 成为领头者时为本次调用,领头者需要自己执行,并在登记结果后调用done或abandon;成为跟随者时为null
+	 */
+	Flight join(Object input, OperationThread thread) {
+		while (true) {
+			Flight flight = flightMap.get(input);
+			if (flight == null) {
+				Flight newFlight = new Flight();
+				if (flightMap.putIfAbsent(input, newFlight) == null) {
+					return newFlight;
+				}
+			} else if (flight.add(thread)) {
+				coalescedCount.incrementAndGet();
+				return null;
+			}
+			// 恰好执行完毕,重新加入
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * 领头者登记结果后,结束本次调用:真正执行得到的结果为所有跟随者登记,否则跟随者重新加入
+	 * @param input 输入参数
+	 * @param flight 领头者所在的本次调用
+	 * @param or 领头者的结果
+	 */
+	void done(Object input, Flight flight, OperationResult or) {
+		if (!isShared(or)) {
+			abandon(input, flight);
+			return;
+		}
+		// 只结束一次,不会误删之后新的领头者的调用
+		if (!flightMap.remove(input, flight)) {
+			return;
+		}
+		for (OperationThread follower : flight.close()) {
+			follower.complete(or.copy());
+		}
+	}
+	
+	/**
+	 * 领头者未真正执行,结束本次调用,所有跟随者重新加入
+	 * @param input 输入参数
+	 * @param flight 领头者所在的本次调用
+	 */
+	void abandon(Object input, Flight flight) {
+		if (!flightMap.remove(input, flight)) {
+			return;
+		}
+		for (OperationThread follower : flight.close()) {
+			follower.retry();
+		}
+	}
+	
+	/**
+	 * 超时、被拒绝、熔断的结果不是单元子业务执行得到的,不能代表跟随者:跟随者的截止时间可能更晚,也可能恰好有空闲线程或探测许可
+	 * @param or 领头者的结果
+	 * @return 是否为跟随者登记相同的结果
+	 */
+	private static boolean isShared(OperationResult or) {
+		String resultCode = or.getResultCode();
+		return !OperationResult.TIMEOUT.equals(resultCode) && !OperationResult.REJECTED.equals(resultCode) && !OperationResult.CIRCUIT_OPEN.equals(resultCode);
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return 正在执行的调用数
+	 */
+	public int size() {
+		return flightMap.size();
+	}
+	
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationSingleFlight [operation=%s, inFlight=%s, coalesced=%s ]", new Object[]{operation, size(), getCoalescedCount()});
+	}
+	
+	/**
+	 * 一次正在执行的调用及其跟随者
+	 */
+	static class Flight {
+		
+		private final List<OperationThread> followers = new ArrayList<OperationThread>();
+		
+		private boolean closed = false;
+		
+		private synchronized boolean add(OperationThread follower) {
+			if (closed) {
+				return false;
+			}
+			followers.add(follower);
+			return true;
+		}
+		
+		private synchronized List<OperationThread> close() {
+			closed = true;
+			return followers;
+		}
+	}
+}
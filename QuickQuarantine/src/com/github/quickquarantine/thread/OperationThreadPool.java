@@ -2,35 +2,58 @@ package com.github.quickquarantine.thread;
 
 import static com.github.quickquarantine.Factory.ALLOW_CORE_THREAD_TIMEOUT;
 import static com.github.quickquarantine.Factory.CORE_POOL_SIZE;
+import static com.github.quickquarantine.Factory.DEFAULT_REJECT_POLICY_WAIT_TIME;
+import static com.github.quickquarantine.Factory.EXECUTOR_TYPE;
+import static com.github.quickquarantine.Factory.EXECUTOR_TYPE_FORKJOIN;
+import static com.github.quickquarantine.Factory.EXECUTOR_TYPE_PLATFORM;
+import static com.github.quickquarantine.Factory.EXECUTOR_TYPE_VIRTUAL;
 import static com.github.quickquarantine.Factory.KEEP_ALIVE_TIME;
 import static com.github.quickquarantine.Factory.MAXIMUM_POOL_SIZE;
-import static com.github.quickquarantine.Factory.SERIES_CLASS_STATIC_METHOD_NAME;
-import static com.github.quickquarantine.Factory.SERIES_OPERATION;
+import static com.github.quickquarantine.Factory.REJECT_POLICY;
+import static com.github.quickquarantine.Factory.REJECT_POLICY_BLOCK;
+import static com.github.quickquarantine.Factory.REJECT_POLICY_WAIT_TIME;
+import static com.github.quickquarantine.Factory.DEFAULT_WORK_QUEUE_AGING_TIME;
+import static com.github.quickquarantine.Factory.WORK_QUEUE_AGING_TIME;
 import static com.github.quickquarantine.Factory.WORK_QUEUE_SIZE;
-import static com.github.quickquarantine.Factory.getThreadPoolOperationMap;
-import static com.github.quickquarantine.utils.SecurityUtils.PTN_CLASSNAME;
-import static com.github.quickquarantine.utils.SecurityUtils.PTN_METHODNAME;
+import static com.github.quickquarantine.Factory.WORK_QUEUE_TYPE;
+import static com.github.quickquarantine.Factory.WORK_QUEUE_TYPE_PRIORITY;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.quickquarantine.breaker.OperationCircuitBreaker;
+import com.github.quickquarantine.cache.OperationCache;
 import com.github.quickquarantine.entity.OperationInput;
 import com.github.quickquarantine.entity.OperationResult;
 import com.github.quickquarantine.exception.QuickQuarantineException;
-import com.github.quickquarantine.utils.SecurityUtils;;
+import com.github.quickquarantine.hedge.OperationHedge;
+import com.github.quickquarantine.metrics.OperationMetrics;
+import com.github.quickquarantine.plan.OperationInvoker;
+import com.github.quickquarantine.plan.SubOperationPlan;
+import com.github.quickquarantine.trace.OperationLogLimiter;
+import com.github.quickquarantine.trace.OperationTrace;
 /**
  * 通用定制业务连接池
  * 定制的线程池必须与实际具体某种业务绑定(即不是全部业务,也不是单笔业务),才能发挥最佳作用.
@@ -41,6 +64,7 @@ import com.github.quickquarantine.utils.SecurityUtils;;
  *      shutdownNow()对于尚未执行的任务,全部取消掉;对于正在执行的任务,发出interrupt()。
  *    b.使用awaitTermination()可以实现等待,但awaitTermination会一直等待,直到线程池状态为TERMINATED或者等待的时间到达了指定的时间。不能实现等待
  *    c.使用countDownLatch.await()方法可以非常简单的完成主线程的等待
+ *    d.更好的方式是不等待:由最后完成的子线程完成CompletableFuture,见OperationCollector
  *    
  * @author shangbincheng001
  *
@@ -61,99 +85,333 @@ public class OperationThreadPool {
      * c.DiscardPolicy:对拒绝任务直接无声抛弃,没有异常信息。
      * d.DiscardOldestPolicy:对拒绝任务不抛弃，而是抛弃队列里面等待最久的一个线程,然后把拒绝任务加到队列
      * 这几种策略都不是很友好,需要自己实现RejectedExecutionHandler接口
-     * 重要:一般进入拒绝机制, 我们把runnable任务拿出来,重新用阻塞操作put,来实现提交阻塞功能,保证不抛弃一个任务
+     * 重要:每个线程池一个OperationRejectedHandler,按配置的饱和策略处理,未能执行的单元子业务一定以拒绝结果登记,见OperationRejectedHandler
 	 */
-	private static RejectedExecutionHandler handler = new RejectedExecutionHandler() {
-		
-		@Override
-		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-			try {  
-                // 核心改造点,由BlockingQueue的offer改成put阻塞方法,来实现提交阻塞功能,保证不抛弃一个任务
-				executor.getQueue().put(r);  
-			} catch (InterruptedException e) {  
-				LOGGING.error("线程池饱和策略,提交阻塞失败!", e);
-			}  	
-		}
-	};
+	
+	/**
+	 * 超时定时器,所有业务共享一个守护线程,也用于自适应调整线程池
+	 * 取消的定时任务立即从队列中移除,防止大量未到期的超时任务堆积
+	 */
+	static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+		
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "OperationTimer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	
+	static {
+		timer.setRemoveOnCancelPolicy(true);
+	}
+	
+	/**
+	 * 通知调用者的线程池,所有业务共享的守护线程
+	 * 超时定时器登记超时结果后,在这里登记到结果汇总器并通知合并调用的跟随者,
+	 * 监听器、future及调用者组合的回调(thenApply等)不在超时定时器中执行,慢回调不会推迟其他业务的超时、对冲和自适应调整;
+	 * 无界队列,超时定时器提交时不会阻塞
+	 */
+	private static final ThreadPoolExecutor callbackExecutor;
+	
+	static {
+		int callbackThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		callbackExecutor = new ThreadPoolExecutor(callbackThreads, callbackThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+			
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "OperationCallback-" + threadNumber.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		callbackExecutor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * 统计业务线程的CPU耗时
+	 */
+	private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
 	
 	/**
 	 * 定制的线程池列表
+	 * 读取不加锁;冷启动时由computeIfAbsent保证每种业务只创建一次线程池,
+	 * 防止并发首次调用时重复创建线程池,泄漏线程并突破maximumPoolSize的限制
 	 */
-	private static Map<String, ThreadPoolExecutor>  threadPoolMap = new HashMap<String, ThreadPoolExecutor>();
+	private static final ConcurrentMap<String, ExecutorService> threadPoolMap = new ConcurrentHashMap<String, ExecutorService>();
 	
 	/**
-	 * 根据一个独立的业务,获得对应的可以共享的线程池
+	 * 根据一个独立的业务,获得对应的可以共享的线程池,如果不存在线程池,则先创建线程池
 	 * a.最大的业务拥有一个独立的线程池
 	 * b.最小的,独立的业务共享一个线程池
+	 * 默认是平台线程的ThreadPoolExecutor,配置executorType = virtual时是虚拟线程执行器
 	 * @param operation 最大的业务类型
-	 * @param isMaximum 是否是顶级业务
-	 * @return list 定制的,包含当前业务对应的线程池(第一个),当前业务对应执行计划,具体到最小业务单元(第二个);
-	 * 	               如果返回null,表示获取线程池失败,调用者自行处理.
+	 * @param threadPoolParam 当前业务对应的线程池初始化参数列表
+	 * @return 当前业务对应的线程池
 	 * 
 	 * @author shangbincheng001
 	 */
-	public static List<Object> getOperationList(String operation, boolean isMaximum) {
-		Map<String, Object> threadPoolParam = getThreadPoolOperationMap(operation);
-		// 校验业务参数字典中是否存在当前业务
-		if (threadPoolParam == null) {
-			// 记录日志信息
-			throw new QuickQuarantineException("未知或匹配失败的业务!");
+	public static ExecutorService getThreadPool(String operation, final Map<String, Object> threadPoolParam) {
+		// 如果已存在线程池,无锁读取
+		ExecutorService threadPool = threadPoolMap.get(operation);
+		if (threadPool != null) {
+			return threadPool;
 		}
-
-		ThreadPoolExecutor  threadPool = null;
-		List<Object> operationList = new ArrayList<Object>();
-		// 如果已存在线程池
-		if (threadPoolMap.containsKey(operation)) {
-			threadPool = threadPoolMap.get(operation);
-			operationList.add(threadPool);
-			if (isMaximum) {
-				setOperationList(operationList, threadPoolParam);
-			}
-			return operationList;
-		}
-	    // 如果不存在线程池,则先创建线程池
-		threadPool = createThreadPool(operation, threadPoolParam);
-		operationList.add(threadPool);
-		if (isMaximum) {
-			setOperationList(operationList, threadPoolParam);
-		}
-		return operationList;
+	    // 如果不存在线程池,则先创建线程池,同一业务只会创建一次
+		return threadPoolMap.computeIfAbsent(operation, key -> createThreadPool(key, threadPoolParam));
 	}
+	
+	/**
+	 * 计算本次调用的截止时间
+	 * @param timeout 超时时间,小于等于0表示不限时
+	 * @param unit 超时时间单位
+	 * @return 截止时间,System.nanoTime()的绝对值,0表示不限时
+	 */
+	public static long getDeadline(long timeout, TimeUnit unit) {
+		if (timeout <= 0L) {
+			return 0L;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		// 0已用于表示不限时
+		return deadline == 0L ? 1L : deadline;
+	}
+	
+	/**
+	 * 单元子业务配置的超时时间与本次调用的截止时间,取先到期者
+	 * @param timeout 单元子业务配置的超时时间(毫秒),0表示不限时
+	 * @param deadline 本次调用的截止时间,0表示不限时
+	 * @return 单元子业务的截止时间,0表示不限时
+	 */
+	public static long getDeadline(long timeout, long deadline) {
+		long subDeadline = getDeadline(timeout, TimeUnit.MILLISECONDS);
+		if (subDeadline == 0L) {
+			return deadline;
+		}
+		if (deadline == 0L || subDeadline - deadline < 0L) {
+			return subDeadline;
+		}
+		return deadline;
+	}
+	
+	/**
+	 * 热加载时在线调整已存在的线程池,不重建线程池,不丢弃执行中和阻塞队列中的业务
+	 * a.平台线程:核心线程数、最大线程数、空闲存活时间、是否允许核心线程超时立即生效;饱和策略立即生效
+	 * b.先进先出的阻塞队列在创建时分配,大小不能在线调整,优先级阻塞队列的总容量可以在线调整;虚拟线程的并发上限与等待上限不能在线调整,重启后生效
+	 * c.执行器类型不能在线切换,工作窃取执行器的并行度与等待上限不能在线调整,重启后生效
+	 * d.开启自适应调整时,核心线程数与最大线程数由AdaptivePoolController负责,不按配置重置,保留已调整的结果
+	 * @param operation 顶级业务
+	 * @param threadPoolParam 新的线程池参数列表
+	 * @param adaptive 是否开启自适应调整
+	 * @return 变化列表,线程池不存在或没有变化时为空
+	 */
+	public static List<String> resize(String operation, Map<String, Object> threadPoolParam, boolean adaptive) {
+		List<String> changes = new ArrayList<String>();
+		ExecutorService threadPool = threadPoolMap.get(operation);
+		if (threadPool == null) {
+			return changes;
+		}
+		int maximumPoolSize = ((Integer)threadPoolParam.get(MAXIMUM_POOL_SIZE)).intValue();
+		int workQueueSize = ((Integer)threadPoolParam.get(WORK_QUEUE_SIZE)).intValue();
+		String executorType = getExecutorType(threadPoolParam);
+		if (!executorType.equals(getExecutorType(threadPool))) {
+			changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ],不能在线切换,重启后生效", new Object[]{operation, EXECUTOR_TYPE, getExecutorType(threadPool), executorType}));
+			return changes;
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			ForkJoinThreadExecutor executor = (ForkJoinThreadExecutor) threadPool;
+			updateRejectedHandler(operation, executor.getRejectedHandler(), threadPoolParam, changes);
+			if (executor.getMaximumPoolSize() != maximumPoolSize || executor.getWorkQueueSize() != workQueueSize) {
+				changes.add(String.format("业务:[ %s ],工作窃取执行器:[ %s=%s, %s=%s ],不能在线调整,重启后生效", new Object[]{operation, MAXIMUM_POOL_SIZE, maximumPoolSize, WORK_QUEUE_SIZE, workQueueSize}));
+			}
+			return changes;
+		}
+		if (threadPool instanceof VirtualThreadExecutor) {
+			VirtualThreadExecutor executor = (VirtualThreadExecutor) threadPool;
+			updateRejectedHandler(operation, executor.getRejectedHandler(), threadPoolParam, changes);
+			if (executor.getMaximumPoolSize() != maximumPoolSize || executor.getWorkQueueSize() != workQueueSize) {
+				changes.add(String.format("业务:[ %s ],虚拟线程执行器:[ %s=%s, %s=%s ],不能在线调整,重启后生效", new Object[]{operation, MAXIMUM_POOL_SIZE, maximumPoolSize, WORK_QUEUE_SIZE, workQueueSize}));
+			}
+			return changes;
+		}
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) threadPool;
+		int corePoolSize = ((Integer)threadPoolParam.get(CORE_POOL_SIZE)).intValue();
+		int keepAliveTime = ((Integer)threadPoolParam.get(KEEP_ALIVE_TIME)).intValue();
+		boolean allowCoreThreadTimeout = ((Boolean)threadPoolParam.get(ALLOW_CORE_THREAD_TIMEOUT)).booleanValue();
+		if (corePoolSize < 0 || maximumPoolSize <= 0 || corePoolSize > maximumPoolSize || keepAliveTime < 0 || (allowCoreThreadTimeout && keepAliveTime == 0)) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],线程池参数:[ %s ]无效!", operation, threadPoolParam));
+		}
+		updateRejectedHandler(operation, (OperationRejectedHandler) executor.getRejectedExecutionHandler(), threadPoolParam, changes);
+		if (!adaptive) {
+			int oldCorePoolSize = executor.getCorePoolSize();
+			int oldMaximumPoolSize = executor.getMaximumPoolSize();
+			// 保证调整过程中核心线程数不超过最大线程数
+			if (maximumPoolSize < oldCorePoolSize) {
+				executor.setCorePoolSize(corePoolSize);
+				executor.setMaximumPoolSize(maximumPoolSize);
+			} else {
+				executor.setMaximumPoolSize(maximumPoolSize);
+				executor.setCorePoolSize(corePoolSize);
+			}
+			if (oldCorePoolSize != corePoolSize) {
+				changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", new Object[]{operation, CORE_POOL_SIZE, oldCorePoolSize, corePoolSize}));
+			}
+			if (oldMaximumPoolSize != maximumPoolSize) {
+				changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", new Object[]{operation, MAXIMUM_POOL_SIZE, oldMaximumPoolSize, maximumPoolSize}));
+			}
+		}
+		long oldKeepAliveTime = executor.getKeepAliveTime(TimeUnit.SECONDS);
+		if (oldKeepAliveTime != keepAliveTime) {
+			executor.setKeepAliveTime(keepAliveTime, TimeUnit.SECONDS);
+			changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", new Object[]{operation, KEEP_ALIVE_TIME, oldKeepAliveTime, keepAliveTime}));
+		}
+		if (executor.allowsCoreThreadTimeOut() != allowCoreThreadTimeout) {
+			executor.allowCoreThreadTimeOut(allowCoreThreadTimeout);
+			changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", new Object[]{operation, ALLOW_CORE_THREAD_TIMEOUT, !allowCoreThreadTimeout, allowCoreThreadTimeout}));
+		}
+		BlockingQueue<Runnable> workQueue = executor.getQueue();
+		boolean priority = WORK_QUEUE_TYPE_PRIORITY.equals(threadPoolParam.get(WORK_QUEUE_TYPE));
+		if (priority != (workQueue instanceof OperationPriorityQueue)) {
+			changes.add(String.format("业务:[ %s ],%s:[ %s ],阻塞队列不能在线切换,重启后生效", operation, WORK_QUEUE_TYPE, threadPoolParam.get(WORK_QUEUE_TYPE)));
+		} else if (priority) {
+			// 优先级阻塞队列可在线调整总容量
+			OperationPriorityQueue priorityQueue = (OperationPriorityQueue) workQueue;
+			int oldWorkQueueSize = priorityQueue.getCapacity();
+			if (oldWorkQueueSize != workQueueSize) {
+				priorityQueue.setCapacity(workQueueSize);
+				changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ]", new Object[]{operation, WORK_QUEUE_SIZE, oldWorkQueueSize, workQueueSize}));
+			}
+			long agingTime = getWorkQueueAgingTime(threadPoolParam);
+			if (priorityQueue.getAgingTime() != agingTime) {
+				changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ],重启后生效", new Object[]{operation, WORK_QUEUE_AGING_TIME, priorityQueue.getAgingTime(), agingTime}));
+			}
+		} else {
+			int oldWorkQueueSize = workQueue.size() + workQueue.remainingCapacity();
+			if (oldWorkQueueSize != workQueueSize) {
+				changes.add(String.format("业务:[ %s ],%s:[ %s -> %s ],阻塞队列不能在线调整,重启后生效", new Object[]{operation, WORK_QUEUE_SIZE, oldWorkQueueSize, workQueueSize}));
+			}
+		}
+		return changes;
+	}
+	
+	/**
+	 * 顶级业务从配置中移除后,从线程池列表中移除并关闭其线程池
+	 * 不再接受新任务,执行中与阻塞队列中的业务仍会执行完毕,之后线程全部退出
+	 * @param operation 顶级业务
+	 * @return 被关闭的线程池,不存在时为null
+	 */
+	public static ExecutorService remove(String operation) {
+		ExecutorService threadPool = threadPoolMap.remove(operation);
+		if (threadPool != null) {
+			threadPool.shutdown();
+		}
+		return threadPool;
+	}
+	
+	/**
+	 * 在线切换饱和策略
+	 * @param operation 顶级业务
+	 * @param handler 线程池的饱和策略
+	 * @param threadPoolParam 新的线程池参数列表
+	 * @param changes 变化列表
+	 */
+	private static void updateRejectedHandler(String operation, OperationRejectedHandler handler, Map<String, Object> threadPoolParam, List<String> changes) {
+		String rejectPolicy = getRejectPolicy(threadPoolParam);
+		long waitTime = getRejectPolicyWaitTime(threadPoolParam);
+		if (!handler.getPolicy().equals(rejectPolicy) || handler.getWaitTime() != waitTime) {
+			changes.add(String.format("业务:[ %s ],%s:[ %s(%sms) -> %s(%sms) ]", new Object[]{operation, REJECT_POLICY, handler.getPolicy(), handler.getWaitTime(), rejectPolicy, waitTime}));
+			handler.update(rejectPolicy, waitTime);
+		}
+	}
+	
 	/**
 	 * 创建非单元子业务对应的线程池
 	 * @param operation
 	 * @param threadPoolParam
 	 */
-	private static ThreadPoolExecutor createThreadPool(String operation, Map<String, Object> threadPoolParam) {
+	private static ExecutorService createThreadPool(String operation, Map<String, Object> threadPoolParam) {
 		int maximumPoolSize = ((Integer)threadPoolParam.get(MAXIMUM_POOL_SIZE)).intValue();
-		int corePoolSize = ((Integer)threadPoolParam.get(CORE_POOL_SIZE)).intValue();
 		int workQueueSize = ((Integer)threadPoolParam.get(WORK_QUEUE_SIZE)).intValue();
+		OperationRejectedHandler handler = new OperationRejectedHandler(operation, getRejectPolicy(threadPoolParam), getRejectPolicyWaitTime(threadPoolParam));
+		if (EXECUTOR_TYPE_FORKJOIN.equals(threadPoolParam.get(EXECUTOR_TYPE))) {
+			// 工作窃取,maximumPoolSize作为并行度
+			ForkJoinThreadExecutor executor = new ForkJoinThreadExecutor(operation, maximumPoolSize, workQueueSize, handler);
+			LOGGING.info("创建工作窃取执行器:[ 业务={}, 并行度={}, 等待上限={}, 饱和策略={} ],成功!", new Object[]{operation, maximumPoolSize, workQueueSize, handler.getPolicy()});
+			return executor;
+		}
+		if (EXECUTOR_TYPE_VIRTUAL.equals(threadPoolParam.get(EXECUTOR_TYPE))) {
+			// 虚拟线程,maximumPoolSize作为并发上限
+			VirtualThreadExecutor executor = new VirtualThreadExecutor(operation, maximumPoolSize, workQueueSize, handler);
+			LOGGING.info("创建虚拟线程执行器:[ 业务={}, 并发上限={}, 等待上限={}, 饱和策略={} ],成功!", new Object[]{operation, maximumPoolSize, workQueueSize, handler.getPolicy()});
+			return executor;
+		}
+		int corePoolSize = ((Integer)threadPoolParam.get(CORE_POOL_SIZE)).intValue();
 		int keepAliveTime = ((Integer)threadPoolParam.get(KEEP_ALIVE_TIME)).intValue();
-		ThreadPoolExecutor  threadPool = null;
-		synchronized(OperationThreadPool.class) {
-			boolean allowCoreThreadTimeout = ((Boolean)threadPoolParam.get(ALLOW_CORE_THREAD_TIMEOUT)).booleanValue();
-			/**
-			 * ThreadFactory新建线程工厂
-			 * 一般用来标记线程任务相关信息,方便跟踪日志信息
-			 */
-			ThreadFactory threadFactory = new OperationThreadFactory();
-			threadPool = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(workQueueSize),  threadFactory, handler);
-			threadPool.allowCoreThreadTimeOut(allowCoreThreadTimeout);
-			threadPoolMap.put(operation, threadPool);
+		boolean allowCoreThreadTimeout = ((Boolean)threadPoolParam.get(ALLOW_CORE_THREAD_TIMEOUT)).booleanValue();
+		/**
+		 * ThreadFactory新建线程工厂
+		 * 一般用来标记线程任务相关信息,方便跟踪日志信息
+		 */
+		ThreadFactory threadFactory = new OperationThreadFactory();
+		BlockingQueue<Runnable> workQueue;
+		if (WORK_QUEUE_TYPE_PRIORITY.equals(threadPoolParam.get(WORK_QUEUE_TYPE))) {
+			workQueue = new OperationPriorityQueue(workQueueSize, getWorkQueueAgingTime(threadPoolParam));
+		} else {
+			workQueue = new ArrayBlockingQueue<Runnable>(workQueueSize);
 		}
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.SECONDS, workQueue,  threadFactory, handler);
+		threadPool.allowCoreThreadTimeOut(allowCoreThreadTimeout);
+		LOGGING.info("创建线程池:[ 业务={}, 最大线程数={}, 核心线程数={}, 阻塞队列大小={}, 阻塞队列类型={}, 饱和策略={} ],成功!", new Object[]{operation, maximumPoolSize, corePoolSize, workQueueSize, workQueue.getClass().getSimpleName(), handler.getPolicy()});
 		return threadPool;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private static void setOperationList(List<Object> operationList, Map<String, Object> threadPoolParam) {
-		List<String> seriesClassMethod = (List<String>)threadPoolParam.get(SERIES_CLASS_STATIC_METHOD_NAME);
-		List<String> seriesOperation = (List<String>)threadPoolParam.get(SERIES_OPERATION);
-		Map<String, String> map = new HashMap<String, String>();
-		int size = seriesOperation.size();
-		for (int i = 0; i < size; i++) {
-			map.put(seriesOperation.get(i), seriesClassMethod.get(i));
-		}
-		operationList.add(map);
+	/**
+	 * @param threadPoolParam 线程池参数列表
+	 * @return 执行器类型,未配置时为platform
+	 */
+	private static String getExecutorType(Map<String, Object> threadPoolParam) {
+		String executorType = (String) threadPoolParam.get(EXECUTOR_TYPE);
+		return executorType == null ? EXECUTOR_TYPE_PLATFORM : executorType;
+	}
+	
+	/**
+	 * @param threadPool 已存在的线程池
+	 * @return 执行器类型
+	 */
+	private static String getExecutorType(ExecutorService threadPool) {
+		if (threadPool instanceof VirtualThreadExecutor) {
+			return EXECUTOR_TYPE_VIRTUAL;
+		}
+		if (threadPool instanceof ForkJoinThreadExecutor) {
+			return EXECUTOR_TYPE_FORKJOIN;
+		}
+		return EXECUTOR_TYPE_PLATFORM;
+	}
+	
+	/**
+	 * @param threadPoolParam 线程池参数列表
+	 * @return 饱和策略,未配置时为block
+	 */
+	private static String getRejectPolicy(Map<String, Object> threadPoolParam) {
+		String rejectPolicy = (String) threadPoolParam.get(REJECT_POLICY);
+		return rejectPolicy == null ? REJECT_POLICY_BLOCK : rejectPolicy;
+	}
+	
+	/**
+	 * @param threadPoolParam 线程池参数列表
+	 * @return 优先级阻塞队列提升一级需要的等待时间(毫秒)
+	 */
+	private static long getWorkQueueAgingTime(Map<String, Object> threadPoolParam) {
+		Long agingTime = (Long) threadPoolParam.get(WORK_QUEUE_AGING_TIME);
+		return agingTime == null ? DEFAULT_WORK_QUEUE_AGING_TIME : agingTime.longValue();
+	}
+	
+	/**
+	 * @param threadPoolParam 线程池参数列表
+	 * @return wait策略的最长等待时间(毫秒)
+	 */
+	private static long getRejectPolicyWaitTime(Map<String, Object> threadPoolParam) {
+		Long waitTime = (Long) threadPoolParam.get(REJECT_POLICY_WAIT_TIME);
+		return waitTime == null ? DEFAULT_REJECT_POLICY_WAIT_TIME : waitTime.longValue();
 	}
 	
 	/**
@@ -173,10 +431,14 @@ public class OperationThreadPool {
 	        t.setName(threadName);  
 	        return t; 
 		}
-
+		
 	}
 	/**
 	 * 静态成员内部类,业务线程
+	 * 如果设置了截止时间,由超时定时器负责:
+	 * a.到期未完成的业务,直接以超时结果登记,调用者不再等待
+	 * b.正在执行的业务,中断其线程;不响应中断的业务,则放弃其结果
+	 * c.仍在阻塞队列中的业务,出队时发现已超时,不再执行
 	 * 
 	 * @author shangbincheng001
 	 *
@@ -191,62 +453,390 @@ public class OperationThreadPool {
 		private String operation;
 		
 		/**
-		 * 子线程中运行的业务相应的执行计划,一定是一个静态方法
+		 * 子线程中运行的业务相应的执行计划,一定是一个静态方法,已在加载配置时解析好
+		 */
+		private OperationInvoker invoker;
+		
+		/**
+		 * 子线程中运行的业务的结果缓存,为null时不缓存
+		 */
+		private OperationCache cache;
+		
+		/**
+		 * 子线程中运行的业务的并发调用合并,为null时不合并
+		 */
+		private OperationSingleFlight singleFlight;
+		
+		/**
+		 * 单元子业务的熔断器,为null时不熔断
+		 */
+		private OperationCircuitBreaker circuitBreaker;
+		
+		/**
+		 * 熔断器放行时的代,放行的调用登记结果时需要向熔断器记录结果或归还许可,-1表示未经熔断器放行
+		 */
+		private long permit = -1L;
+		
+		/**
+		 * 单元子业务的对冲请求,为null时不对冲
 		 */
-		private String classMethod;
+		private OperationHedge hedge;
 		
 		/**
-		 * 输入参数
+		 * 对冲的调用所对冲的原调用,原调用本身为null.对冲的调用登记结果时转交原调用登记
 		 */
-		private OperationInput input;
+		private OperationThread primary;
 		
 		/**
-		 * 可能是一个线程安全的结果列表,汇总各子业务的结果
+		 * 原调用发起的对冲调用,先完成的结果生效后,中断另一个
 		 */
-		private List<OperationResult> operationResult;
+		private volatile OperationThread hedged;
+		
+		private volatile ScheduledFuture<?> hedgeFuture;
+		
+		/**
+		 * 单元子业务的执行日志,为null时不记录
+		 */
+		private OperationTrace trace;
+		
+		/**
+		 * 单元子业务的指标,为null时不记录
+		 */
+		private OperationMetrics metrics;
+		
+		/**
+		 * 提交时间,System.nanoTime()的绝对值,用于统计排队耗时和端到端耗时
+		 */
+		private long submitTime;
+		
+		/**
+		 * 开始执行时间,System.nanoTime()的绝对值,0表示未开始执行
+		 */
+		private volatile long startTime = 0L;
+		
+		/**
+		 * 是否因抛出异常而失败
+		 */
+		private boolean exception = false;
+		
+		/**
+		 * 作为合并调用中的领头者时所在的本次调用,领头者登记结果时一并为跟随者登记;跟随者或不合并时为null
+		 */
+		private volatile OperationSingleFlight.Flight flight;
+		
+		/**
+		 * 当前业务对应的线程池,合并调用的跟随者重新加入后成为领头者时提交到这里
+		 */
+		private Executor executor;
+		
+		/**
+		 * 输入参数,配置文件中的单元子业务为OperationInput,类型化的单元子业务为其输入类型
+		 */
+		private Object input;
+		
+		/**
+		 * 结果汇总器,子线程中登记结果,当全部执行完毕则完成主线程等待的future
+		 */
+		private OperationCollector collector;
 		
 		/**
-		 * 主线程中设置执行线程个数,并调countDownLatch.await()等待;
-		 * 子线程中调countDownLatch.countDown()登记完成个数,当全部执行完毕则主线程向下
+		 * 所属的请求,批量请求时用于结果分组,单个请求时为0
 		 */
-		private CountDownLatch countDownLatch;
+		private final int group;
+		
+		/**
+		 * 在所属请求中的位置,结果登记到结果汇总器的对应位置
+		 */
+		private final int index;
+		
+		/**
+		 * 截止时间,System.nanoTime()的绝对值,0表示不限时
+		 */
+		private final long deadline;
+		
+		/**
+		 * 结果只登记一次,业务线程与超时定时器谁先完成谁登记;对冲的调用与原调用共享
+		 */
+		private final AtomicBoolean done;
+		
+		/**
+		 * 正在执行当前业务的线程,超时定时器取走后负责中断它
+		 */
+		private final AtomicReference<Thread> runner = new AtomicReference<Thread>();
+		
+		/**
+		 * 超时定时器是否已经中断完毕
+		 */
+		private volatile boolean interrupted = false;
+		
+		private volatile ScheduledFuture<?> timeoutFuture;
+		
+		/**
+		 * 提交时不能阻塞,由上游单元子业务在线程池的工作线程中提交的下游单元子业务,
+		 * 饱和时block、wait策略改为在提交线程中直接执行,否则工作线程会阻塞在自己所在的线程池上
+		 */
+		private boolean nonBlocking = false;
+		
+		/**
+		 * 子线程运行中的具体业务
+		 * @param plan 具体业务的执行计划
+		 * @param input 具体业务需要提供的参数
+		 * @param collector 各业务返回结果汇总器
+		 * @param deadline 截止时间,System.nanoTime()的绝对值,0表示不限时
+		 * 
+		 * @author shangbincheng001
+		 */
+		public OperationThread(SubOperationPlan plan, Object input, OperationCollector collector, long deadline) {
+			this(plan, input, collector, 0, 0, deadline);
+		}
+		
 		/**
 		 * 子线程运行中的具体业务
-		 * @param operation 具体业务
-		 * @param operationResult 各业务返回结果列表
-		 * @param countDownLatch 子线程计数器
-		 * @param operationParam 具体业务需要提供的参数
+		 * @param plan 具体业务的执行计划
+		 * @param input 具体业务需要提供的参数
+		 * @param collector 各业务返回结果汇总器
+		 * @param index 在所属请求中的位置
+		 * @param deadline 截止时间,System.nanoTime()的绝对值,0表示不限时
 		 * 
 		 * @author shangbincheng001
 		 */
-		public OperationThread(String operation, String classMethod, OperationInput input, List<OperationResult> operationResult, CountDownLatch countDownLatch) {
-			this.operationResult = operationResult;
-			this.countDownLatch = countDownLatch;
-			this.operation = operation;
-			this.classMethod = classMethod;
+		public OperationThread(SubOperationPlan plan, Object input, OperationCollector collector, int index, long deadline) {
+			this(plan, input, collector, 0, index, deadline);
+		}
+		
+		/**
+		 * 子线程运行中的具体业务
+		 * @param plan 具体业务的执行计划
+		 * @param input 具体业务需要提供的参数
+		 * @param collector 各业务返回结果汇总器
+		 * @param group 所属的请求,批量请求时用于结果分组
+		 * @param index 在所属请求中的位置
+		 * @param deadline 截止时间,System.nanoTime()的绝对值,0表示不限时
+		 * 
+		 * @author shangbincheng001
+		 */
+		public OperationThread(SubOperationPlan plan, Object input, OperationCollector collector, int group, int index, long deadline) {
+			this.collector = collector;
+			this.group = group;
+			this.index = index;
+			this.operation = plan.getOperation();
+			this.invoker = plan.getInvoker();
+			this.cache = plan.getCache();
+			this.singleFlight = plan.getSingleFlight();
+			this.circuitBreaker = plan.getCircuitBreaker();
+			this.hedge = plan.getHedge();
+			this.trace = plan.getTrace();
+			this.metrics = plan.getMetrics();
 			this.input = input;
+			this.deadline = deadline;
+			this.done = new AtomicBoolean(false);
+		}
+		
+		/**
+		 * 对冲的调用,与原调用执行相同的单元子业务,共享结果登记状态
+		 * @param primary 原调用
+		 */
+		private OperationThread(OperationThread primary) {
+			this.primary = primary;
+			this.collector = primary.collector;
+			this.group = primary.group;
+			this.index = primary.index;
+			this.operation = primary.operation;
+			this.invoker = primary.invoker;
+			this.cache = primary.cache;
+			this.metrics = primary.metrics;
+			this.input = primary.input;
+			this.deadline = primary.deadline;
+			this.done = primary.done;
+		}
+		
+		/**
+		 * 登记超时定时器后,提交到线程池执行
+		 * @param executor 当前业务对应的线程池
+		 */
+		public void start(Executor executor) {
+			submitTime = System.nanoTime();
+			this.executor = executor;
+			// 命中缓存直接在调用线程中登记结果,不占用线程池
+			if (cache != null) {
+				OperationResult cached = cache.get(input);
+				if (cached != null) {
+					complete(cached);
+					return;
+				}
+			}
+			dispatch(true);
+		}
+		
+		/**
+		 * 合并调用的领头者未真正执行(超时、被拒绝、熔断),跟随者不沿用其结果,重新加入
+		 * 由领头者登记结果的线程调用,可能是线程池的工作线程,提交时不能阻塞
+		 */
+		void retry() {
+			if (done.get()) {
+				return;
+			}
+			nonBlocking = true;
+			dispatch(false);
+		}
+		
+		/**
+		 * 加入合并调用,领头者经熔断器放行后提交到线程池
+		 * @param schedule 是否登记超时定时器,跟随者重新加入时已登记
+		 */
+		private void dispatch(boolean schedule) {
+			boolean execute = true;
+			// 相同的调用正在执行时,作为跟随者等待其结果,不占用线程池
+			if (singleFlight != null) {
+				OperationSingleFlight.Flight joined = singleFlight.join(input, this);
+				flight = joined;
+				execute = joined != null;
+				// 重新加入成为领头者时恰好已超时,登记结果时未看到本次调用,由自己结束
+				if (execute && done.get()) {
+					singleFlight.abandon(input, joined);
+					return;
+				}
+			}
+			// 熔断中直接在调用线程中登记熔断结果,不提交到线程池
+			if (execute && circuitBreaker != null) {
+				permit = circuitBreaker.tryAcquire();
+				if (permit < 0L) {
+					OperationResult or = new OperationResult();
+					or.circuitOpen(String.format("业务:[ %s ],熔断中,快速失败!", operation));
+					complete(or);
+					return;
+				}
+			}
+			if (schedule && deadline != 0L && !done.get()) {
+				timeoutFuture = timer.schedule(new Runnable() {
+					public void run() {
+						timeout(callbackExecutor);
+					}
+				}, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+			if (execute) {
+				long hedgeDelay = hedge == null ? 0L : hedge.onCall();
+				try {
+					executor.execute(this);
+				} catch (RuntimeException e) {
+					// 提交失败时以拒绝结果登记,领头者一并结束本次合并调用,之后相同的调用不会一直等待
+					LOGGING.error(String.format("业务:[ %s ],提交到线程池失败!", operation), e);
+					OperationResult or = new OperationResult();
+					or.rejected(String.format("业务:[ %s ],提交到线程池失败:[ %s ]", operation, e.toString()));
+					complete(or);
+					return;
+				}
+				if (hedgeDelay > 0L && !done.get()) {
+					final Executor e = executor;
+					hedgeFuture = timer.schedule(new Runnable() {
+						public void run() {
+							hedge(e);
+						}
+					}, hedgeDelay, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+		
+		/**
+		 * 经过对冲延迟仍未完成,在预算之内时提交一份相同的调用
+		 * 对冲的调用在线程池饱和时直接放弃,不按饱和策略处理,不会阻塞超时定时器
+		 * @param executor 当前业务对应的线程池
+		 */
+		private void hedge(Executor executor) {
+			if (done.get() || !hedge.tryAcquire()) {
+				return;
+			}
+			OperationThread copy = new OperationThread(this);
+			copy.submitTime = System.nanoTime();
+			hedged = copy;
+			if (metrics != null) {
+				metrics.recordHedged();
+			}
+			long suppressed = OperationLogLimiter.get(operation).tryAcquire(OperationLogLimiter.HEDGE);
+			if (suppressed >= 0L) {
+				LOGGING.info("业务:[ {} ],经过对冲延迟仍未完成,发起对冲请求!此前另有{}次未打印", operation, suppressed);
+			}
+			try {
+				executor.execute(copy);
+			} catch (RejectedExecutionException e) {
+				LOGGING.warn("业务:[ {} ],线程池已关闭,放弃对冲请求!", operation);
+			}
+		}
+		
+		/**
+		 * @return 是否为对冲的调用
+		 */
+		boolean isHedge() {
+			return primary != null;
+		}
+		
+		/**
+		 * 提交时不能阻塞,饱和时block、wait策略改为在提交线程中直接执行
+		 * @return 当前业务
+		 */
+		OperationThread nonBlocking() {
+			this.nonBlocking = true;
+			return this;
+		}
+		
+		/**
+		 * @return 提交时是否不能阻塞
+		 */
+		boolean isNonBlocking() {
+			return nonBlocking;
 		}
 		
 		public void run() {
+			// 出队时已超时或已登记结果的业务,不再执行
+			if (done.get()) {
+				return;
+			}
+			if (deadline != 0L && deadline - System.nanoTime() <= 0L) {
+				timeout(null);
+				return;
+			}
+			Thread current = Thread.currentThread();
+			runner.set(current);
+			startTime = System.nanoTime();
+			long cpuStartTime = -1L;
+			if (metrics != null) {
+				metrics.recordQueueWait(startTime - submitTime);
+				if (metrics.isCpuTimeEnabled() && threadMXBean.isCurrentThreadCpuTimeSupported()) {
+					cpuStartTime = threadMXBean.getCurrentThreadCpuTime();
+				}
+			}
 			OperationResult or = null;
+			// 执行耗时只记录一次:调用返回后立即记录,调用抛出异常时在catch中记录,返回结果无效时不再重复记录
+			boolean recorded = false;
 			try {
-				// 根据operation运行相应的业务,此处可以用反射调用
-				Matcher m = PTN_CLASSNAME.matcher(classMethod);
-				String className = m.replaceAll("");
-				String methodName = SecurityUtils.getFirstStr(PTN_METHODNAME, classMethod);
-				LOGGING.info("开始执行业务:[ 业务={} ,输入={} ,执行计划=类{}的静态方法{} ]...", new Object[]{operation, input, className, methodName});
-				Object ro = SecurityUtils.echoStaticMethodByClass(className, methodName, new Class<?>[]{OperationInput.class}, new Object[]{input}, OperationResult.class);
+				// 登记执行线程之前,恰好超时
+				if (done.get()) {
+					return;
+				}
+				if (invoker == null) {
+					throw new QuickQuarantineException(String.format("业务:[ %s ],未知或匹配失败的单元子业务!", operation));
+				}
+				// 根据operation运行相应的业务,直接调用已解析好的执行计划,执行日志在登记结果时异步记录
+				OperationResult ro = invoker.invoke(input);
+				recordExecution(cpuStartTime);
+				recorded = true;
 				// 完整性判断
 				if (ro == null) {
 					throw new QuickQuarantineException(String.format("返回业务:[ 业务=%s, 返回=%s ],返回结果为空!", operation, or));
 				} 
-			    or = (OperationResult)ro;
+			    or = ro;
 			    String resultCode = or.getResultCode();
 			    if (resultCode == null) {
 					throw new QuickQuarantineException(String.format("返回业务:[ 业务=%s, 返回=%s ],缺少返回码!", operation, or));
 				}
-			    LOGGING.info("执行业务:[ 业务={}, 输入={}, 返回={} ],成功!", new Object[]{operation, input, or});
-			} catch (Exception e) {
+			    if (cache != null) {
+			    	cache.put(input, or);
+			    }
+			} catch (Throwable e) {
+				exception = true;
+				if (!recorded) {
+					recordExecution(cpuStartTime);
+				}
 				// 记录日志信息
 				LOGGING.error("执行业务失败!", e);
 				// 转换异常
@@ -254,13 +844,188 @@ public class OperationThreadPool {
 				// 保存案发现场信息
 				or.error(String.format("案发现场信息:[ %s ]", e.toString()));
 			} finally {
+				// 超时定时器已取走当前线程,等它中断完毕后清除中断状态,不能影响线程池中的下一个业务
+				if (!runner.compareAndSet(current, null)) {
+					while (!interrupted) {
+						Thread.yield();
+					}
+					Thread.interrupted();
+				}
 				// 汇总各子业务的结果 operationResult
-				or.setOperation(operation);
-				operationResult.add(or);
-				LOGGING.info("{}线程执行完毕!", Thread.currentThread().getName());
-				countDownLatch.countDown();
+				if (or != null) {
+					complete(or);
+				}
+			}
+		}
+		
+		/**
+		 * @return 优先级,优先级阻塞队列按此出队
+		 */
+		byte getPriority() {
+			return input instanceof OperationInput ? ((OperationInput) input).getPriority() : OperationInput.PRIORITY_NORMAL;
+		}
+		
+		/**
+		 * 线程池饱和时记录
+		 */
+		void rejected() {
+			if (metrics != null) {
+				metrics.recordRejected();
+			}
+		}
+		
+		/**
+		 * 记录执行耗时与CPU耗时
+		 * @param cpuStartTime 开始执行时的线程CPU时间,小于0表示不统计CPU耗时
+		 */
+		private void recordExecution(long cpuStartTime) {
+			if (metrics == null) {
+				return;
+			}
+			metrics.recordExecution(System.nanoTime() - startTime);
+			if (cpuStartTime >= 0L) {
+				metrics.recordCpuTime(threadMXBean.getCurrentThreadCpuTime() - cpuStartTime);
+			}
+		}
+		
+		/**
+		 * 按饱和策略拒绝,以拒绝结果登记,不再执行
+		 * @param reason 拒绝原因
+		 */
+		void reject(String reason) {
+			OperationResult or = new OperationResult();
+			or.rejected(String.format("业务:[ %s ],线程池饱和,%s!", operation, reason));
+			if (!complete(or)) {
+				return;
+			}
+			long suppressed = OperationLogLimiter.get(operation).tryAcquire(OperationLogLimiter.REJECT);
+			if (suppressed >= 0L) {
+				LOGGING.warn("业务:[ {} ],线程池饱和,{}!此前另有{}次未打印", new Object[]{operation, reason, suppressed});
+			}
+		}
+		
+		/**
+		 * 到期未完成,以超时结果登记,并中断正在执行当前业务的线程
+		 * @param publisher 通知调用者的线程池,null表示在当前线程中通知
+		 */
+		private void timeout(Executor publisher) {
+			OperationResult or = new OperationResult();
+			or.timeout(String.format("业务:[ %s ],执行超时!", operation));
+			if (!complete(or, publisher)) {
+				return;
+			}
+			interrupt();
+			long suppressed = OperationLogLimiter.get(operation).tryAcquire(OperationLogLimiter.TIMEOUT);
+			if (suppressed >= 0L) {
+				LOGGING.warn("业务:[ {} ],执行超时!此前另有{}次未打印", operation, suppressed);
+			}
+		}
+		
+		/**
+		 * 中断正在执行当前业务的线程
+		 */
+		private void interrupt() {
+			Thread t = runner.get();
+			if (t != null && runner.compareAndSet(t, null)) {
+				t.interrupt();
+				interrupted = true;
+			}
+		}
+		
+		/**
+		 * 登记结果,只有第一次登记有效;对冲的调用转交原调用登记
+		 * @param or 结果
+		 * @return 是否登记成功
+		 */
+		boolean complete(OperationResult or) {
+			return complete(or, null);
+		}
+		
+		/**
+		 * @param or 结果
+		 * @param publisher 通知调用者的线程池,null表示在当前线程中通知
+		 * @return 是否登记成功
+		 */
+		private boolean complete(OperationResult or, Executor publisher) {
+			if (primary == null) {
+				return complete(or, exception, false, publisher);
+			}
+			return primary.complete(or, exception, true, publisher);
+		}
+		
+		/**
+		 * @param or 结果
+		 * @param exception 是否因抛出异常而失败
+		 * @param hedgeWon 是否由对冲的调用登记,在调用者得到结果之前记录
+		 * @param publisher 通知调用者的线程池,null表示在当前线程中通知
+		 * @return 是否登记成功
+		 */
+		private boolean complete(final OperationResult or, boolean exception, boolean hedgeWon, Executor publisher) {
+			if (!done.compareAndSet(false, true)) {
+				return false;
+			}
+			ScheduledFuture<?> f = timeoutFuture;
+			if (f != null) {
+				f.cancel(false);
+			}
+			f = hedgeFuture;
+			if (f != null) {
+				f.cancel(false);
+			}
+			// 先完成的结果生效,中断仍在执行的另一个
+			OperationThread copy = hedged;
+			if (copy != null) {
+				copy.interrupt();
+				interrupt();
+			}
+			if (hedgeWon) {
+				hedge.recordWon();
+			}
+			or.setOperation(operation);
+			long now = System.nanoTime();
+			if (metrics != null) {
+				metrics.recordCompletion(now - submitTime, or.getResultCode(), exception);
+			}
+			if (trace != null) {
+				trace.record(input, or, submitTime, startTime, now);
+			}
+			if (permit >= 0L) {
+				// 原调用未开始执行时,以对冲的调用的开始执行时间为准
+				long started = startTime;
+				OperationThread copy2 = hedged;
+				if (started == 0L && copy2 != null) {
+					started = copy2.startTime;
+				}
+				if (started == 0L) {
+					// 被拒绝或在阻塞队列中即已超时,没有调用下游,只归还许可
+					circuitBreaker.release(permit);
+				} else {
+					circuitBreaker.record(permit, !OperationResult.SUCCESS.equals(or.getResultCode()), now - started);
+				}
+			}
+			if (publisher == null) {
+				publish(or);
+			} else {
+				publisher.execute(new Runnable() {
+					public void run() {
+						publish(or);
+					}
+				});
+			}
+			return true;
+		}
+		
+		/**
+		 * 登记到结果汇总器,领头者一并为合并调用的跟随者登记
+		 * @param or 结果
+		 */
+		private void publish(OperationResult or) {
+			collector.collect(group, index, or);
+			OperationSingleFlight.Flight f = flight;
+			if (f != null) {
+				singleFlight.done(input, f, or);
 			}
 		}
 		
 	}
-}
\ No newline at end of file
+}
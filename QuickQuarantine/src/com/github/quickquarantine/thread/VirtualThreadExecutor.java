@@ -0,0 +1,207 @@
+package com.github.quickquarantine.thread;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.github.quickquarantine.Factory;
+import com.github.quickquarantine.exception.QuickQuarantineException;
+
+/**
+ * 虚拟线程执行器,适用于几乎全是阻塞IO的业务
+ * 每个单元子业务一个虚拟线程,不再按 最大线程数=CPU核数/(1-阻塞系数) 估算线程数量:
+ * a.maximumPoolSize不再是线程数,而是并发上限(信号量隔离舱),同一时刻最多maximumPoolSize个单元子业务在执行
+ * b.workQueueSize仍然是等待执行的单元子业务上限,超过maximumPoolSize+workQueueSize时,按饱和策略处理,见OperationRejectedHandler;
+ *   已关闭时与线程池一样以拒绝结果登记
+ * 需要JDK21及以上,通过反射创建,以便在低版本JDK上编译.低版本JDK上配置虚拟线程,加载配置时即失败.
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+	
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor(),当前JDK不支持时为null
+	 */
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getFactoryMethod();
+	
+	/**
+	 * 每个任务一个虚拟线程的执行器
+	 */
+	private final ExecutorService executor;
+	
+	/**
+	 * 并发上限,即maximumPoolSize
+	 */
+	private final int maximumPoolSize;
+	
+	/**
+	 * 等待执行的单元子业务上限,即workQueueSize
+	 */
+	private final int workQueueSize;
+	
+	/**
+	 * 隔离舱,同一时刻最多maximumPoolSize个单元子业务在执行
+	 */
+	private final Semaphore bulkhead;
+	
+	/**
+	 * 执行中与等待执行的单元子业务上限,即maximumPoolSize+workQueueSize
+	 */
+	private final Semaphore admission;
+	
+	/**
+	 * 饱和策略
+	 */
+	private final OperationRejectedHandler handler;
+	
+	/**
+	 * 饱和时提交阻塞
+	 * @param operation 顶级业务
+	 * @param maximumPoolSize 并发上限
+	 * @param workQueueSize 等待执行的单元子业务上限
+	 */
+	public VirtualThreadExecutor(String operation, int maximumPoolSize, int workQueueSize) {
+		this(operation, maximumPoolSize, workQueueSize, new OperationRejectedHandler(operation, Factory.REJECT_POLICY_BLOCK, Factory.DEFAULT_REJECT_POLICY_WAIT_TIME));
+	}
+	
+	/**
+	 * @param operation 顶级业务
+	 * @param maximumPoolSize 并发上限
+	 * @param workQueueSize 等待执行的单元子业务上限
+	 * @param handler 饱和策略
+	 */
+	public VirtualThreadExecutor(String operation, int maximumPoolSize, int workQueueSize, OperationRejectedHandler handler) {
+		if (!isSupported()) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],当前JDK不支持虚拟线程,需要JDK21及以上!", operation));
+		}
+		try {
+			this.executor = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (Exception e) {
+			throw new QuickQuarantineException(String.format("业务:[ %s ],创建虚拟线程执行器失败:[ %s ]", operation, e.toString()));
+		}
+		this.maximumPoolSize = maximumPoolSize;
+		this.workQueueSize = workQueueSize;
+		this.bulkhead = new Semaphore(maximumPoolSize);
+		this.admission = new Semaphore(maximumPoolSize + workQueueSize);
+		this.handler = handler;
+	}
+	
+	/**
+	 * @return 当前JDK是否支持虚拟线程
+	 */
+	public static boolean isSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+	
+	private static Method getFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	@Override
+	public void execute(final Runnable command) {
+		// 已关闭时以拒绝结果登记,与线程池一致
+		if (executor.isShutdown()) {
+			handler.rejectShutdown(command);
+			return;
+		}
+		// 超过maximumPoolSize+workQueueSize时按饱和策略处理,与线程池一致
+		if (!admission.tryAcquire() && !handler.acquire(command, admission)) {
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						bulkhead.acquireUninterruptibly();
+						try {
+							command.run();
+						} finally {
+							bulkhead.release();
+						}
+					} finally {
+						admission.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// 取得许可之后恰好关闭
+			admission.release();
+			handler.rejectShutdown(command);
+		}
+	}
+	
+	/**
+	 * @return 正在执行的单元子业务个数
+	 */
+	public int getActiveCount() {
+		return maximumPoolSize - bulkhead.availablePermits();
+	}
+	
+	/**
+	 * @return 等待执行的单元子业务上限
+	 */
+	public int getWorkQueueSize() {
+		return workQueueSize;
+	}
+	
+	/**
+	 * @return 等待执行的单元子业务个数
+	 */
+	public int getQueueSize() {
+		return bulkhead.getQueueLength();
+	}
+	
+	/**
+	 * @return 还可以提交而不阻塞的单元子业务个数
+	 */
+	public int getRemainingCapacity() {
+		return admission.availablePermits();
+	}
+	
+	public OperationRejectedHandler getRejectedHandler() {
+		return handler;
+	}
+	
+	/**
+	 * @return 并发上限
+	 */
+	public int getMaximumPoolSize() {
+		return maximumPoolSize;
+	}
+	
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+	
+	@Override
+	public List<Runnable> shutdownNow() {
+		return executor.shutdownNow();
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+	
+	@Override
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+	
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+	
+}
@@ -0,0 +1,67 @@
+package com.github.quickquarantine.trace;
+
+/**
+ * 环形缓冲区中的一个槽位,记录一次单元子业务执行的结构化事件
+ * 槽位在创建环形缓冲区时一次性分配并循环复用,记录时只赋值字段,不分配对象、不格式化
+ * 
+ * @author shangbincheng001
+ *
+ */
+final class OperationEvent {
+	
+	/**
+	 * 已发布的序号,等于消费者期望的序号时表示本轮已写完,-1表示从未写入
+	 */
+	volatile long sequence = -1L;
+	
+	/**
+	 * 登记结果的时间(毫秒)
+	 */
+	long timestamp;
+	
+	/**
+	 * 单元子业务
+	 */
+	String operation;
+	
+	String resultCode;
+	
+	String errorReason;
+	
+	/**
+	 * 排队耗时(纳秒),-1表示未开始执行
+	 */
+	long queueNanos;
+	
+	/**
+	 * 执行耗时(纳秒),未开始执行时为0
+	 */
+	long executeNanos;
+	
+	/**
+	 * 端到端耗时(纳秒)
+	 */
+	long endToEndNanos;
+	
+	/**
+	 * 输入参数,未采样时为null,由后台写线程格式化
+	 */
+	Object input;
+	
+	/**
+	 * 返回结果,未采样时为null,由后台写线程格式化
+	 */
+	Object result;
+	
+	/**
+	 * 写完后释放引用,不延长输入参数和返回结果的生命周期
+	 */
+	void clear() {
+		operation = null;
+		resultCode = null;
+		errorReason = null;
+		input = null;
+		result = null;
+	}
+	
+}
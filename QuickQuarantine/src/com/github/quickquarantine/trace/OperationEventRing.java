@@ -0,0 +1,207 @@
+package com.github.quickquarantine.trace;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 单元子业务执行事件的环形缓冲区,参考Disruptor的多生产者、单消费者模型
+ * a.业务线程CAS领取序号后填写预先分配的槽位,再以volatile写发布,不加锁、不分配对象、不格式化、不做I/O
+ * b.一个后台写线程按序号依次取出事件,格式化后写入日志,日志的格式化和I/O全部离开业务线程
+ * c.缓冲区已满时直接丢弃新事件并计数,日志写得慢时不会反过来拖慢业务
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationEventRing {
+	
+	private static final Logger LOGGING = LoggerFactory.getLogger(OperationEventRing.class);
+	
+	/**
+	 * 系统属性:默认环形缓冲区的容量,向上取整为2的幂,默认8192
+	 * 比如 -Dquickquarantine.traceBufferSize=65536
+	 */
+	public static final String BUFFER_SIZE_PROPERTY = "quickquarantine.traceBufferSize";
+	
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	/**
+	 * 缓冲区为空时写线程的休眠时间(纳秒)
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+	
+	private static volatile OperationEventRing defaultRing;
+	
+	private final OperationEvent[] slots;
+	
+	private final int mask;
+	
+	/**
+	 * 下一个可领取的序号
+	 */
+	private final AtomicLong tail = new AtomicLong(0L);
+	
+	/**
+	 * 下一个要写出的序号,只有写线程修改
+	 */
+	private volatile long head = 0L;
+	
+	private final LongAdder droppedCount = new LongAdder();
+	
+	private final Thread writer;
+	
+	private volatile boolean running = true;
+	
+	/**
+	 * @param capacity 容量,向上取整为2的幂
+	 * @param name 写线程名称
+	 */
+	public OperationEventRing(int capacity, String name) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.slots = new OperationEvent[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new OperationEvent();
+		}
+		this.mask = size - 1;
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, name);
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * @return 所有单元子业务共享的环形缓冲区,第一次使用时创建
+	 */
+	public static OperationEventRing getDefault() {
+		OperationEventRing ring = defaultRing;
+		if (ring == null) {
+			synchronized (OperationEventRing.class) {
+				ring = defaultRing;
+				if (ring == null) {
+					ring = new OperationEventRing(Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE).intValue(), "quickquarantine-trace-writer");
+					defaultRing = ring;
+				}
+			}
+		}
+		return ring;
+	}
+	
+	/**
+	 * 发布一个事件,缓冲区已满时丢弃
+	 * @param operation 单元子业务
+	 * @param resultCode 返回码
+	 * @param errorReason 错误原因
+	 * @param queueNanos 排队耗时(纳秒),-1表示未开始执行
+	 * @param executeNanos 执行耗时(纳秒)
+	 * @param endToEndNanos 端到端耗时(纳秒)
+	 * @param input 输入参数,不记录时为null
+	 * @param result 返回结果,不记录时为null
+	 * @return 是否发布成功
+	 */
+	boolean publish(String operation, String resultCode, String errorReason, long queueNanos, long executeNanos, long endToEndNanos, Object input, Object result) {
+		long seq;
+		do {
+			seq = tail.get();
+			if (seq - head >= slots.length) {
+				droppedCount.increment();
+				return false;
+			}
+		} while (!tail.compareAndSet(seq, seq + 1L));
+		OperationEvent e = slots[(int) seq & mask];
+		e.timestamp = System.currentTimeMillis();
+		e.operation = operation;
+		e.resultCode = resultCode;
+		e.errorReason = errorReason;
+		e.queueNanos = queueNanos;
+		e.executeNanos = executeNanos;
+		e.endToEndNanos = endToEndNanos;
+		e.input = input;
+		e.result = result;
+		// volatile写,之前的赋值对写线程可见
+		e.sequence = seq;
+		return true;
+	}
+	
+	private void drain() {
+		while (running) {
+			long h = head;
+			OperationEvent e = slots[(int) h & mask];
+			if (e.sequence != h) {
+				// 缓冲区为空,或已领取的序号尚未发布
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			try {
+				write(e);
+			} catch (RuntimeException ex) {
+				LOGGING.error("写出执行事件失败!", ex);
+			} finally {
+				e.clear();
+				head = h + 1L;
+			}
+		}
+	}
+	
+	private static void write(OperationEvent e) {
+		if (!LOGGING.isInfoEnabled()) {
+			return;
+		}
+		String queue = e.queueNanos < 0L ? "-" : String.format("%.3f", e.queueNanos / 1000000.0);
+		if (e.input == null && e.result == null) {
+			LOGGING.info(String.format("执行业务:[ 业务=%s, 返回码=%s, 排队=%sms, 执行=%.3fms, 端到端=%.3fms, 时间=%s ]%s",
+					new Object[]{e.operation, e.resultCode, queue, e.executeNanos / 1000000.0, e.endToEndNanos / 1000000.0, e.timestamp, e.errorReason == null ? "" : ",原因:" + e.errorReason}));
+		} else {
+			LOGGING.info(String.format("执行业务:[ 业务=%s, 返回码=%s, 排队=%sms, 执行=%.3fms, 端到端=%.3fms, 时间=%s, 输入=%s, 返回=%s ]",
+					new Object[]{e.operation, e.resultCode, queue, e.executeNanos / 1000000.0, e.endToEndNanos / 1000000.0, e.timestamp, e.input, e.result}));
+		}
+	}
+	
+	/**
+	 * @return 容量
+	 */
+	public int getCapacity() {
+		return slots.length;
+	}
+	
+	/**
+	 * @return 已发布的事件数
+	 */
+	public long getPublishedCount() {
+		return tail.get();
+	}
+	
+	/**
+	 * @return 已写出的事件数
+	 */
+	public long getWrittenCount() {
+		return head;
+	}
+	
+	/**
+	 * @return 缓冲区已满而丢弃的事件数
+	 */
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+	
+	/**
+	 * 停止写线程,未写出的事件丢弃
+	 */
+	public void shutdown() {
+		running = false;
+		LockSupport.unpark(writer);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationEventRing [capacity=%s, published=%s, written=%s, dropped=%s ]", new Object[]{getCapacity(), getPublishedCount(), getWrittenCount(), getDroppedCount()});
+	}
+	
+}
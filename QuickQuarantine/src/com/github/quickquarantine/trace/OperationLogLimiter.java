@@ -0,0 +1,78 @@
+package com.github.quickquarantine.trace;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 过载事件(对冲、拒绝、超时)的日志限流,每个单元子业务一个
+ * 这些事件恰好在过载时成批出现,在提交线程、工作线程或超时定时器中逐次同步打印日志,会在已过载时进一步增加负载
+ * a.每种事件每个周期最多打印一条日志,并带上此前被抑制的次数
+ * b.逐次的明细不丢失:拒绝和超时由OperationTrace发布到环形缓冲区,对冲次数记录在OperationMetrics中
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationLogLimiter {
+	
+	public static final int HEDGE = 0;
+	
+	public static final int REJECT = 1;
+	
+	public static final int TIMEOUT = 2;
+	
+	private static final int EVENTS = TIMEOUT + 1;
+	
+	/**
+	 * 每种事件打印日志的最小间隔(纳秒)
+	 */
+	private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+	
+	private static final ConcurrentMap<String, OperationLogLimiter> limiterMap = new ConcurrentHashMap<String, OperationLogLimiter>();
+	
+	/**
+	 * 每种事件下次允许打印日志的时间,System.nanoTime()的绝对值
+	 */
+	private final AtomicLongArray next = new AtomicLongArray(EVENTS);
+	
+	/**
+	 * 每种事件上次打印日志之后被抑制的次数
+	 */
+	private final AtomicLongArray suppressed = new AtomicLongArray(EVENTS);
+	
+	private OperationLogLimiter() {
+		long now = System.nanoTime();
+		for (int i = 0; i < EVENTS; i++) {
+			next.set(i, now);
+		}
+	}
+	
+	/**
+	 * @param operation 单元子业务
+	 * @return 单元子业务的日志限流
+	 */
+	public static OperationLogLimiter get(String operation) {
+		OperationLogLimiter limiter = limiterMap.get(operation);
+		if (limiter != null) {
+			return limiter;
+		}
+		return limiterMap.computeIfAbsent(operation, key -> new OperationLogLimiter());
+	}
+	
+	/**
+	 * 发生一次事件,判断本次是否打印日志
+	 * @param event 事件,HEDGE、REJECT或TIMEOUT
+	 * @return 小于0表示本次不打印,否则为上次打印之后被抑制的次数
+	 */
+	public long tryAcquire(int event) {
+		long now = System.nanoTime();
+		long n = next.get(event);
+		if (now - n >= 0L && next.compareAndSet(event, n, now + INTERVAL)) {
+			return suppressed.getAndSet(event, 0L);
+		}
+		suppressed.incrementAndGet(event);
+		return -1L;
+	}
+	
+}
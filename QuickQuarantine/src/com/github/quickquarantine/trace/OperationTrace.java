@@ -0,0 +1,109 @@
+package com.github.quickquarantine.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.quickquarantine.entity.OperationResult;
+
+/**
+ * 单元子业务的执行日志,代替业务线程中逐次同步打印的日志
+ * a.summary:每次执行只发布一个结构化事件(业务、返回码、排队/执行/端到端耗时)到环形缓冲区,由后台写线程格式化写出
+ * b.payload:在summary的基础上,每sampleRate次执行采样1次,附带输入参数和返回结果,同样由后台写线程格式化
+ * c.关闭时不创建本对象,业务线程中没有任何日志开销
+ * 注意:采样的输入参数在写出前不能再修改,否则写出的是修改后的内容
+ * 
+ * @author shangbincheng001
+ *
+ */
+public class OperationTrace {
+	
+	/**
+	 * 每次执行只记录结构化事件
+	 */
+	public static final int LEVEL_SUMMARY = 1;
+	
+	/**
+	 * 在结构化事件的基础上采样记录输入参数和返回结果
+	 */
+	public static final int LEVEL_PAYLOAD = 2;
+	
+	/**
+	 * 单元子业务
+	 */
+	private final String operation;
+	
+	private final int level;
+	
+	/**
+	 * 每sampleRate次执行采样1次输入参数和返回结果
+	 */
+	private final long sampleRate;
+	
+	private final OperationEventRing ring;
+	
+	private final AtomicLong callCount = new AtomicLong(0L);
+	
+	private final AtomicLong sampledCount = new AtomicLong(0L);
+	
+	/**
+	 * @param operation 单元子业务
+	 * @param level 日志级别,LEVEL_SUMMARY或LEVEL_PAYLOAD
+	 * @param sampleRate 每sampleRate次执行采样1次输入参数和返回结果
+	 * @param ring 环形缓冲区
+	 */
+	public OperationTrace(String operation, int level, long sampleRate, OperationEventRing ring) {
+		this.operation = operation;
+		this.level = level;
+		this.sampleRate = sampleRate;
+		this.ring = ring;
+	}
+	
+	/**
+	 * 登记结果时记录,只发布事件,不格式化、不做I/O
+	 * @param input 输入参数
+	 * @param or 结果
+	 * @param submitTime 提交时间,System.nanoTime()的绝对值
+	 * @param startTime 开始执行时间,0表示未开始执行
+	 * @param endTime 登记结果的时间
+	 */
+	public void record(Object input, OperationResult or, long submitTime, long startTime, long endTime) {
+		boolean payload = level == LEVEL_PAYLOAD && callCount.getAndIncrement() % sampleRate == 0L;
+		if (payload) {
+			sampledCount.incrementAndGet();
+		}
+		ring.publish(operation, or.getResultCode(), or.getErrorReason(), startTime == 0L ? -1L : startTime - submitTime, startTime == 0L ? 0L : endTime - startTime, endTime - submitTime,
+				payload ? input : null, payload ? or : null);
+	}
+	
+	/**
+	 * @param trace 另一个执行日志
+	 * @return 配置是否相同,热加载时配置未变的沿用原有的执行日志
+	 */
+	public boolean hasSameConfig(OperationTrace trace) {
+		return level == trace.level && sampleRate == trace.sampleRate && ring == trace.ring;
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public int getLevel() {
+		return level;
+	}
+	
+	public long getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**
+	 * @return 采样记录输入参数和返回结果的次数
+	 */
+	public long getSampledCount() {
+		return sampledCount.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("OperationTrace [operation=%s, level=%s, sampleRate=%s ]", new Object[]{operation, level == LEVEL_PAYLOAD ? "payload" : "summary", sampleRate});
+	}
+	
+}